@@ -1,5 +1,12 @@
 package de.hitec.nhplus;
 
+import de.hitec.nhplus.datastorage.ChangeTracker;
+import de.hitec.nhplus.datastorage.ConnectionBuilder;
+import de.hitec.nhplus.datastorage.DaoFactory;
+import de.hitec.nhplus.datastorage.SlowQueryLog;
+import de.hitec.nhplus.datastorage.WriteBehindQueue;
+import de.hitec.nhplus.service.BackupService;
+import de.hitec.nhplus.service.RetentionService;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
@@ -7,14 +14,20 @@ import javafx.scene.layout.BorderPane;
 import javafx.stage.Stage;
 
 import java.io.IOException;
+import java.nio.file.Paths;
+import java.sql.SQLException;
 
 /**
  * This class is the main class of the application. It starts the application and loads the main window.
  */
 public class Main extends Application {
 
+    private RetentionService retentionService;
+    private BackupService backupService;
+
     /**
-     * This method starts the application and loads the main window.
+     * This method starts the application and loads the main window. It also starts the pruning of the change log, see
+     * {@link ChangeTracker#startPruning}, and, if configured, the retention job and the scheduled backups.
      * @param primaryStage The primary stage of the application.
      * @throws Exception if an error occurs while loading the main window.
      */
@@ -29,6 +42,64 @@ public class Main extends Application {
         } catch (IOException e) {
             e.printStackTrace();
         }
+        ChangeTracker.startPruning(ConnectionBuilder.getConnectionSource());
+        if (Boolean.getBoolean("nhplus.retention.enabled")) {
+            startRetention();
+        }
+        long backupInterval = Long.getLong("nhplus.backup.intervalMinutes", 0);
+        if (backupInterval > 0) {
+            this.backupService = BackupService.forApplication();
+            this.backupService.start(backupInterval);
+        }
+    }
+
+    /**
+     * This method deletes the expired records in the background, see {@link RetentionService}, and releases the freed
+     * space afterwards. The result is written to the console.
+     */
+    private void startRetention() {
+        this.retentionService = RetentionService.forApplication();
+        this.retentionService.purgeAsync()
+                .thenAccept(report -> {
+                    System.out.println("Aufbewahrungsfrist: " + report);
+                    try {
+                        System.out.println("Freie Seiten nach dem Aufräumen: " + this.retentionService.reclaimSpace());
+                    } catch (SQLException exception) {
+                        exception.printStackTrace();
+                    }
+                })
+                .exceptionally(error -> {
+                    error.printStackTrace();
+                    return null;
+                });
+    }
+
+    /**
+     * This method is called when the application is closed. It writes the pending edits of the tables, retrying for
+     * <code>nhplus.writeBehind.exitTimeoutMs</code> (default 5000) if the database is busy, writes the index report of
+     * the slow query log, if the log is switched on, stops a running retention job, the pruning of the change log and
+     * the scheduled backups and closes the connections to the database.
+     */
+    @Override
+    public void stop() {
+        if (this.retentionService != null) {
+            this.retentionService.cancel();
+        }
+        if (this.backupService != null) {
+            this.backupService.stop();
+        }
+        WriteBehindQueue.flushAllBeforeExit(Long.getLong("nhplus.writeBehind.exitTimeoutMs", 5000));
+        SlowQueryLog slowQueryLog = SlowQueryLog.getInstance();
+        if (slowQueryLog.isEnabled()) {
+            try {
+                slowQueryLog.writeReport(Paths.get("db", "index-advice.txt"));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        ChangeTracker.stopPruning();
+        DaoFactory.getDaoFactory().getTableVersions().stopMonitor();
+        ConnectionBuilder.closeConnection();
     }
 
     /**
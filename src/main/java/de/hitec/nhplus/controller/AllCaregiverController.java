@@ -1,10 +1,15 @@
 package de.hitec.nhplus.controller;
 
 import de.hitec.nhplus.datastorage.CaregiverDAO;
+import de.hitec.nhplus.datastorage.ChangeTracker;
 import de.hitec.nhplus.datastorage.DaoFactory;
+import de.hitec.nhplus.datastorage.WriteBehindQueue;
 import de.hitec.nhplus.model.Caregiver;
 import de.hitec.nhplus.utils.DateConverter;
 import de.hitec.nhplus.utils.DateUtils;
+import de.hitec.nhplus.utils.FxAsync;
+import de.hitec.nhplus.utils.InputValidator;
+import de.hitec.nhplus.utils.ViewRefresh;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
 import javafx.collections.FXCollections;
@@ -52,6 +57,8 @@ public class AllCaregiverController {
 
     private final ObservableList<Caregiver> caregivers = FXCollections.observableArrayList();
     private CaregiverDAO dao;
+    private WriteBehindQueue<Caregiver> writeQueue;
+    private ChangeTracker<Caregiver> changes;
 
     /**
      * This method is called when the view is loaded. It initializes the table view, the columns and the data. It also
@@ -60,6 +67,10 @@ public class AllCaregiverController {
      */
     public void initialize() {
         this.readAllAndShowInTableView();
+        ViewRefresh.poll(this.tableView, this::refreshTable);
+        this.writeQueue = new WriteBehindQueue<>(DaoFactory.getDaoFactory().createCaregiverDAO(), Caregiver::getCid);
+        this.writeQueue.setErrorHandler(exception -> FxAsync.FX_THREAD.execute(() -> showAlert(Alert.AlertType.ERROR,
+                "Fehler", "Speichern fehlgeschlagen", "Die Änderungen an der Pflegekraft konnten nicht gespeichert werden.")));
 
         this.colID.setCellValueFactory(new PropertyValueFactory<>("cid"));
         this.colFirstName.setCellValueFactory(new PropertyValueFactory<>("firstName"));
@@ -128,15 +139,11 @@ public class AllCaregiverController {
     }
 
     /**
-     * Manually refreshes the table view.
+     * Refreshes the table view with the caregivers changed since the last refresh, here or at another terminal, see
+     * {@link ChangeTracker}.
      */
     private void refreshTable() {
-        this.caregivers.clear();
-        try {
-            this.caregivers.addAll(this.dao.readAll());
-        } catch (Exception exception) {
-            exception.printStackTrace();
-        }
+        ViewRefresh.apply(this.changes, this.caregivers, caregiver -> true, this::readAllAndShowInTableView);
     }
 
     /**
@@ -144,8 +151,8 @@ public class AllCaregiverController {
      * @return True if all input data is valid, false otherwise.
      */
     private boolean areInputDataValid() {
-        return !this.txfFirstname.getText().isBlank() && !this.txfSurname.getText().isBlank()
-                && !this.txfTelephone.getText().isBlank() && this.validatePhoneNumber(this.txfTelephone.getText());
+        return InputValidator.checkCaregiver(this.txfFirstname.getText(), this.txfSurname.getText(),
+                this.txfTelephone.getText()) == null;
     }
 
     /**
@@ -276,7 +283,7 @@ public class AllCaregiverController {
         } catch (SQLException exception) {
             exception.printStackTrace();
         }
-        this.readAllAndShowInTableView();
+        this.refreshTable();
         clearTextfields();
     }
 
@@ -296,18 +303,6 @@ public class AllCaregiverController {
         }
     }
 
-    /**
-     * Validates the phone number. It must have at least 5 characters.
-     * @param phoneNumber Phone number to validate as text from the text field.
-     * @return True if the phone number is valid, false otherwise.
-     */
-    private boolean validatePhoneNumber(String phoneNumber) {
-        if (phoneNumber.length() < 5) {
-            return false;
-        }
-        return true;
-    }
-
     /**
      * Clears the text fields for the first name, surname and phone number.
      */
@@ -318,12 +313,15 @@ public class AllCaregiverController {
     }
 
     /**
-     * Reads all caregivers from the database and shows them in the table view.
+     * Reads all caregivers from the database and shows them in the table view. Later changes are tracked from here
+     * on.
      */
     private void readAllAndShowInTableView() {
         this.caregivers.clear();
         this.dao = DaoFactory.getDaoFactory().createCaregiverDAO();
+        this.changes = new ChangeTracker<>(this.dao);
         try {
+            this.changes.start();
             this.caregivers.addAll(this.dao.readAll());
         } catch (Exception exception) {
             exception.printStackTrace();
@@ -331,14 +329,11 @@ public class AllCaregiverController {
     }
 
     /**
-     * This method is called when the user edits a cell in the table view. It updates the caregiver in the database.
+     * This method is called when the user edits a cell in the table view. It queues the caregiver, which the
+     * {@link WriteBehindQueue} writes to the database shortly after.
      * @param event The event (button click) that triggered the method call.
      */
     private void doUpdate(TableColumn.CellEditEvent<Caregiver, String> event) {
-        try {
-            this.dao.update(event.getRowValue());
-        } catch (Exception exception) {
-            exception.printStackTrace();
-        }
+        this.writeQueue.enqueue(event.getRowValue());
     }
 }
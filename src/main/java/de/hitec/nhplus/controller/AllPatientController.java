@@ -1,7 +1,11 @@
 package de.hitec.nhplus.controller;
 
+import de.hitec.nhplus.datastorage.ChangeTracker;
 import de.hitec.nhplus.datastorage.DaoFactory;
 import de.hitec.nhplus.datastorage.PatientDao;
+import de.hitec.nhplus.datastorage.TransactionTemplate;
+import de.hitec.nhplus.datastorage.TreatmentDao;
+import de.hitec.nhplus.datastorage.WriteBehindQueue;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
 import javafx.collections.FXCollections;
@@ -11,11 +15,17 @@ import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.control.cell.TextFieldTableCell;
 import de.hitec.nhplus.model.Patient;
+import de.hitec.nhplus.model.Treatment;
 import de.hitec.nhplus.utils.DateConverter;
 import de.hitec.nhplus.utils.DateUtils;
+import de.hitec.nhplus.utils.FxAsync;
+import de.hitec.nhplus.utils.InputValidator;
+import de.hitec.nhplus.utils.ViewRefresh;
 
 import java.sql.SQLException;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
 
 
 /**
@@ -70,6 +80,8 @@ public class AllPatientController {
 
     private final ObservableList<Patient> patients = FXCollections.observableArrayList();
     private PatientDao dao;
+    private WriteBehindQueue<Patient> writeQueue;
+    private ChangeTracker<Patient> changes;
 
     /**
      * When <code>initialize()</code> gets called, all fields are already initialized. For example from the FXMLLoader
@@ -78,6 +90,10 @@ public class AllPatientController {
      */
     public void initialize() {
         this.readAllAndShowInTableView();
+        ViewRefresh.poll(this.tableView, this::refreshTable);
+        this.writeQueue = new WriteBehindQueue<>(DaoFactory.getDaoFactory().createPatientDAO(), Patient::getPid);
+        this.writeQueue.setErrorHandler(exception -> FxAsync.FX_THREAD.execute(() -> showAlert(Alert.AlertType.ERROR,
+                "Fehler", "Speichern fehlgeschlagen", "Die Änderungen am Patienten konnten nicht gespeichert werden.")));
 
         this.columnId.setCellValueFactory(new PropertyValueFactory<>("pid"));
 
@@ -149,15 +165,11 @@ public class AllPatientController {
         this.textFieldRoomNumber.textProperty().addListener(inputNewPatientListener);
     }
     /**
-     * Manually refreshes the table view.
+     * Refreshes the table view with the patients changed since the last refresh, here or at another terminal, see
+     * {@link ChangeTracker}.
      */
     private void refreshTable() {
-        this.patients.clear();
-        try {
-            this.patients.addAll(this.dao.readAll());
-        } catch (Exception exception) {
-            exception.printStackTrace();
-        }
+        ViewRefresh.apply(this.changes, this.patients, patient -> true, this::readAllAndShowInTableView);
     }
 
 
@@ -217,26 +229,24 @@ public class AllPatientController {
     }
 
     /**
-     * Updates a patient by calling the method <code>update()</code> of {@link PatientDao}.
+     * Queues the changed patient, it is written together with further edits by the {@link WriteBehindQueue}.
      *
      * @param event Event including the changed object and the change.
      */
     private void doUpdate(TableColumn.CellEditEvent<Patient, String> event) {
-        try {
-            this.dao.update(event.getRowValue());
-        } catch (SQLException exception) {
-            exception.printStackTrace();
-        }
+        this.writeQueue.enqueue(event.getRowValue());
     }
 
     /**
      * Reloads all patients to the table by clearing the list of all patients and filling it again by all persisted
-     * patients, delivered by {@link PatientDao}.
+     * patients, delivered by {@link PatientDao}. Later changes are tracked from here on.
      */
     private void readAllAndShowInTableView() {
         this.patients.clear();
         this.dao = DaoFactory.getDaoFactory().createPatientDAO();
+        this.changes = new ChangeTracker<>(this.dao);
         try {
+            this.changes.start();
             this.patients.addAll(this.dao.readAll());
         } catch (SQLException exception) {
             exception.printStackTrace();
@@ -245,8 +255,8 @@ public class AllPatientController {
 
     /**
      * This method handles events fired by the button to delete patients. It calls {@link PatientDao} to delete the
-     * patient from the database and removes the object from the list, which is the data source of the
-     * <code>TableView</code>.
+     * patient and {@link TreatmentDao} to delete their treatments from the database and removes the object from the
+     * list, which is the data source of the <code>TableView</code>.
      */
     @FXML
     public void handleDelete() {
@@ -270,8 +280,11 @@ public class AllPatientController {
         }
 
         try {
-            deletePatient(selectedItem);
-            tableView.getItems().remove(selectedItem);
+            if (deletePatient(selectedItem)) {
+                tableView.getItems().remove(selectedItem);
+            } else {
+                showAlert(Alert.AlertType.ERROR, "Löschen Fehlgeschlagen", "Löschfehler", "Der Patient/in ist gesperrt oder hat gesperrte Behandlungen oder Behandlungen, die jünger als 10 Jahre sind.");
+            }
         } catch (SQLException exception) {
             handleSQLException(exception);
         }
@@ -308,13 +321,34 @@ public class AllPatientController {
     }
 
     /**
-     * Deletes the specified patient from the database.
+     * Deletes the specified patient and their treatments from the database in one transaction. Like the purge of the
+     * {@link de.hitec.nhplus.service.RetentionService}, nothing is deleted if the patient is locked or one of the
+     * treatments is locked or younger than 10 years. The DAOs of the transaction are created by the
+     * {@link DaoFactory}, so the cached patients and treatments are invalidated after the commit.
      *
      * @param patient The patient to be deleted.
+     * @return true if the patient was deleted, false if the patient or a treatment has to be kept.
      * @throws SQLException If an SQL error occurs during the deletion.
      */
-    private void deletePatient(Patient patient) throws SQLException {
-        DaoFactory.getDaoFactory().createPatientDAO().deleteById(patient.getPid());
+    private boolean deletePatient(Patient patient) throws SQLException {
+        if (patient.isLocked()) {
+            return false;
+        }
+        DaoFactory factory = DaoFactory.getDaoFactory();
+        return TransactionTemplate.forApplication().execute(unit -> {
+            TreatmentDao treatmentDao = factory.createTreatmentDao(unit);
+            List<Long> treatmentIds = new ArrayList<>();
+            for (Treatment treatment : treatmentDao.readTreatmentsByPid(patient.getPid())) {
+                if (treatment.isLocked()
+                        || !DateUtils.isAtLeastTenYears(DateConverter.convertStringToLocalDate(treatment.getDateCreated()))) {
+                    return false;
+                }
+                treatmentIds.add(treatment.getTid());
+            }
+            treatmentDao.deleteAllById(treatmentIds);
+            factory.createPatientDAO(unit).deleteById(patient.getPid());
+            return true;
+        });
     }
 
     /**
@@ -346,7 +380,7 @@ public class AllPatientController {
         } catch (SQLException exception) {
             exception.printStackTrace();
         }
-        readAllAndShowInTableView();
+        refreshTable();
         clearTextfields();
     }
 
@@ -383,16 +417,8 @@ public class AllPatientController {
      * @return true if the input data is valid, false otherwise.
      */
     private boolean areInputDataValid() {
-        if (!this.textFieldDateOfBirth.getText().isBlank()) {
-            try {
-                DateConverter.convertStringToLocalDate(this.textFieldDateOfBirth.getText());
-            } catch (Exception exception) {
-                return false;
-            }
-        }
-
-        return !this.textFieldFirstName.getText().isBlank() && !this.textFieldSurname.getText().isBlank() &&
-                !this.textFieldDateOfBirth.getText().isBlank() && !this.textFieldCareLevel.getText().isBlank() &&
-                !this.textFieldRoomNumber.getText().isBlank();
+        return InputValidator.checkPatient(this.textFieldFirstName.getText(), this.textFieldSurname.getText(),
+                this.textFieldDateOfBirth.getText(), this.textFieldCareLevel.getText(),
+                this.textFieldRoomNumber.getText()) == null;
     }
 }
@@ -1,13 +1,18 @@
 package de.hitec.nhplus.controller;
 
 import de.hitec.nhplus.Main;
+import de.hitec.nhplus.datastorage.AsyncDao;
+import de.hitec.nhplus.datastorage.ChangeTracker;
 import de.hitec.nhplus.datastorage.CaregiverDAO;
 import de.hitec.nhplus.datastorage.DaoFactory;
 import de.hitec.nhplus.datastorage.PatientDao;
+import de.hitec.nhplus.datastorage.TreatmentCriteria;
 import de.hitec.nhplus.datastorage.TreatmentDao;
 import de.hitec.nhplus.model.Caregiver;
 import de.hitec.nhplus.utils.DateConverter;
 import de.hitec.nhplus.utils.DateUtils;
+import de.hitec.nhplus.utils.FxAsync;
+import de.hitec.nhplus.utils.ViewRefresh;
 import javafx.beans.value.ChangeListener;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -65,16 +70,19 @@ public class AllTreatmentController {
 
     private final ObservableList<Treatment> treatments = FXCollections.observableArrayList();
     private TreatmentDao dao;
+    private ChangeTracker<Treatment> changes;
     private final ObservableList<String> patientSelection = FXCollections.observableArrayList();
     private final ObservableList<String> caregiverSelection = FXCollections.observableArrayList();
     private ArrayList<Patient> patientList;
     private ArrayList<Caregiver> caregiverList;
+    private long selectionRequest;
 
     /**
      * Initializes the controller class. This method is automatically called after the fxml file has been loaded.
      */
     public void initialize() {
         readAllAndShowInTableView();
+        ViewRefresh.poll(this.tableView, this::refreshTable);
         comboBoxPatientSelection.setItems(patientSelection);
         comboBoxPatientSelection.getSelectionModel().select(0);
         comboBoxCaregiverSelection.setItems(caregiverSelection);
@@ -135,57 +143,80 @@ public class AllTreatmentController {
     }
 
     /**
-     * Manually refreshes the table view.
+     * Refreshes the table view with the treatments changed since the last refresh, here or at another terminal, see
+     * {@link ChangeTracker}. Changed treatments that do not match the selected patient and caregiver are removed.
      */
     private void refreshTable() {
-        this.treatments.clear();
-        try {
-            this.treatments.addAll(this.dao.readAll());
-        } catch (Exception exception) {
-            exception.printStackTrace();
-        }
+        ViewRefresh.apply(this.changes, this.treatments, this::isSelected, this::reloadTable);
     }
 
     /**
-     * Reads all treatments from the database and displays them in the table view.
+     * Shows all treatments in the table view. The first time, all treatments are read, see {@link #reloadTable()};
+     * afterwards only the changed treatments are read, see {@link #refreshTable()}.
      */
     public void readAllAndShowInTableView() {
-        this.treatments.clear();
         comboBoxPatientSelection.getSelectionModel().select(0);
+        if (this.changes == null) {
+            reloadTable();
+        } else {
+            refreshTable();
+        }
+    }
+
+    /**
+     * Reads all treatments from the database and displays the selected ones in the table view. The treatments are
+     * read on a virtual thread and shown as soon as they arrive, so the view does not freeze meanwhile. The table
+     * does not show the remarks, so they are not read. Later changes are tracked from here on.
+     */
+    private void reloadTable() {
         this.dao = DaoFactory.getDaoFactory().createTreatmentDao();
-        try {
-            this.treatments.addAll(dao.readAll());
-        } catch (SQLException exception) {
-            exception.printStackTrace();
+        TreatmentDao treatmentDao = this.dao;
+        ChangeTracker<Treatment> tracker = new ChangeTracker<>(treatmentDao);
+        this.changes = tracker;
+        FxAsync.whenDone(AsyncDao.supplyAsync(() -> {
+            tracker.start();
+            return treatmentDao.readAllWithoutRemarks();
+        }), treatments -> this.treatments.setAll(treatments.stream().filter(this::isSelected).toList()));
+    }
+
+    /**
+     * Tells whether the given treatment matches the patient and the caregiver selected in the comboboxes.
+     * @param treatment the treatment to check
+     * @return true if the table view shows the treatment
+     */
+    private boolean isSelected(Treatment treatment) {
+        if (this.patientList == null || this.caregiverList == null) {
+            return true;
         }
+        Patient patient = searchInList(this.comboBoxPatientSelection.getSelectionModel().getSelectedItem());
+        Caregiver caregiver =
+                searchCaregiverInList(this.comboBoxCaregiverSelection.getSelectionModel().getSelectedItem());
+        return (patient == null || treatment.getPid() == patient.getPid())
+                && (caregiver == null || treatment.getCid() == caregiver.getCid());
     }
 
     /**
-     * Creates the data entries for the patient and caregiver comboboxes.
+     * Creates the data entries for the patient and caregiver comboboxes. The patients and caregivers are read on
+     * virtual threads and added to the comboboxes when they have arrived.
      */
     private void createComboBoxData() {
         PatientDao dao = DaoFactory.getDaoFactory().createPatientDAO();
-        try {
-            patientList = (ArrayList<Patient>) dao.readAll();
+        FxAsync.whenDone(AsyncDao.supplyAsync(dao::readAll), patients -> {
+            this.patientList = new ArrayList<>(patients);
             this.patientSelection.add("alle");
-            for (Patient patient: patientList) {
+            for (Patient patient: this.patientList) {
                 this.patientSelection.add(patient.getSurname());
             }
-        } catch (SQLException exception) {
-            exception.printStackTrace();
-        }
+        });
 
         CaregiverDAO daoCaregiver = DaoFactory.getDaoFactory().createCaregiverDAO();
-        try {
-            caregiverList = (ArrayList<Caregiver>) daoCaregiver.readAll();
+        FxAsync.whenDone(AsyncDao.supplyAsync(daoCaregiver::readAll), caregivers -> {
+            this.caregiverList = new ArrayList<>(caregivers);
             this.caregiverSelection.add("alle");
-            for (Caregiver caregiver: caregiverList) {
+            for (Caregiver caregiver: this.caregiverList) {
                 this.caregiverSelection.add(caregiver.getSurname());
             }
-        } catch (SQLException exception) {
-            exception.printStackTrace();
-        }
-
+        });
     }
 
 
@@ -194,26 +225,7 @@ public class AllTreatmentController {
      */
     @FXML
     public void handleComboBox() {
-        String selectedPatient = this.comboBoxPatientSelection.getSelectionModel().getSelectedItem();
-        this.treatments.clear();
-        this.dao = DaoFactory.getDaoFactory().createTreatmentDao();
-
-        if (selectedPatient.equals("alle")) {
-            try {
-                this.treatments.addAll(this.dao.readAll());
-            } catch (SQLException exception) {
-                exception.printStackTrace();
-            }
-        }
-
-        Patient patient = searchInList(selectedPatient);
-        if (patient !=null) {
-            try {
-                this.treatments.addAll(this.dao.readTreatmentsByPid(patient.getPid()));
-            } catch (SQLException exception) {
-                exception.printStackTrace();
-            }
-        }
+        showSelectedTreatments();
     }
 
     /**
@@ -221,34 +233,44 @@ public class AllTreatmentController {
      */
     @FXML
     public void handleCaregiverComboBox(ActionEvent actionEvent) {
-        String selectedCaregiver = this.comboBoxPatientSelection.getSelectionModel().getSelectedItem();
-        this.treatments.clear();
-        this.dao = DaoFactory.getDaoFactory().createTreatmentDao();
+        showSelectedTreatments();
+    }
 
-        if (selectedCaregiver.equals("alle")) {
-            try {
-                this.treatments.addAll(this.dao.readAll());
-            } catch (SQLException exception) {
-                exception.printStackTrace();
-            }
+    /**
+     * Shows the treatments of the patient and the caregiver selected in the comboboxes. Both selections are combined
+     * into one query, "alle" does not filter. The query runs on a virtual thread; if the selection changes again
+     * before it returns, its result is dropped.
+     */
+    private void showSelectedTreatments() {
+        TreatmentCriteria criteria = new TreatmentCriteria().withoutRemarks();
+        Patient patient = searchInList(this.comboBoxPatientSelection.getSelectionModel().getSelectedItem());
+        if (patient != null) {
+            criteria.withPatient(patient.getPid());
         }
-
-        Caregiver caregiver = searchCaregiverInList(selectedCaregiver);
-        if (caregiver !=null) {
-            try {
-                this.treatments.addAll(this.dao.readTreatmentsByCid(caregiver.getCid()));
-            } catch (SQLException exception) {
-                exception.printStackTrace();
-            }
+        Caregiver caregiver =
+                searchCaregiverInList(this.comboBoxCaregiverSelection.getSelectionModel().getSelectedItem());
+        if (caregiver != null) {
+            criteria.withCaregiver(caregiver.getCid());
         }
+        this.dao = DaoFactory.getDaoFactory().createTreatmentDao();
+        TreatmentDao treatmentDao = this.dao;
+        long request = ++this.selectionRequest;
+        FxAsync.whenDone(AsyncDao.supplyAsync(() -> treatmentDao.readByCriteria(criteria)), treatments -> {
+            if (request == this.selectionRequest) {
+                this.treatments.setAll(treatments);
+            }
+        });
     }
 
     /**
      * Searches for a caregiver in the caregiver list.
      * @param surname The surname of the caregiver to search for.
-     * @return The caregiver if found, null otherwise.
+     * @return The caregiver if found, null otherwise or while the caregivers are still being read.
      */
     private Caregiver searchCaregiverInList(String surname) {
+        if (this.caregiverList == null) {
+            return null;
+        }
         for (Caregiver caregiver : this.caregiverList) {
             if (caregiver.getSurname().equals(surname)) {
                 return caregiver;
@@ -260,9 +282,12 @@ public class AllTreatmentController {
     /**
      * Searches for a patient in the patient list.
      * @param surname The surname of the patient to search for.
-     * @return The patient if found, null otherwise.
+     * @return The patient if found, null otherwise or while the patients are still being read.
      */
     private Patient searchInList(String surname) {
+        if (this.patientList == null) {
+            return null;
+        }
         for (Patient patient : this.patientList) {
             if (patient.getSurname().equals(surname)) {
                 return patient;
@@ -333,13 +358,13 @@ public class AllTreatmentController {
         alert.showAndWait();
     }
     /**
-     * Deletes the specified Caregiver from the database.
+     * Deletes the specified treatment from the database.
      *
-     * @param treatment The Caregiver to be deleted.
+     * @param treatment The treatment to be deleted.
      * @throws SQLException If an SQL error occurs during the deletion.
      */
     private void deleteTreatment(Treatment treatment) throws SQLException {
-        DaoFactory.getDaoFactory().createCaregiverDAO().deleteById(treatment.getCid());
+        DaoFactory.getDaoFactory().createTreatmentDao().deleteById(treatment.getTid());
     }
 
     /**
@@ -14,17 +14,16 @@ import javafx.scene.input.KeyEvent;
 import javafx.stage.Stage;
 import javafx.application.Platform;
 
-import de.hitec.nhplus.model.User;
 import de.hitec.nhplus.service.AuthenticationService;
-import de.hitec.nhplus.datastorage.ConnectionBuilder;
+import de.hitec.nhplus.datastorage.AsyncDao;
+import de.hitec.nhplus.datastorage.DaoFactory;
+import de.hitec.nhplus.utils.FxAsync;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.scene.layout.BorderPane;
 
 import java.io.IOException;
 import java.net.URL;
-import java.sql.Connection;
-import java.sql.SQLException;
 import java.util.Objects;
 import java.util.ResourceBundle;
 
@@ -49,11 +48,10 @@ public class LoginController implements Initializable {
 
     /**
      * The constructor initializes the authentication service by creating a new instance
-     * of the AuthenticationService class with a database connection.
+     * of the AuthenticationService class with a UserDao from the DaoFactory.
      */
     public LoginController() {
-        Connection connection = ConnectionBuilder.getConnection();
-        this.authenticationService = new AuthenticationService(connection);
+        this.authenticationService = new AuthenticationService(DaoFactory.getDaoFactory().createUserDAO());
     }
 
     /**
@@ -99,7 +97,7 @@ public class LoginController implements Initializable {
     /**
      * Handles the login process when triggered by an ActionEvent.
      * This method retrieves the email and password from input fields,
-     * validates them, and attempts to authenticate the user. If authentication
+     * validates them, and attempts to authenticate the user on a virtual thread. If authentication
      * is successful, it displays a welcome message, sets the user session, closes
      * the login window, and opens the main application window. If authentication
      * fails, it displays an error message. Database connectivity errors are also handled.
@@ -115,25 +113,37 @@ public class LoginController implements Initializable {
             return;
         }
 
-        try {
-            User user = authenticationService.authenticate(email, password);
+        Stage loginStage = (Stage) ((Node) event.getSource()).getScene().getWindow();
+        setInputDisabled(true);
+        FxAsync.whenDone(AsyncDao.supplyAsync(() -> authenticationService.authenticate(email, password)), user -> {
+            setInputDisabled(false);
             if (user != null) {
                 showAlert(Alert.AlertType.INFORMATION, "Login Erfolgreich", "Willkommen, " + user.getEmail() + "!");
 
                 SessionManager.getInstance().setUserSession(user);
 
-                Stage loginStage = (Stage) ((Node) event.getSource()).getScene().getWindow();
                 loginStage.close();
 
                 openMainWindow();
             } else {
                 showAlert(Alert.AlertType.ERROR, "Login Fehlgeschlagen", "Unbekannte Email oder Passwort.");
             }
-        } catch (SQLException exception) {
+        }, exception -> {
+            setInputDisabled(false);
             exception.printStackTrace();
             showAlert(Alert.AlertType.ERROR, "Datenbankfehler", "Ein Fehler ist bei der Datenbankverbindung aufgetreten.");
-        }
+        });
     }
+
+    /**
+     * Disables the input fields while the user is authenticated, so the login is not started twice.
+     * @param disabled true to disable the fields, false to enable them again
+     */
+    private void setInputDisabled(boolean disabled) {
+        emailField.setDisable(disabled);
+        passwordField.setDisable(disabled);
+    }
+
     /**
      * Handles the cancellation action by exiting the application.
      * This method is invoked when the cancellation action is triggered,
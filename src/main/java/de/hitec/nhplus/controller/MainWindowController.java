@@ -1,6 +1,7 @@
 package de.hitec.nhplus.controller;
 
 import de.hitec.nhplus.Main;
+import de.hitec.nhplus.datastorage.WriteBehindQueue;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
@@ -73,6 +74,7 @@ public class MainWindowController {
     @FXML
     private void handleShowAllPatient() {
         if (!isUserLoggedIn()) return;
+        WriteBehindQueue.flushAll();
         FXMLLoader loader = new FXMLLoader(Main.class.getResource("/de/hitec/nhplus/Views/AllPatientView.fxml"));
         try {
             mainBorderPane.setCenter(loader.load());
@@ -87,6 +89,7 @@ public class MainWindowController {
     @FXML
     private void handleShowAllTreatments() {
         if (!isUserLoggedIn()) return;
+        WriteBehindQueue.flushAll();
         FXMLLoader loader = new FXMLLoader(Main.class.getResource("/de/hitec/nhplus/Views/AllTreatmentView.fxml"));
         try {
             mainBorderPane.setCenter(loader.load());
@@ -101,6 +104,7 @@ public class MainWindowController {
     @FXML
     public void handleShowAllCaregiver(ActionEvent actionEvent) {
         if (!isUserLoggedIn()) return;
+        WriteBehindQueue.flushAll();
         FXMLLoader loader = new FXMLLoader(Main.class.getResource("/de/hitec/nhplus/Views/AllCaregiverView.fxml"));
         try {
             mainBorderPane.setCenter(loader.load());
@@ -110,9 +114,10 @@ public class MainWindowController {
     }
 
     /**
-     * Handles the event when the "Show All Medication" button is clicked.
+     * Handles the event when the "Logout" button is clicked. Pending edits are written before the session ends.
      */
     public void handleLogout(ActionEvent actionEvent) {
+        WriteBehindQueue.flushAll().join();
         SessionManager.getInstance().logout();
         loadLoginPage();
         setLogoutButtonVisible(false);
@@ -10,6 +10,7 @@ import javafx.stage.Stage;
 import de.hitec.nhplus.model.Patient;
 import de.hitec.nhplus.model.Treatment;
 import de.hitec.nhplus.utils.DateConverter;
+import de.hitec.nhplus.utils.InputValidator;
 import javafx.util.StringConverter;
 
 import java.sql.SQLException;
@@ -150,18 +151,9 @@ public class NewTreatmentController {
      * @return true if the input data is invalid, false otherwise
      */
     private boolean areInputDataInvalid() {
-        if (this.textFieldBegin.getText() == null || this.textFieldEnd.getText() == null) {
-            return true;
-        }
-        try {
-            LocalTime begin = DateConverter.convertStringToLocalTime(this.textFieldBegin.getText());
-            LocalTime end = DateConverter.convertStringToLocalTime(this.textFieldEnd.getText());
-            if (!end.isAfter(begin)) {
-                return true;
-            }
-        } catch (Exception exception) {
-            return true;
-        }
-        return this.textFieldDescription.getText().isBlank() || this.datePicker.getValue() == null;
+        LocalDate date = this.datePicker.getValue();
+        return InputValidator.checkTreatment(date == null ? null : DateConverter.convertLocalDateToString(date),
+                this.textFieldBegin.getText(), this.textFieldEnd.getText(),
+                this.textFieldDescription.getText()) != null;
     }
 }
\ No newline at end of file
@@ -1,10 +1,14 @@
 package de.hitec.nhplus.controller;
 
+import de.hitec.nhplus.datastorage.DaoFactory;
+import de.hitec.nhplus.datastorage.IdentityMap;
 import de.hitec.nhplus.model.User;
 
 /**
  * The SessionManager class is a singleton class that manages the user session.
  * It stores the user session and provides methods to access and clear the session.
+ * Every session gets its own {@link IdentityMap}, which the DAOs of the {@link DaoFactory} share until the session
+ * is cleared.
  */
 public class SessionManager {
     private static SessionManager instance;
@@ -29,8 +33,13 @@ public class SessionManager {
         return instance;
     }
 
+    /**
+     * Starts the session of the given user with a new identity map.
+     * @param user the user that logged in
+     */
     public void setUserSession(User user) {
         this.userSession = user;
+        DaoFactory.getDaoFactory().setIdentityMap(user == null ? null : new IdentityMap());
     }
 
     public User getUserSession() {
@@ -38,10 +47,11 @@ public class SessionManager {
     }
 
     /**
-     * Sets the user session to null.
+     * Sets the user session to null and drops its identity map.
      */
     public void clearSession() {
         this.userSession = null;
+        DaoFactory.getDaoFactory().setIdentityMap(null);
     }
 
     /**
@@ -53,10 +63,11 @@ public class SessionManager {
     }
 
     /**
-     * Logs out the user by setting the user session to null.
+     * Logs out the user by setting the user session to null and dropping its identity map.
      */
     public void logout() {
         userSession = null;
+        DaoFactory.getDaoFactory().setIdentityMap(null);
     }
 }
 
@@ -1,8 +1,7 @@
 package de.hitec.nhplus.controller;
 
-import de.hitec.nhplus.datastorage.CaregiverDAO;
+import de.hitec.nhplus.datastorage.AsyncDao;
 import de.hitec.nhplus.datastorage.DaoFactory;
-import de.hitec.nhplus.datastorage.PatientDao;
 import de.hitec.nhplus.datastorage.TreatmentDao;
 import de.hitec.nhplus.model.Caregiver;
 import javafx.fxml.FXML;
@@ -10,7 +9,9 @@ import javafx.scene.control.*;
 import javafx.stage.Stage;
 import de.hitec.nhplus.model.Patient;
 import de.hitec.nhplus.model.Treatment;
+import de.hitec.nhplus.model.TreatmentDetail;
 import de.hitec.nhplus.utils.DateConverter;
+import de.hitec.nhplus.utils.FxAsync;
 
 import java.sql.SQLException;
 import java.time.LocalDate;
@@ -51,6 +52,9 @@ public class TreatmentController {
     @FXML
     private DatePicker datePicker;
 
+    @FXML
+    private Button btnChange;
+
     private AllTreatmentController controller;
     private Stage stage;
     private Patient patient;
@@ -59,6 +63,9 @@ public class TreatmentController {
 
     /**
      * Initializes the controller with the given parameters. called automatically when the associated FXML document is loaded.
+     * The patient and the caregiver of the treatment are read together with the treatment in one joined query on a
+     * virtual thread and shown when they have arrived. The remarks, which the list of treatments does not read, are
+     * loaded with them. Until then, the form is disabled, so an empty form cannot overwrite the treatment.
      * @param controller the AllTreatmentController
      * @param stage the stage (JavaFX)
      * @param treatment the treatment to be updated
@@ -66,16 +73,34 @@ public class TreatmentController {
     public void initializeController(AllTreatmentController controller, Stage stage, Treatment treatment) {
         this.stage = stage;
         this.controller= controller;
-        PatientDao pDao = DaoFactory.getDaoFactory().createPatientDAO();
-        CaregiverDAO cDao = DaoFactory.getDaoFactory().createCaregiverDAO();
-        try {
-            this.patient = pDao.read((int) treatment.getPid());
-            this.caregiver = cDao.read((int) treatment.getCid());
-            this.treatment = treatment;
+        this.treatment = treatment;
+        setFormDisabled(true);
+        TreatmentDao dao = DaoFactory.getDaoFactory().createTreatmentDao();
+        FxAsync.whenDone(AsyncDao.supplyAsync(() -> dao.readDetail(treatment.getTid())), (TreatmentDetail detail) -> {
+            if (detail == null) {
+                return;
+            }
+            if (!this.treatment.isRemarksLoaded()) {
+                this.treatment.setRemarks(detail.getTreatment().getRemarks());
+            }
+            this.patient = detail.getPatient();
+            this.caregiver = detail.getCaregiver();
             showData();
-        } catch (SQLException exception) {
-            exception.printStackTrace();
-        }
+            setFormDisabled(false);
+        });
+    }
+
+    /**
+     * Disables or enables the input fields and the button to change the treatment.
+     * @param disabled true to disable the form
+     */
+    private void setFormDisabled(boolean disabled) {
+        this.datePicker.setDisable(disabled);
+        this.textFieldBegin.setDisable(disabled);
+        this.textFieldEnd.setDisable(disabled);
+        this.textFieldDescription.setDisable(disabled);
+        this.textAreaRemarks.setDisable(disabled);
+        this.btnChange.setDisable(disabled);
     }
 
     /**
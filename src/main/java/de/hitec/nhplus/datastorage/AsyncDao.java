@@ -0,0 +1,189 @@
+package de.hitec.nhplus.datastorage;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * The AsyncDao class runs the calls of a {@link Dao} on virtual threads and returns their results as
+ * <code>CompletableFuture</code>s, so the JavaFX application thread does not wait for the database. A failed call
+ * completes its future exceptionally with the <code>SQLException</code>.
+ * <p>
+ * All AsyncDaos share one executor. At most as many calls run at the same time as the {@link ConnectionPool} has
+ * connections, further calls wait on a virtual thread for a permit instead of piling up in the pool. The number can be
+ * set with the system property <code>nhplus.async.permits</code>. To show a result in the view, complete it on the
+ * JavaFX application thread with {@link de.hitec.nhplus.utils.FxAsync}.
+ * @param <T> Object of the wrapped DAO
+ */
+public class AsyncDao<T> {
+
+    private static final ExecutorService EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+    private static final int PERMIT_COUNT = Integer.getInteger("nhplus.async.permits",
+            Integer.getInteger("nhplus.db.readers", 4) + 1);
+    private static final Semaphore PERMITS = new Semaphore(PERMIT_COUNT, true);
+
+    private final Dao<T> dao;
+
+    /**
+     * A database call to run asynchronously.
+     * @param <R> the result of the call
+     */
+    @FunctionalInterface
+    public interface SqlTask<R> {
+        R call() throws SQLException;
+    }
+
+    /**
+     * Constructor to wrap the given DAO.
+     * @param dao the DAO to run the calls on
+     */
+    public AsyncDao(Dao<T> dao) {
+        this.dao = dao;
+    }
+
+    /**
+     * Runs the given call on a virtual thread, as soon as a permit is free.
+     * @param task the call to run, e.g. a query of a DAO or a service
+     * @return a future completed with the result of the call
+     */
+    public static <R> CompletableFuture<R> supplyAsync(SqlTask<R> task) {
+        CompletableFuture<R> future = new CompletableFuture<>();
+        EXECUTOR.execute(() -> {
+            try {
+                PERMITS.acquire();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                future.completeExceptionally(exception);
+                return;
+            }
+            try {
+                future.complete(task.call());
+            } catch (Throwable exception) {
+                future.completeExceptionally(exception);
+            } finally {
+                PERMITS.release();
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Returns the number of calls that may run at the same time.
+     * @return the number of permits
+     */
+    static int getPermitCount() {
+        return PERMIT_COUNT;
+    }
+
+    /**
+     * Returns the wrapped DAO.
+     * @return the DAO the calls run on
+     */
+    public Dao<T> getDao() {
+        return this.dao;
+    }
+
+    /**
+     * Creates a new object in the database.
+     * @param t the object to create
+     * @return a future completed when the object was created
+     */
+    public CompletableFuture<Void> create(T t) {
+        return supplyAsync(() -> {
+            this.dao.create(t);
+            return null;
+        });
+    }
+
+    /**
+     * Reads an object from the database by its ID (Primary Key).
+     * @param key the ID of the object
+     * @return a future completed with the object, or null if there is none
+     */
+    public CompletableFuture<T> read(long key) {
+        return supplyAsync(() -> this.dao.read(key));
+    }
+
+    /**
+     * Reads all objects from the database.
+     * @return a future completed with a list of all objects
+     */
+    public CompletableFuture<List<T>> readAll() {
+        return supplyAsync(this.dao::readAll);
+    }
+
+    /**
+     * Reads one page of objects, see {@link Dao#readPage(PageKey, int, PageOrder)}.
+     * @param afterKey the key of the last object of the previous page, or null for the first page
+     * @param limit the maximum number of objects of the page
+     * @param order the sort order of the pages
+     * @return a future completed with the page
+     */
+    public CompletableFuture<Page<T>> readPage(PageKey afterKey, int limit, PageOrder order) {
+        return supplyAsync(() -> this.dao.readPage(afterKey, limit, order));
+    }
+
+    /**
+     * Updates an object in the database.
+     * @param t the object to update
+     * @return a future completed when the object was updated
+     */
+    public CompletableFuture<Void> update(T t) {
+        return supplyAsync(() -> {
+            this.dao.update(t);
+            return null;
+        });
+    }
+
+    /**
+     * Deletes an object from the database by its ID (Primary Key).
+     * @param key the ID of the object
+     * @return a future completed when the object was deleted
+     */
+    public CompletableFuture<Void> deleteById(long key) {
+        return supplyAsync(() -> {
+            this.dao.deleteById(key);
+            return null;
+        });
+    }
+
+    /**
+     * Creates all given objects in the database within one transaction.
+     * @param objects the objects to create
+     * @return a future completed when the objects were created
+     */
+    public CompletableFuture<Void> createAll(Collection<T> objects) {
+        return supplyAsync(() -> {
+            this.dao.createAll(objects);
+            return null;
+        });
+    }
+
+    /**
+     * Updates all given objects in the database within one transaction.
+     * @param objects the objects to update
+     * @return a future completed when the objects were updated
+     */
+    public CompletableFuture<Void> updateAll(Collection<T> objects) {
+        return supplyAsync(() -> {
+            this.dao.updateAll(objects);
+            return null;
+        });
+    }
+
+    /**
+     * Deletes all objects with the given IDs from the database within one transaction.
+     * @param keys the IDs of the objects
+     * @return a future completed when the objects were deleted
+     */
+    public CompletableFuture<Void> deleteAllById(Collection<Long> keys) {
+        return supplyAsync(() -> {
+            this.dao.deleteAllById(keys);
+            return null;
+        });
+    }
+}
@@ -0,0 +1,147 @@
+package de.hitec.nhplus.datastorage;
+
+import de.hitec.nhplus.model.CareMinutes;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The CareMinutesDao class reads the minutes of care per caregiver and per patient, month and description. The
+ * numbers are kept in the summary tables <code>care_minutes_caregiver</code> and <code>care_minutes_patient</code>,
+ * which triggers on the treatment table update with every insert, update and delete of a treatment. A report of a
+ * month therefore reads a few summary rows by index instead of all treatments. A month is stored as
+ * <code>yyyyMM</code>, e.g. 202402, and the duration of a treatment is the difference of its end and begin minute;
+ * a treatment ending before it begins lasts over midnight.
+ */
+public class CareMinutesDao {
+
+    private static final String REBUILD_CAREGIVER_MINUTES =
+            "INSERT INTO care_minutes_caregiver (cid, month, description, minutes, treatments) " +
+            "SELECT cid, " + month("") + ", description, SUM(" + minutes("") + "), COUNT(*) FROM treatment " +
+            "GROUP BY 1, 2, 3";
+    private static final String REBUILD_PATIENT_MINUTES =
+            "INSERT INTO care_minutes_patient (pid, month, description, minutes, treatments) " +
+            "SELECT pid, " + month("") + ", description, SUM(" + minutes("") + "), COUNT(*) FROM treatment " +
+            "GROUP BY 1, 2, 3";
+
+    private final ConnectionSource source;
+
+    /**
+     * Constructor to initiate an object of class <code>CareMinutesDao</code> with the given parameter.
+     * @param source the source of the connections, e.g. the connection pool
+     */
+    public CareMinutesDao(ConnectionSource source) {
+        this.source = source;
+    }
+
+    /**
+     * Returns the SQL expression of the month of a treatment row as <code>yyyyMM</code>.
+     * @param row the prefix of the row, e.g. <code>new.</code> in a trigger, or an empty string
+     */
+    private static String month(String row) {
+        return "CAST(strftime('%Y%m', " + row + "treatment_date) AS INTEGER)";
+    }
+
+    /**
+     * Returns the SQL expression of the duration of a treatment row in minutes.
+     * @param row the prefix of the row, e.g. <code>new.</code> in a trigger, or an empty string
+     */
+    private static String minutes(String row) {
+        return "((" + row + "end_minute - " + row + "begin_minute + 1440) % 1440)";
+    }
+
+    /**
+     * Reads the minutes of one caregiver per month and description.
+     * @param cid the ID of the caregiver
+     * @param from the first month of the report
+     * @param until the last month of the report
+     * @return the minutes ordered by month and description
+     * @throws SQLException if an error occurs while reading
+     */
+    public List<CareMinutes> readByCaregiver(long cid, YearMonth from, YearMonth until) throws SQLException {
+        return read("SELECT cid, month, description, minutes, treatments FROM care_minutes_caregiver " +
+                "WHERE cid = ? AND month BETWEEN ? AND ? ORDER BY month, description", cid, toMonth(from), toMonth(until));
+    }
+
+    /**
+     * Reads the minutes of one patient per month and description.
+     * @param pid the ID of the patient
+     * @param from the first month of the report
+     * @param until the last month of the report
+     * @return the minutes ordered by month and description
+     * @throws SQLException if an error occurs while reading
+     */
+    public List<CareMinutes> readByPatient(long pid, YearMonth from, YearMonth until) throws SQLException {
+        return read("SELECT pid, month, description, minutes, treatments FROM care_minutes_patient " +
+                "WHERE pid = ? AND month BETWEEN ? AND ? ORDER BY month, description", pid, toMonth(from), toMonth(until));
+    }
+
+    /**
+     * Reads the minutes of all caregivers in one month.
+     * @param month the month of the report
+     * @return the minutes ordered by caregiver and description
+     * @throws SQLException if an error occurs while reading
+     */
+    public List<CareMinutes> readCaregiversOfMonth(YearMonth month) throws SQLException {
+        return read("SELECT cid, month, description, minutes, treatments FROM care_minutes_caregiver " +
+                "WHERE month = ? ORDER BY cid, description", toMonth(month));
+    }
+
+    /**
+     * Reads the minutes of all patients in one month.
+     * @param month the month of the report
+     * @return the minutes ordered by patient and description
+     * @throws SQLException if an error occurs while reading
+     */
+    public List<CareMinutes> readPatientsOfMonth(YearMonth month) throws SQLException {
+        return read("SELECT pid, month, description, minutes, treatments FROM care_minutes_patient " +
+                "WHERE month = ? ORDER BY pid, description", toMonth(month));
+    }
+
+    /**
+     * Computes the summary tables from all treatments again in one transaction, e.g. after the treatment table was
+     * changed with the triggers switched off.
+     * @return the number of summary rows written
+     * @throws SQLException if an error occurs; the old summary is kept then
+     */
+    public int rebuild() throws SQLException {
+        return new TransactionTemplate(this.source).execute(unit -> {
+            try (Statement statement = unit.getConnection().createStatement()) {
+                statement.executeUpdate("DELETE FROM care_minutes_caregiver");
+                statement.executeUpdate("DELETE FROM care_minutes_patient");
+                return statement.executeUpdate(REBUILD_CAREGIVER_MINUTES)
+                        + statement.executeUpdate(REBUILD_PATIENT_MINUTES);
+            }
+        });
+    }
+
+    private List<CareMinutes> read(String sql, long... parameters) throws SQLException {
+        Connection connection = this.source.acquireReader();
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int index = 0; index < parameters.length; index++) {
+                statement.setLong(index + 1, parameters[index]);
+            }
+            List<CareMinutes> list = new ArrayList<>();
+            try (ResultSet result = statement.executeQuery()) {
+                while (result.next()) {
+                    int month = result.getInt(2);
+                    list.add(new CareMinutes(result.getLong(1), YearMonth.of(month / 100, month % 100),
+                            result.getString(3), result.getLong(4), result.getLong(5)));
+                }
+            }
+            return list;
+        } finally {
+            this.source.release(connection);
+        }
+    }
+
+    private static long toMonth(YearMonth month) {
+        return month.getYear() * 100L + month.getMonthValue();
+    }
+}
@@ -23,6 +23,14 @@ public class CaregiverDAO extends DaoImp<Caregiver> {
         super(connection);
     }
 
+    /**
+     * The constructor initializes the CaregiverDAO with a source of database connections.
+     * @param source the source of the reader and writer connections
+     */
+    public CaregiverDAO(ConnectionSource source) {
+        super(source);
+    }
+
     /**
      * Returns a PreparedStatement to create a new Caregiver in the database.
      * @param caregiver the Caregiver to create
@@ -34,7 +42,7 @@ public class CaregiverDAO extends DaoImp<Caregiver> {
         try {
             final String SQL = "INSERT INTO caregiver (firstname, surname, phonenumber, locked, datecreated) " +
                     "VALUES (?, ?, ?, ?, ?)";
-            preparedStatement = this.connection.prepareStatement(SQL);
+            preparedStatement = this.prepare(SQL);
             preparedStatement.setString(1, caregiver.getFirstName());
             preparedStatement.setString(2, caregiver.getSurname());
             preparedStatement.setString(3, caregiver.getPhoneNumber());
@@ -56,7 +64,7 @@ public class CaregiverDAO extends DaoImp<Caregiver> {
         PreparedStatement preparedStatement = null;
         try {
             final String SQL = "SELECT * FROM caregiver WHERE cid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
+            preparedStatement = this.prepare(SQL);
             preparedStatement.setLong(1, cid);
         } catch (SQLException exception) {
             exception.printStackTrace();
@@ -64,6 +72,45 @@ public class CaregiverDAO extends DaoImp<Caregiver> {
         return preparedStatement;
     }
 
+    /**
+     * Returns the name of the table of the caregivers.
+     * @return the name of the table
+     */
+    @Override
+    protected String getTableName() {
+        return "caregiver";
+    }
+
+    /**
+     * Returns the name of the primary key column of the caregivers.
+     * @return the name of the primary key column
+     */
+    @Override
+    protected String getIdColumn() {
+        return "cid";
+    }
+
+    /**
+     * Returns the ID of the given Caregiver.
+     * @param caregiver the Caregiver
+     * @return the ID of the Caregiver
+     */
+    @Override
+    protected long getKey(Caregiver caregiver) {
+        return caregiver.getCid();
+    }
+
+    /**
+     * Returns a copy of the given Caregiver, whose properties are not shared with it.
+     * @param caregiver the Caregiver
+     * @return the copy of the Caregiver
+     */
+    @Override
+    public Caregiver detach(Caregiver caregiver) {
+        return new Caregiver(caregiver.getCid(), caregiver.getFirstName(), caregiver.getSurname(),
+                caregiver.getPhoneNumber(), caregiver.isLocked(), caregiver.getDateCreated());
+    }
+
     /**
      * Returns a Caregiver instance from a ResultSet.
      * @param resultSet the ResultSet to get the Caregiver from
@@ -89,7 +136,7 @@ public class CaregiverDAO extends DaoImp<Caregiver> {
         PreparedStatement preparedStatement = null;
         try {
             final String SQL = "SELECT * FROM caregiver";
-            preparedStatement = this.connection.prepareStatement(SQL);
+            preparedStatement = this.prepare(SQL);
         } catch (SQLException exception) {
             exception.printStackTrace();
         }
@@ -126,7 +173,7 @@ public class CaregiverDAO extends DaoImp<Caregiver> {
         PreparedStatement preparedStatement = null;
         try {
             final String SQL = "UPDATE caregiver SET firstname = ?, surname = ?, phonenumber = ?, locked = ?, datecreated = ? WHERE cid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
+            preparedStatement = this.prepare(SQL);
             preparedStatement.setString(1, caregiver.getFirstName());
             preparedStatement.setString(2, caregiver.getSurname());
             preparedStatement.setString(3, caregiver.getPhoneNumber());
@@ -149,7 +196,7 @@ public class CaregiverDAO extends DaoImp<Caregiver> {
         PreparedStatement preparedStatement = null;
         try {
             final String SQL = "DELETE FROM caregiver WHERE cid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
+            preparedStatement = this.prepare(SQL);
             preparedStatement.setLong(1, cid);
         } catch (SQLException exception) {
             exception.printStackTrace();
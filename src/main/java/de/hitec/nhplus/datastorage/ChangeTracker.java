@@ -0,0 +1,257 @@
+package de.hitec.nhplus.datastorage;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * The ChangeTracker class tells a view which rows of its table have changed since it read them. Triggers write every
+ * insert, update and delete of patients, caregivers and treatments to the table <code>change_log</code>, numbered by
+ * a sequence that only grows. The tracker remembers the last sequence number it has seen and reads only the entries
+ * after it, by index, so a refresh costs work in proportion to the changes instead of to the size of the table.
+ * <p>
+ * A poll does not even ask SQLite while the version of the table in the {@link TableVersions} of the DAO is
+ * unchanged. The version is bumped by every write of the DAOs and, through <code>PRAGMA data_version</code>, by the
+ * writes of other terminals. If more than <code>nhplus.changeLog.maxChanges</code> rows (default 1000) have changed,
+ * or the entries have been pruned in the meantime, the poll asks the view to read the whole table again instead.
+ * <p>
+ * Entries older than <code>nhplus.changeLog.retentionHours</code> (default 24) are deleted by {@link #prune}, which
+ * the application runs at startup and then every <code>nhplus.changeLog.pruneMinutes</code> minutes (default 60), so
+ * the change log does not grow without bound.
+ * @param <T> Object of the tracked table
+ */
+public class ChangeTracker<T> {
+
+    private static final int MAX_CHANGES = Integer.getInteger("nhplus.changeLog.maxChanges", 1000);
+    private static final long RETENTION_HOURS = Long.getLong("nhplus.changeLog.retentionHours", 24);
+    private static final long PRUNE_MINUTES = Long.getLong("nhplus.changeLog.pruneMinutes", 60);
+    private static final int PRUNE_BATCH_SIZE = 1000;
+    private static final String DELETE_EXPIRED = "DELETE FROM change_log WHERE seq IN (" +
+            "SELECT seq FROM change_log WHERE changed_at < ? ORDER BY seq LIMIT ?)";
+    private static ScheduledExecutorService pruner;
+
+    private final DaoImp<T> dao;
+    private long lastSeq;
+    private long lastVersion = -1;
+
+    /**
+     * The rows changed since the previous poll.
+     * @param changed the current state of the inserted and updated rows
+     * @param deleted the IDs of the deleted rows
+     * @param reload true if the view has to read the whole table again instead
+     * @param <T> Object of the tracked table
+     */
+    public record Changes<T>(List<T> changed, Set<Long> deleted, boolean reload) {
+
+        /**
+         * Tells whether nothing has to be done.
+         * @return true if no row has changed
+         */
+        public boolean isEmpty() {
+            return !reload && changed.isEmpty() && deleted.isEmpty();
+        }
+    }
+
+    /**
+     * Constructor to initiate a tracker for the table of the given DAO.
+     * @param dao the DAO of the table, which reads the changed rows
+     */
+    public ChangeTracker(DaoImp<T> dao) {
+        this.dao = dao;
+    }
+
+    /**
+     * Remembers the current end of the change log. Call it before the view reads the whole table, so no change in
+     * between gets lost; changes that are already part of the read are applied again without harm.
+     * @throws SQLException if an error occurs while reading the change log
+     */
+    public synchronized void start() throws SQLException {
+        this.lastVersion = currentVersion();
+        Connection connection = this.dao.getConnectionSource().acquireReader();
+        try {
+            this.lastSeq = queryLong(connection, "SELECT COALESCE(" +
+                    "(SELECT seq FROM sqlite_sequence WHERE name = 'change_log'), 0)");
+        } finally {
+            this.dao.getConnectionSource().release(connection);
+        }
+    }
+
+    /**
+     * Reads the rows of the table that have changed since the previous poll.
+     * @return the changes, possibly empty
+     * @throws SQLException if an error occurs while reading the changes
+     */
+    public synchronized Changes<T> poll() throws SQLException {
+        long version = currentVersion();
+        if (version >= 0 && version == this.lastVersion) {
+            return new Changes<>(List.of(), Set.of(), false);
+        }
+        Map<Long, String> operations = new LinkedHashMap<>();
+        long latestSeq;
+        boolean reload;
+        ConnectionSource source = this.dao.getConnectionSource();
+        Connection connection = source.acquireReader();
+        try {
+            latestSeq = queryLong(connection, "SELECT COALESCE(" +
+                    "(SELECT seq FROM sqlite_sequence WHERE name = 'change_log'), 0)");
+            long firstSeq = queryLong(connection, "SELECT COALESCE(MIN(seq), " +
+                    "(SELECT seq FROM sqlite_sequence WHERE name = 'change_log') + 1, 1) FROM change_log");
+            reload = firstSeq > this.lastSeq + 1;
+            if (!reload && latestSeq > this.lastSeq) {
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "SELECT row_id, operation FROM change_log " +
+                        "WHERE table_name = ? AND seq > ? AND seq <= ? ORDER BY seq LIMIT ?")) {
+                    statement.setString(1, this.dao.getTableName());
+                    statement.setLong(2, this.lastSeq);
+                    statement.setLong(3, latestSeq);
+                    statement.setInt(4, MAX_CHANGES + 1);
+                    int rows = 0;
+                    try (ResultSet result = statement.executeQuery()) {
+                        while (result.next()) {
+                            rows++;
+                            long key = result.getLong(1);
+                            operations.remove(key);
+                            operations.put(key, result.getString(2));
+                        }
+                    }
+                    reload = rows > MAX_CHANGES;
+                }
+            }
+        } finally {
+            source.release(connection);
+        }
+        this.lastSeq = Math.max(this.lastSeq, latestSeq);
+        this.lastVersion = version;
+        if (reload) {
+            return new Changes<>(List.of(), Set.of(), true);
+        }
+        Set<Long> deleted = new HashSet<>();
+        List<Long> upserted = new ArrayList<>();
+        operations.forEach((key, operation) -> {
+            if (operation.equals("DELETE")) {
+                deleted.add(key);
+            } else {
+                upserted.add(key);
+            }
+        });
+        List<T> changed = this.dao.refresh(upserted);
+        upserted.removeAll(changed.stream().map(this.dao::getKey).toList());
+        deleted.addAll(upserted);
+        return new Changes<>(changed, deleted, false);
+    }
+
+    /**
+     * Applies the given changes to the list of a view: changed rows replace their old objects or are appended,
+     * deleted rows and rows the view does not show anymore are removed. The list is walked once.
+     * @param items the list shown by the view
+     * @param changes the changes read by {@link #poll()}, not a reload
+     * @param shown tells whether the view shows the given object, e.g. with a filter of the view
+     */
+    public void applyTo(List<T> items, Changes<T> changes, Predicate<T> shown) {
+        Map<Long, T> changed = new LinkedHashMap<>();
+        for (T object : changes.changed()) {
+            changed.put(this.dao.getKey(object), object);
+        }
+        Set<Long> removed = new HashSet<>(changes.deleted());
+        for (int index = 0; index < items.size() && !changed.isEmpty(); index++) {
+            long key = this.dao.getKey(items.get(index));
+            T object = changed.remove(key);
+            if (object == null) {
+                continue;
+            }
+            if (shown.test(object)) {
+                items.set(index, object);
+            } else {
+                removed.add(key);
+            }
+        }
+        if (!removed.isEmpty()) {
+            items.removeIf(object -> removed.contains(this.dao.getKey(object)));
+        }
+        changed.values().stream().filter(shown).forEach(items::add);
+    }
+
+    /**
+     * Deletes the entries of the change log older than <code>nhplus.changeLog.retentionHours</code> in batches of
+     * 1000 rows, each in a short slot on the writer. A tracker that has not seen the deleted entries yet lets its
+     * view read the whole table again.
+     * @param source the source of the connections
+     * @return the number of deleted entries
+     * @throws SQLException if an error occurs; the batches deleted before stay deleted
+     */
+    public static long prune(ConnectionSource source) throws SQLException {
+        long cutoff = Instant.now().minus(Duration.ofHours(RETENTION_HOURS)).getEpochSecond();
+        long deleted = 0;
+        int rows;
+        do {
+            Connection writer = source.acquireWriter();
+            try (PreparedStatement statement = writer.prepareStatement(DELETE_EXPIRED)) {
+                statement.setLong(1, cutoff);
+                statement.setInt(2, PRUNE_BATCH_SIZE);
+                rows = statement.executeUpdate();
+            } finally {
+                source.release(writer);
+            }
+            deleted += rows;
+        } while (rows == PRUNE_BATCH_SIZE);
+        return deleted;
+    }
+
+    /**
+     * Prunes the change log now and then every <code>nhplus.changeLog.pruneMinutes</code> minutes on a background
+     * thread. Further calls have no effect until {@link #stopPruning()} is called.
+     * @param source the source of the connections
+     */
+    public static synchronized void startPruning(ConnectionSource source) {
+        if (pruner != null) {
+            return;
+        }
+        pruner = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "nhplus-change-log");
+            thread.setDaemon(true);
+            return thread;
+        });
+        pruner.scheduleWithFixedDelay(() -> {
+            try {
+                prune(source);
+            } catch (SQLException exception) {
+                exception.printStackTrace();
+            }
+        }, 0, Math.max(1, PRUNE_MINUTES), TimeUnit.MINUTES);
+    }
+
+    /**
+     * Stops the periodic pruning, e.g. before the connections are closed.
+     */
+    public static synchronized void stopPruning() {
+        if (pruner != null) {
+            pruner.shutdownNow();
+            pruner = null;
+        }
+    }
+
+    private long currentVersion() {
+        QueryCache queryCache = this.dao.getQueryCache();
+        return queryCache == null ? -1 : queryCache.getVersions().get(this.dao.getTableName());
+    }
+
+    private static long queryLong(Connection connection, String sql) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql);
+             ResultSet result = statement.executeQuery()) {
+            return result.next() ? result.getLong(1) : 0;
+        }
+    }
+}
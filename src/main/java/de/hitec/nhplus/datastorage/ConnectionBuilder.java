@@ -1,52 +1,102 @@
 package de.hitec.nhplus.datastorage;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
-import org.sqlite.SQLiteConfig;
-
 /**
- * The ConnectionBuilder class is a utility class to create and manage a connection to the SQLite database.
+ * The ConnectionBuilder class is a utility class to create and manage the connections to the SQLite database.
+ * It owns a {@link ConnectionPool} with several read-only connections and one writer connection. The pragmas of the
+ * connections are taken from the configured {@link DatabaseProfile}. Tests and benchmarks can inject another
+ * {@link ConnectionSource} instead, e.g. a copy of a prepared database in memory, see
+ * {@link #setConnectionSource(ConnectionSource)}.
  */
 public class ConnectionBuilder {
 
     private static final String DB_NAME = "nursingHome.db";
     private static final String URL = "jdbc:sqlite:db/" + DB_NAME;
 
-    private static Connection connection;
+    private static ConnectionPool pool;
+    private static ConnectionSource injectedSource;
+
+    /**
+     * Returns the connection pool of the SQLite database.
+     * If the pool is null, a new pool is created with the configured {@link DatabaseProfile} and the schema of the
+     * database is brought up to date by the {@link SchemaMigrator}.
+     * @return the connection pool of the SQLite database, or null if the database could not be opened or migrated
+     */
+    synchronized public static ConnectionPool getPool() {
+        if (ConnectionBuilder.pool == null) {
+            ConnectionPool connectionPool = null;
+            try {
+                connectionPool = new ConnectionPool(URL, DatabaseProfile.configured());
+                SchemaMigrator.migrate(connectionPool);
+                ConnectionBuilder.pool = connectionPool;
+            } catch (SQLException exception) {
+                System.out.println("Verbindung zur Datenbank konnte nicht aufgebaut werden!");
+                exception.printStackTrace();
+                if (connectionPool != null) {
+                    connectionPool.close();
+                }
+            }
+        }
+        return ConnectionBuilder.pool;
+    }
+
+    /**
+     * Returns the source of the connections to the database: the injected source, if there is one, or the connection
+     * pool.
+     * @return the connection source the application works with
+     */
+    synchronized public static ConnectionSource getConnectionSource() {
+        return ConnectionBuilder.injectedSource != null ? ConnectionBuilder.injectedSource : getPool();
+    }
+
+    /**
+     * Makes the application use the given connection source instead of the pool of <code>db/nursingHome.db</code>.
+     * The source is not closed by {@link #closeConnection()}, it belongs to the caller.
+     * @param source the source to use, or null to use the connection pool again
+     */
+    synchronized public static void setConnectionSource(ConnectionSource source) {
+        ConnectionBuilder.injectedSource = source;
+    }
+
+    /**
+     * Returns the JDBC URL of the SQLite database, e.g. to open a connection outside of the pool.
+     * @return the JDBC URL of the database
+     */
+    public static String getUrl() {
+        return URL;
+    }
 
     /**
-     * Returns a connection to the SQLite database.
-     * If the connection is null, a new connection is created.
-     * @return a connection to the SQLite database
+     * Returns the writer connection of the SQLite database without acquiring it from the pool.
+     * This is only meant for set up code and tests that run on a single thread; the DAOs created by
+     * {@link DaoFactory} use the pool.
+     * @return the writer connection to the SQLite database
      */
     synchronized public static Connection getConnection() {
-        try {
-            if (ConnectionBuilder.connection == null) {
-                SQLiteConfig configuration = new SQLiteConfig();
-                configuration.enforceForeignKeys(true);
-                ConnectionBuilder.connection = DriverManager.getConnection(URL, configuration.toProperties());
+        if (ConnectionBuilder.injectedSource != null) {
+            try {
+                Connection connection = ConnectionBuilder.injectedSource.acquireWriter();
+                ConnectionBuilder.injectedSource.release(connection);
+                return connection;
+            } catch (SQLException exception) {
+                exception.printStackTrace();
+                return null;
             }
-        } catch (SQLException exception) {
-            System.out.println("Verbindung zur Datenbank konnte nicht aufgebaut werden!");
-            exception.printStackTrace();
         }
-        return ConnectionBuilder.connection;
+        ConnectionPool connectionPool = getPool();
+        return connectionPool == null ? null : connectionPool.getWriter();
     }
 
     /**
-     * Closes the connection to the SQLite database.
-     * If the connection is not null, it is closed and set to null.
+     * Closes all connections to the SQLite database.
+     * If the pool is not null, it is closed and set to null.
      */
     synchronized public static void closeConnection() {
-        try {
-            if (ConnectionBuilder.connection != null) {
-                ConnectionBuilder.connection.close();
-                ConnectionBuilder.connection = null;
-            }
-        } catch (SQLException exception) {
-            exception.printStackTrace();
+        if (ConnectionBuilder.pool != null) {
+            ConnectionBuilder.pool.close();
+            ConnectionBuilder.pool = null;
         }
     }
 }
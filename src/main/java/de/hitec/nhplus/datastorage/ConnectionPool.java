@@ -0,0 +1,264 @@
+package de.hitec.nhplus.datastorage;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.sqlite.SQLiteConfig;
+
+/**
+ * The ConnectionPool class keeps several read-only connections and one writer connection to the SQLite database.
+ * The database runs in WAL mode, so readers do not block the writer and the writer does not block readers. Writes are
+ * serialized by a lock on the writer connection. A thread that holds the writer also reads from it, so it sees its
+ * own uncommitted changes.
+ */
+public class ConnectionPool implements ConnectionSource {
+
+    private static final int DEFAULT_READERS = 4;
+    private static final long DEFAULT_TIMEOUT_MILLIS = 30000;
+
+    private final Connection writer;
+    private final ReentrantLock writerLock = new ReentrantLock(true);
+    private final List<Connection> readers = new ArrayList<>();
+    private final BlockingQueue<Connection> idleReaders;
+    private final long timeoutMillis;
+    private final DatabaseProfile profile;
+
+    private final AtomicInteger inUse = new AtomicInteger();
+    private final AtomicLong acquisitions = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    /**
+     * Constructor to open the writer and the reader connections for the given database URL with the given profile.
+     * The number of readers can be set with the system property <code>nhplus.db.readers</code>.
+     * @param url the JDBC URL of the database
+     * @param profile the profile with the pragmas for the connections
+     * @throws SQLException if a connection could not be opened
+     */
+    public ConnectionPool(String url, DatabaseProfile profile) throws SQLException {
+        this(url, profile, Integer.getInteger("nhplus.db.readers", DEFAULT_READERS), DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Constructor to open the writer and the given number of reader connections.
+     * @param url the JDBC URL of the database
+     * @param profile the profile with the pragmas for the connections
+     * @param readerCount the number of read-only connections
+     * @param timeoutMillis how long to wait for a free connection before giving up
+     * @throws SQLException if a connection could not be opened
+     */
+    public ConnectionPool(String url, DatabaseProfile profile, int readerCount, long timeoutMillis)
+            throws SQLException {
+        this.timeoutMillis = timeoutMillis;
+        this.profile = profile;
+        this.idleReaders = new ArrayBlockingQueue<>(Math.max(1, readerCount));
+
+        SQLiteConfig writerConfiguration = new SQLiteConfig();
+        writerConfiguration.enforceForeignKeys(true);
+        profile.apply(writerConfiguration, true);
+        this.writer = DriverManager.getConnection(url, writerConfiguration.toProperties());
+
+        try {
+            for (int i = 0; i < Math.max(1, readerCount); i++) {
+                SQLiteConfig readerConfiguration = new SQLiteConfig();
+                readerConfiguration.enforceForeignKeys(true);
+                readerConfiguration.setReadOnly(true);
+                profile.apply(readerConfiguration, false);
+                Connection reader = DriverManager.getConnection(url, readerConfiguration.toProperties());
+                this.readers.add(reader);
+                this.idleReaders.add(reader);
+            }
+        } catch (SQLException exception) {
+            List<Connection> opened = new ArrayList<>(this.readers);
+            opened.add(this.writer);
+            closeAll(opened);
+            throw exception;
+        }
+    }
+
+    /**
+     * Acquires an idle reader. If the current thread holds the writer, the writer is returned instead.
+     * @return a connection to read from the database
+     * @throws SQLException if no reader became free within the timeout
+     */
+    @Override
+    public Connection acquireReader() throws SQLException {
+        if (this.writerLock.isHeldByCurrentThread()) {
+            return acquireWriter();
+        }
+        long start = System.nanoTime();
+        Connection reader;
+        try {
+            reader = this.idleReaders.poll(this.timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", exception);
+        }
+        if (reader == null) {
+            throw new SQLException("No database connection became free within " + this.timeoutMillis + " ms");
+        }
+        recordAcquisition(System.nanoTime() - start);
+        return reader;
+    }
+
+    /**
+     * Acquires the writer. Only one thread can hold the writer at a time, the same thread may acquire it repeatedly.
+     * @return the connection to write to the database
+     * @throws SQLException if the writer did not become free within the timeout
+     */
+    @Override
+    public Connection acquireWriter() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            if (!this.writerLock.tryLock(this.timeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("The database writer did not become free within " + this.timeoutMillis + " ms");
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the database writer", exception);
+        }
+        recordAcquisition(System.nanoTime() - start);
+        return this.writer;
+    }
+
+    /**
+     * Acquires the writer only if it is free right now or already held by the current thread. The caller does not
+     * queue behind the threads waiting for the writer.
+     * @return the connection to write to the database, or null if another thread holds it
+     */
+    @Override
+    public Connection tryAcquireWriter() {
+        if (!this.writerLock.tryLock()) {
+            return null;
+        }
+        recordAcquisition(0);
+        return this.writer;
+    }
+
+    /**
+     * Gives a connection back to the pool.
+     * @param connection the connection acquired before
+     */
+    @Override
+    public void release(Connection connection) {
+        if (connection == this.writer) {
+            this.inUse.decrementAndGet();
+            this.writerLock.unlock();
+        } else if (connection != null) {
+            this.inUse.decrementAndGet();
+            this.idleReaders.offer(connection);
+        }
+    }
+
+    private void recordAcquisition(long waitNanos) {
+        this.inUse.incrementAndGet();
+        this.acquisitions.incrementAndGet();
+        this.totalWaitNanos.addAndGet(waitNanos);
+        this.maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    /**
+     * Returns the writer connection without acquiring it. Only meant for single threaded set up code.
+     * @return the writer connection
+     */
+    Connection getWriter() {
+        return this.writer;
+    }
+
+    /**
+     * Closes all connections and their cached statements.
+     */
+    @Override
+    public void close() {
+        List<Connection> connections = new ArrayList<>(this.readers);
+        connections.add(this.writer);
+        closeAll(connections);
+        this.readers.clear();
+        this.idleReaders.clear();
+    }
+
+    /**
+     * Closes the given connections and their cached statements. It is static, so the constructor can release the
+     * connections it opened before a failure without calling an overridable method on the unfinished pool.
+     * @param connections the connections to close
+     */
+    private static void closeAll(List<Connection> connections) {
+        for (Connection connection : connections) {
+            if (connection == null) {
+                continue;
+            }
+            StatementCache.discard(connection);
+            try {
+                connection.close();
+            } catch (SQLException exception) {
+                exception.printStackTrace();
+            }
+        }
+    }
+
+    public DatabaseProfile getProfile() {
+        return this.profile;
+    }
+
+    /**
+     * Returns the number of connections in the pool, readers and writer.
+     * @return the number of connections
+     */
+    public int getSize() {
+        return this.readers.size() + 1;
+    }
+
+    public int getReaderCount() {
+        return this.readers.size();
+    }
+
+    public int getInUse() {
+        return this.inUse.get();
+    }
+
+    public long getAcquisitions() {
+        return this.acquisitions.get();
+    }
+
+    public long getTotalWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(this.totalWaitNanos.get());
+    }
+
+    public long getMaxWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(this.maxWaitNanos.get());
+    }
+
+    /**
+     * Returns the average time a caller waited for a connection.
+     * @return the average wait time in milliseconds
+     */
+    public double getAverageWaitMillis() {
+        long count = getAcquisitions();
+        return count == 0 ? 0 : this.totalWaitNanos.get() / 1_000_000.0 / count;
+    }
+
+    /**
+     * toString method for debugging purposes.
+     * @return String representation of the pool metrics.
+     */
+    @Override
+    public String toString() {
+        return "ConnectionPool{" +
+                "profile=" + this.profile +
+                ", size=" + getSize() +
+                ", inUse=" + getInUse() +
+                ", acquisitions=" + getAcquisitions() +
+                ", averageWaitMillis=" + String.format("%.3f", getAverageWaitMillis()) +
+                ", maxWaitMillis=" + getMaxWaitMillis() +
+                '}';
+    }
+}
@@ -0,0 +1,47 @@
+package de.hitec.nhplus.datastorage;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * A ConnectionSource hands out connections to the DAOs. Reads and writes are requested separately, so an
+ * implementation can route them to different connections. Every acquired connection has to be given back with
+ * {@link #release(Connection)}.
+ */
+public interface ConnectionSource {
+
+    /**
+     * Acquires a connection to read from the database.
+     * @return a connection to read from the database
+     * @throws SQLException if no connection could be acquired
+     */
+    Connection acquireReader() throws SQLException;
+
+    /**
+     * Acquires the connection to write to the database.
+     * @return the connection to write to the database
+     * @throws SQLException if no connection could be acquired
+     */
+    Connection acquireWriter() throws SQLException;
+
+    /**
+     * Acquires the connection to write to the database only if no other thread holds it, e.g. for a periodic check
+     * that must not wait behind long writes. By default it waits like {@link #acquireWriter()}.
+     * @return the connection to write to the database, or null if it is busy
+     * @throws SQLException if no connection could be acquired
+     */
+    default Connection tryAcquireWriter() throws SQLException {
+        return acquireWriter();
+    }
+
+    /**
+     * Gives a connection back to the source after use.
+     * @param connection the connection acquired before
+     */
+    void release(Connection connection);
+
+    /**
+     * Closes all connections of the source.
+     */
+    void close();
+}
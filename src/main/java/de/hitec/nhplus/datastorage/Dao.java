@@ -1,7 +1,10 @@
 package de.hitec.nhplus.datastorage;
 
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * The Data Access Object (DAO) interface.
@@ -30,6 +33,30 @@ public interface Dao<T> {
      */
     List<T> readAll() throws SQLException;
 
+    /**
+     * Reads one page of objects in the given order, starting after the given key.
+     * @param afterKey the key of the last object of the previous page, or null for the first page
+     * @param limit the maximum number of objects of the page
+     * @param order the sort order of the pages
+     * @return the page with its key to read the next page
+     * @throws SQLException if an error occurs while reading the objects
+     */
+    Page<T> readPage(PageKey afterKey, int limit, PageOrder order) throws SQLException;
+
+    /**
+     * Streams all objects from the database row by row. The stream has to be closed after use.
+     * @return a lazy stream of all objects
+     * @throws SQLException if an error occurs while executing the query
+     */
+    Stream<T> streamAll() throws SQLException;
+
+    /**
+     * Passes all objects from the database one by one to the given visitor.
+     * @param visitor the visitor called for every object
+     * @throws SQLException if an error occurs while reading the objects
+     */
+    void forEach(Consumer<? super T> visitor) throws SQLException;
+
     /**
      * Updates an object in the database.
      * @param t the object to update
@@ -43,4 +70,36 @@ public interface Dao<T> {
      * @throws SQLException if an error occurs while deleting the object
      */
     void deleteById(long key) throws SQLException;
+
+    /**
+     * Creates all given objects in the database within one transaction, using JDBC batches.
+     * @param objects the objects to create
+     * @throws SQLException if an error occurs while creating the objects; none of them is created then
+     */
+    void createAll(Collection<T> objects) throws SQLException;
+
+    /**
+     * Updates all given objects in the database within one transaction, using JDBC batches.
+     * @param objects the objects to update
+     * @throws SQLException if an error occurs while updating the objects; none of them is updated then
+     */
+    void updateAll(Collection<T> objects) throws SQLException;
+
+    /**
+     * Deletes all objects with the given IDs (Primary Keys) from the database within one transaction, using JDBC
+     * batches.
+     * @param keys the IDs of the objects
+     * @throws SQLException if an error occurs while deleting the objects; none of them is deleted then
+     */
+    void deleteAllById(Collection<Long> keys) throws SQLException;
+
+    /**
+     * Returns a copy of the given object that does not share any mutable state with it. Caches hold such copies, so
+     * changes of an object that have not been written yet are not seen by others.
+     * @param t the object to copy
+     * @return the copy, or the object itself if it is immutable
+     */
+    default T detach(T t) {
+        return t;
+    }
 }
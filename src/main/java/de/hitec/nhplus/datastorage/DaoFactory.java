@@ -1,16 +1,58 @@
 package de.hitec.nhplus.datastorage;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
 /**
- * The DaoFactory class is a Factory Pattern to create DAO objects.
+ * The DaoFactory class is a Factory Pattern to create DAO objects. The DAOs share the connection pool of
+ * {@link ConnectionBuilder}, which routes their reads to the reader connections and their writes to the writer.
+ * While a user is logged in, the DAOs also share the {@link IdentityMap} of the session. The DAOs of patients,
+ * caregivers and treatments share one {@link EntityCache} per table, which outlives the sessions. The caches can be
+ * switched off with the system property <code>nhplus.cache.size=0</code>. All DAOs share one {@link QueryCache} for
+ * their list queries, whose {@link TableVersions} also notice changes by other processes.
+ * <p>
+ * Besides the instance of the application, a factory can be created for any {@link ConnectionSource}, e.g. for a
+ * database in memory in a test. Such a factory has caches of its own and does not watch for changes by other
+ * processes.
+ * <p>
+ * When another process changed the database, the caches and the identity map of the session are cleared, so the next
+ * read of any row sees the committed state instead of an instance read before.
  */
 public class DaoFactory {
 
     private static DaoFactory instance;
+    private final ConnectionSource source;
+    private volatile IdentityMap identityMap;
+    private final Map<String, EntityCache<?>> entityCaches = new ConcurrentHashMap<>();
+    private final TableVersions tableVersions = new TableVersions();
+    private final QueryCache queryCache = new QueryCache(this.tableVersions);
+    private volatile Function<String, EntityCache<?>> cacheSupplier =
+            Integer.getInteger("nhplus.cache.size", 1) > 0 ? table -> new LruEntityCache<>() : table -> null;
 
     /**
-     * Empty constructor.
+     * Constructor of the instance of the application, which uses the connection source of {@link ConnectionBuilder}.
      */
     private DaoFactory() {
+        this(null);
+    }
+
+    /**
+     * Constructor to initiate a factory whose DAOs use the given connection source.
+     * @param source the source of the connections, or null for the source of {@link ConnectionBuilder}
+     */
+    public DaoFactory(ConnectionSource source) {
+        this.source = source;
+        this.tableVersions.addExternalChangeListener(() -> {
+            this.queryCache.clear();
+            this.entityCaches.values().forEach(EntityCache::invalidateAll);
+            IdentityMap map = this.identityMap;
+            if (map != null) {
+                map.clear();
+            }
+        });
     }
 
     /**
@@ -18,7 +60,7 @@ public class DaoFactory {
      * If the instance is null, a new instance is created.
      * @return the instance of the DaoFactory class
      */
-    public static DaoFactory getDaoFactory() {
+    public static synchronized DaoFactory getDaoFactory() {
         if (DaoFactory.instance == null) {
             DaoFactory.instance = new DaoFactory();
         }
@@ -30,7 +72,17 @@ public class DaoFactory {
      * @return a new TreatmentDao object
      */
     public TreatmentDao createTreatmentDao() {
-        return new TreatmentDao(ConnectionBuilder.getConnection());
+        return createTreatmentDao(source());
+    }
+
+    /**
+     * Creates a new TreatmentDao object on the given connection source, e.g. a {@link UnitOfWork}. It shares the caches
+     * and the identity map of the other DAOs, so its writes invalidate them once the transaction has ended.
+     * @param source the source of the connections
+     * @return a new TreatmentDao object
+     */
+    public TreatmentDao createTreatmentDao(ConnectionSource source) {
+        return cached(session(new TreatmentDao(source)));
     }
 
     /**
@@ -38,7 +90,17 @@ public class DaoFactory {
      * @return a new PatientDao object
      */
     public PatientDao createPatientDAO() {
-        return new PatientDao(ConnectionBuilder.getConnection());
+        return createPatientDAO(source());
+    }
+
+    /**
+     * Creates a new PatientDao object on the given connection source, e.g. a {@link UnitOfWork}. It shares the caches
+     * and the identity map of the other DAOs, so its writes invalidate them once the transaction has ended.
+     * @param source the source of the connections
+     * @return a new PatientDao object
+     */
+    public PatientDao createPatientDAO(ConnectionSource source) {
+        return cached(session(new PatientDao(source)));
     }
 
     /**
@@ -46,12 +108,143 @@ public class DaoFactory {
      * @return a new CaregiverDAO object
      */
     public CaregiverDAO createCaregiverDAO() {
-        return new CaregiverDAO(ConnectionBuilder.getConnection());
+        return createCaregiverDAO(source());
+    }
+
+    /**
+     * Creates a new CaregiverDAO object on the given connection source, e.g. a {@link UnitOfWork}. It shares the caches
+     * and the identity map of the other DAOs, so its writes invalidate them once the transaction has ended.
+     * @param source the source of the connections
+     * @return a new CaregiverDAO object
+     */
+    public CaregiverDAO createCaregiverDAO(ConnectionSource source) {
+        return cached(session(new CaregiverDAO(source)));
     }
 
     /**
      * Creates a new UserDao object.
      * @return a new UserDao object
      */
-    public UserDao createUserDAO() { return new UserDao(ConnectionBuilder.getConnection()); }
+    public UserDao createUserDAO() { return session(new UserDao(source())); }
+
+    /**
+     * Creates a new CareMinutesDao object.
+     * @return a new CareMinutesDao object
+     */
+    public CareMinutesDao createCareMinutesDao() {
+        return new CareMinutesDao(source());
+    }
+
+    /**
+     * Returns the source of the connections of the DAOs.
+     * @return the given source, or the source of {@link ConnectionBuilder}
+     */
+    private ConnectionSource source() {
+        return this.source != null ? this.source : ConnectionBuilder.getConnectionSource();
+    }
+
+    /**
+     * Returns the source of the connections of the DAOs, e.g. for a service that writes the tables without a DAO.
+     * @return the given source, or the source of {@link ConnectionBuilder}
+     */
+    public ConnectionSource getConnectionSource() {
+        return source();
+    }
+
+    /**
+     * Removes the given rows from the entity cache of their table and from the identity map of the session, and bumps
+     * the version of the table, so cached list queries are run again. Rows written without a DAO of this factory, e.g.
+     * by a bulk statement, are invalidated this way after their transaction has been committed.
+     * @param table the name of the table
+     * @param keys the IDs (Primary Keys) of the changed or deleted rows
+     */
+    public void invalidate(String table, Collection<Long> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        this.tableVersions.bump(table);
+        EntityCache<?> cache = this.entityCaches.get(table);
+        IdentityMap map = this.identityMap;
+        for (long key : keys) {
+            if (cache != null) {
+                cache.invalidate(key);
+            }
+            if (map != null) {
+                map.remove(table, key);
+            }
+        }
+    }
+
+    /**
+     * Returns the identity map of the current session.
+     * @return the identity map, or null if no session is open
+     */
+    public IdentityMap getIdentityMap() {
+        return this.identityMap;
+    }
+
+    /**
+     * Sets the identity map for the DAOs created from now on. The map of the previous session is cleared.
+     * @param identityMap the identity map of the new session, or null when the session ended
+     */
+    public void setIdentityMap(IdentityMap identityMap) {
+        IdentityMap previous = this.identityMap;
+        this.identityMap = identityMap;
+        if (previous != null && previous != identityMap) {
+            previous.clear();
+        }
+    }
+
+    /**
+     * Connects the given DAO to the identity map of the current session.
+     * @param dao the new DAO
+     * @return the given DAO
+     */
+    private <D extends DaoImp<?>> D session(D dao) {
+        dao.setIdentityMap(this.identityMap);
+        return dao;
+    }
+
+    /**
+     * Returns the entity caches created so far, e.g. to read their hit ratios.
+     * @return the entity caches by table name
+     */
+    public Map<String, EntityCache<?>> getEntityCaches() {
+        return Collections.unmodifiableMap(this.entityCaches);
+    }
+
+    /**
+     * Sets how the entity caches are created, e.g. with other bounds. The caches created so far are dropped.
+     * @param cacheSupplier creates the cache for the given table name, or returns null for no cache
+     */
+    public void setEntityCacheSupplier(Function<String, EntityCache<?>> cacheSupplier) {
+        this.cacheSupplier = cacheSupplier;
+        this.entityCaches.clear();
+    }
+
+    public QueryCache getQueryCache() {
+        return this.queryCache;
+    }
+
+    public TableVersions getTableVersions() {
+        return this.tableVersions;
+    }
+
+    /**
+     * Connects the given DAO to the entity cache of its table and to the query cache. In the instance of the
+     * application, the first call starts the check for changes by other processes, see
+     * <code>nhplus.dataVersion.checkMs</code>.
+     * @param dao the new DAO
+     * @return the given DAO
+     */
+    @SuppressWarnings("unchecked")
+    private <T, D extends DaoImp<T>> D cached(D dao) {
+        EntityCache<?> cache = this.entityCaches.computeIfAbsent(dao.getTableName(), this.cacheSupplier);
+        dao.setEntityCache((EntityCache<T>) cache);
+        dao.setQueryCache(this.queryCache);
+        if (this.source == null) {
+            this.tableVersions.startMonitor(source(), Long.getLong("nhplus.dataVersion.checkMs", 1000));
+        }
+        return dao;
+    }
 }
@@ -1,23 +1,51 @@
 package de.hitec.nhplus.datastorage;
 
 import java.sql.*;
+import java.time.LocalDate;
+import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * The DaoImp class is an abstract class for Data Access Object (DAO) classes.
- * It provides CRUD operations for the given object.
+ * It provides CRUD operations for the given object. Reads are executed on a reader connection and writes on the writer
+ * connection of the {@link ConnectionSource}. While an operation runs, its connection is bound to the current thread,
+ * so the statement methods of the subclasses prepare their statements on it via {@link #prepare(String)}.
  * @param <T> Object to be persisted
  */
 public abstract class DaoImp<T> implements Dao<T> {
-    protected Connection connection;
+    private static final int DEFAULT_BATCH_SIZE = 500;
+    private static final int DEFAULT_FETCH_SIZE = 256;
+
+    private final ConnectionSource source;
+    private final ThreadLocal<Connection> boundConnection = new ThreadLocal<>();
+    private final ThreadLocal<Boolean> privateStatements = ThreadLocal.withInitial(() -> false);
+    private int batchSize = Integer.getInteger("nhplus.batch.size", DEFAULT_BATCH_SIZE);
+    private int fetchSize = Integer.getInteger("nhplus.fetch.size", DEFAULT_FETCH_SIZE);
+    private volatile IdentityMap identityMap;
+    private volatile EntityCache<T> entityCache;
+    private volatile QueryCache queryCache;
 
     /**
-     * The constructor initializes the DaoImp with a database connection.
+     * The constructor initializes the DaoImp with a database connection, which is used for reads and writes.
      * @param connection the database connection
      */
     public DaoImp(Connection connection) {
-        this.connection = connection;
+        this(new SingleConnectionSource(connection));
+    }
+
+    /**
+     * The constructor initializes the DaoImp with a source of database connections.
+     * @param source the source of the reader and writer connections
+     */
+    public DaoImp(ConnectionSource source) {
+        this.source = source;
     }
 
     /**
@@ -27,33 +55,271 @@ public abstract class DaoImp<T> implements Dao<T> {
      */
     @Override
     public void create(T t) throws SQLException {
-        getCreateStatement(t).executeUpdate();
+        onWriter(() -> getCreateStatement(t).executeUpdate());
+        invalidate(EntityCache::invalidateList);
     }
 
     /**
-     * Reads an object from the database by its ID (Primary Key).
+     * Reads an object from the database by its ID (Primary Key). If the object is known to the {@link IdentityMap}
+     * of this DAO, it is returned without a query. If it is cached in the {@link EntityCache}, a copy of the cached
+     * object is returned, so changes of the caller never reach the cache.
      * @param key the ID of the object
      * @return the object with the given ID
      * @throws SQLException if an error occurs while reading the object
      */
     @Override
     public T read(long key) throws SQLException {
-        T object = null;
-        ResultSet result = getReadByIDStatement(key).executeQuery();
-        if (result.next()) {
-            object = getInstanceFromResultSet(result);
+        IdentityMap map = this.identityMap;
+        if (map != null) {
+            T known = map.get(getTableName(), key);
+            if (known != null) {
+                return known;
+            }
+        }
+        EntityCache<T> cache = this.entityCache;
+        if (cache != null) {
+            T cached = cache.get(key);
+            if (cached != null) {
+                return managed(detach(cached));
+            }
         }
-        return object;
+        long generation = cache == null ? 0 : cache.getGeneration();
+        return onReader(() -> {
+            T object = null;
+            try (ResultSet result = getReadByIDStatement(key).executeQuery()) {
+                if (result.next()) {
+                    object = getInstanceFromResultSet(result);
+                }
+            }
+            if (cache != null && isCommittedRead()) {
+                cache.put(generation, key, object == null ? null : detach(object));
+            }
+            return managed(object);
+        });
     }
 
     /**
-     * Reads all objects from the database.
+     * Reads all objects from the database. If the result of an earlier call is still cached in the
+     * {@link EntityCache} of this DAO, copies of its objects are returned without a query. Otherwise the list query runs through
+     * the {@link QueryCache}.
      * @return a list of all objects
      * @throws SQLException if an error occurs while reading the objects
      */
     @Override
     public List<T> readAll() throws SQLException {
-        return getListFromResultSet(getReadAllStatement().executeQuery());
+        EntityCache<T> cache = this.entityCache;
+        if (cache != null) {
+            List<T> cached = cache.getAll();
+            if (cached != null) {
+                cached.replaceAll(this::detach);
+                return managed(cached);
+            }
+        }
+        long generation = cache == null ? 0 : cache.getGeneration();
+        return readCached(() -> {
+            try (ResultSet result = getReadAllStatement().executeQuery()) {
+                ArrayList<T> objects = getListFromResultSet(result);
+                if (cache != null && isCommittedRead()) {
+                    cache.putAll(generation, detach(objects), objects.stream().map(this::getKey).toList());
+                }
+                return objects;
+            }
+        }, "readAll");
+    }
+
+    /**
+     * Runs the given list query on a reader connection, or returns its result from the {@link QueryCache} of this DAO
+     * if the table has not been written since the result was read. Results read within a transaction are not cached.
+     * The caches hold copies made with {@link #detach(Object)} and hand out copies, so objects changed in place but
+     * not written yet are never seen by other views or sessions.
+     * @param query the call running the query
+     * @param name the name of the query, unique within this table
+     * @param parameters the parameters of the query
+     * @return the objects of the query
+     * @throws SQLException if an error occurs while reading the objects
+     */
+    protected ArrayList<T> readCached(SqlCall<ArrayList<T>> query, String name, Object... parameters)
+            throws SQLException {
+        QueryCache cache = this.queryCache;
+        if (cache != null) {
+            ArrayList<T> cached = cache.get(getTableName(), name, parameters);
+            if (cached != null) {
+                cached.replaceAll(this::detach);
+                return managed(cached);
+            }
+        }
+        long version = cache == null ? 0 : cache.getVersion(getTableName());
+        return onReader(() -> {
+            ArrayList<T> objects = query.call();
+            if (cache != null && isCommittedRead()) {
+                cache.put(getTableName(), version, detach(objects), name, parameters);
+            }
+            return managed(objects);
+        });
+    }
+
+    /**
+     * Tells whether the bound connection reads committed data only. Rows read within a transaction may be rolled back
+     * and therefore must not be cached.
+     * @return true if the bound connection is not in a transaction
+     * @throws SQLException if the state of the connection cannot be read
+     */
+    private boolean isCommittedRead() throws SQLException {
+        return getConnection().getAutoCommit();
+    }
+
+    /**
+     * Reads one page of objects with keyset pagination. Instead of skipping rows with OFFSET, the query seeks to the
+     * position after the given key in the index of the sort order, so every page is read in the same time no matter
+     * how deep it is. One row more than the limit is read to find out whether there is a further page.
+     * @param afterKey the key of the last object of the previous page, or null for the first page
+     * @param limit the maximum number of objects of the page, at least 1
+     * @param order the sort order of the pages
+     * @return the page with its key to read the next page
+     * @throws SQLException if an error occurs while reading the objects
+     * @throws IllegalArgumentException if the objects cannot be sorted in the given order
+     */
+    @Override
+    public Page<T> readPage(PageKey afterKey, int limit, PageOrder order) throws SQLException {
+        if (limit < 1) {
+            throw new IllegalArgumentException("The limit of a page must be at least 1");
+        }
+        String sortColumn = getSortColumn(order);
+        return onReader(() -> {
+            List<T> items = new ArrayList<>();
+            PageKey lastKey = null;
+            boolean hasNext = false;
+            try (ResultSet result = getReadPageStatement(afterKey, limit + 1, order).executeQuery()) {
+                while (result.next()) {
+                    if (items.size() == limit) {
+                        hasNext = true;
+                        break;
+                    }
+                    items.add(managed(getInstanceFromResultSet(result)));
+                    lastKey = new PageKey(sortColumn == null ? null : result.getObject(sortColumn),
+                            result.getLong(getIdColumn()));
+                }
+            }
+            return new Page<>(items, hasNext ? lastKey : null);
+        });
+    }
+
+    /**
+     * Returns a PreparedStatement to read the objects after the given key in the given order. The position is
+     * compared as row value <code>(sort column, id)</code>, which SQLite resolves by a seek in the index of the sort
+     * column. There are only two SQL texts per order, so the statements are reused from the statement cache.
+     * @param afterKey the key of the last object of the previous page, or null for the first page
+     * @param limit the maximum number of rows to read
+     * @param order the sort order
+     * @return a PreparedStatement to read one page
+     * @throws SQLException if the statement could not be prepared
+     */
+    private PreparedStatement getReadPageStatement(PageKey afterKey, int limit, PageOrder order)
+            throws SQLException {
+        String idColumn = getIdColumn();
+        String sortColumn = getSortColumn(order);
+        String direction = order.isDescending() ? " DESC" : "";
+        StringBuilder sql = new StringBuilder("SELECT * FROM ").append(getTableName());
+        if (afterKey != null) {
+            String comparison = order.isDescending() ? " < " : " > ";
+            if (sortColumn == null) {
+                sql.append(" WHERE ").append(idColumn).append(comparison).append("?");
+            } else {
+                sql.append(" WHERE (").append(sortColumn).append(", ").append(idColumn).append(")")
+                        .append(comparison).append("(?, ?)");
+            }
+        }
+        sql.append(" ORDER BY ");
+        if (sortColumn != null) {
+            sql.append(sortColumn).append(direction).append(", ");
+        }
+        sql.append(idColumn).append(direction).append(" LIMIT ?");
+
+        PreparedStatement statement = prepare(sql.toString());
+        int index = 1;
+        if (afterKey != null) {
+            if (sortColumn != null) {
+                statement.setObject(index++, afterKey.getValue());
+            }
+            statement.setLong(index++, afterKey.getId());
+        }
+        statement.setInt(index, limit);
+        return statement;
+    }
+
+    /**
+     * Returns the column the given order sorts by before the primary key.
+     * @param order the sort order
+     * @return the column name, or null if the order sorts by the primary key only
+     * @throws IllegalArgumentException if the objects have no column for the given order
+     */
+    private String getSortColumn(PageOrder order) {
+        switch (order) {
+            case ID:
+            case ID_DESC:
+                return null;
+            default:
+                String column = getDateColumn();
+                if (column == null) {
+                    throw new IllegalArgumentException(getTableName() + " cannot be sorted by " + order);
+                }
+                return column;
+        }
+    }
+
+    /**
+     * Streams all objects from the database. The rows are read from the cursor one by one while the stream is
+     * consumed, so only the current row is held in memory. The stream holds a reader connection until it is closed or
+     * fully consumed and therefore has to be closed, e.g. with try-with-resources. A <code>SQLException</code> while
+     * consuming the stream is thrown as {@link UncheckedSQLException}.
+     * @return a lazy stream of all objects
+     * @throws SQLException if an error occurs while executing the query
+     */
+    @Override
+    public Stream<T> streamAll() throws SQLException {
+        return stream(this::getReadAllStatement);
+    }
+
+    /**
+     * Passes all objects from the database one by one to the given visitor, without building a list.
+     * @param visitor the visitor called for every object
+     * @throws SQLException if an error occurs while reading the objects
+     */
+    @Override
+    public void forEach(Consumer<? super T> visitor) throws SQLException {
+        try (Stream<T> stream = streamAll()) {
+            stream.forEach(visitor);
+        } catch (UncheckedSQLException exception) {
+            throw exception.getCause();
+        }
+    }
+
+    /**
+     * Reads the rows with the given IDs from the database again, e.g. after they were changed by another terminal.
+     * The identity map and the entity cache are bypassed; the fresh objects replace the instances known to the
+     * identity map. The keys are passed as one JSON array, so there is only one SQL text for any number of keys.
+     * @param keys the IDs of the objects
+     * @return the objects that still exist
+     * @throws SQLException if an error occurs while reading the objects
+     */
+    public List<T> refresh(Collection<Long> keys) throws SQLException {
+        if (keys.isEmpty()) {
+            return new ArrayList<>();
+        }
+        EntityCache<T> cache = this.entityCache;
+        if (cache != null) {
+            keys.forEach(cache::invalidate);
+        }
+        return onReader(() -> {
+            PreparedStatement statement = prepare("SELECT * FROM " + getTableName() + " WHERE " + getIdColumn() +
+                    " IN (SELECT value FROM json_each(?))");
+            statement.setString(1, keys.toString());
+            try (ResultSet result = statement.executeQuery()) {
+                ArrayList<T> objects = getListFromResultSet(result);
+                objects.forEach(this::remember);
+                return objects;
+            }
+        });
     }
 
     /**
@@ -63,7 +329,10 @@ public abstract class DaoImp<T> implements Dao<T> {
      */
     @Override
     public void update(T t) throws SQLException {
-        getUpdateStatement(t).executeUpdate();
+        onWriter(() -> getUpdateStatement(t).executeUpdate());
+        managed(t);
+        long key = getKey(t);
+        invalidate(cache -> cache.invalidate(key));
     }
 
     /**
@@ -73,7 +342,461 @@ public abstract class DaoImp<T> implements Dao<T> {
      */
     @Override
     public void deleteById(long key) throws SQLException {
-        getDeleteStatement(key).executeUpdate();
+        onWriter(() -> getDeleteStatement(key).executeUpdate());
+        forget(key);
+        invalidate(cache -> cache.invalidate(key));
+    }
+
+    /**
+     * Creates all given objects in the database. The INSERTs are sent in batches of {@link #getBatchSize()} rows,
+     * all within one transaction.
+     * @param objects the objects to create
+     * @throws SQLException if an error occurs while creating the objects; none of them is created then
+     */
+    @Override
+    public void createAll(Collection<T> objects) throws SQLException {
+        executeInBatches(objects, this::getCreateStatement);
+        invalidate(EntityCache::invalidateList);
+    }
+
+    /**
+     * Updates all given objects in the database. The UPDATEs are sent in batches of {@link #getBatchSize()} rows,
+     * all within one transaction.
+     * @param objects the objects to update
+     * @throws SQLException if an error occurs while updating the objects; none of them is updated then
+     */
+    @Override
+    public void updateAll(Collection<T> objects) throws SQLException {
+        executeInBatches(objects, this::getUpdateStatement);
+        objects.forEach(this::managed);
+        List<Long> keys = objects.stream().map(this::getKey).toList();
+        invalidate(cache -> keys.forEach(cache::invalidate));
+    }
+
+    /**
+     * Deletes all objects with the given IDs from the database. The DELETEs are sent in batches of
+     * {@link #getBatchSize()} rows, all within one transaction.
+     * @param keys the IDs of the objects
+     * @throws SQLException if an error occurs while deleting the objects; none of them is deleted then
+     */
+    @Override
+    public void deleteAllById(Collection<Long> keys) throws SQLException {
+        executeInBatches(keys, this::getDeleteStatement);
+        keys.forEach(this::forget);
+        invalidate(cache -> keys.forEach(cache::invalidate));
+    }
+
+    /**
+     * Returns a PreparedStatement with the parameters of the given element bound.
+     * @param <E> the element to bind
+     */
+    @FunctionalInterface
+    private interface StatementBinder<E> {
+        PreparedStatement bind(E element) throws SQLException;
+    }
+
+    /**
+     * Binds every element to its statement, adds it to the batch and executes the batch every
+     * {@link #getBatchSize()} elements. The statement methods return the cached statement of their SQL, so all
+     * elements end up in the batch of the same statement. Everything runs in one transaction on the writer, or in a
+     * savepoint if a {@link UnitOfWork} is open on the writer.
+     * @param elements the elements to bind
+     * @param binder the statement method binding one element
+     * @throws SQLException if an error occurs; the transaction is rolled back then
+     */
+    private <E> void executeInBatches(Collection<E> elements, StatementBinder<E> binder) throws SQLException {
+        if (elements.isEmpty()) {
+            return;
+        }
+        new TransactionTemplate(this.source).execute(unit -> onWriter(() -> {
+            PreparedStatement statement = null;
+            int pending = 0;
+            for (E element : elements) {
+                statement = binder.bind(element);
+                statement.addBatch();
+                if (++pending == this.batchSize) {
+                    statement.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                statement.executeBatch();
+            }
+            return null;
+        }));
+    }
+
+    public int getBatchSize() {
+        return this.batchSize;
+    }
+
+    /**
+     * Sets the number of rows sent to the database per JDBC batch by the bulk methods. The default can be set with
+     * the system property <code>nhplus.batch.size</code>.
+     * @param batchSize the number of rows per batch, at least 1
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Executes the query returned by the given statement method on a reader connection and returns a lazy stream
+     * over its rows, mapped by {@link #getInstanceFromResultSet(ResultSet)}. The statement is prepared outside of
+     * the statement cache, so other calls on the same connection cannot reset the open cursor. The ResultSet, the
+     * statement and the connection are closed and released when the stream is closed or fully consumed.
+     * @param query the statement method of the query
+     * @return a lazy stream of the objects
+     * @throws SQLException if an error occurs while executing the query
+     */
+    protected Stream<T> stream(SqlCall<PreparedStatement> query) throws SQLException {
+        Connection connection = this.source.acquireReader();
+        PreparedStatement statement = null;
+        ResultSet result;
+        try {
+            this.privateStatements.set(true);
+            statement = bound(connection, query);
+            statement.setFetchSize(this.fetchSize);
+            result = statement.executeQuery();
+        } catch (SQLException | RuntimeException exception) {
+            if (statement != null) {
+                statement.close();
+            }
+            this.source.release(connection);
+            throw exception;
+        } finally {
+            this.privateStatements.remove();
+        }
+        Cursor cursor = new Cursor(connection, statement, result);
+        return StreamSupport.stream(cursor, false).onClose(cursor::close);
+    }
+
+    /**
+     * A Spliterator walking a ResultSet row by row. It closes its resources when the last row was read or when the
+     * stream is closed, whatever happens first.
+     */
+    private final class Cursor extends Spliterators.AbstractSpliterator<T> {
+        private final Connection connection;
+        private final PreparedStatement statement;
+        private final ResultSet result;
+        private boolean closed;
+
+        Cursor(Connection connection, PreparedStatement statement, ResultSet result) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.connection = connection;
+            this.statement = statement;
+            this.result = result;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (this.closed) {
+                return false;
+            }
+            try {
+                if (!this.result.next()) {
+                    close();
+                    return false;
+                }
+                action.accept(managed(getInstanceFromResultSet(this.result)));
+                return true;
+            } catch (SQLException exception) {
+                close();
+                throw new UncheckedSQLException(exception);
+            }
+        }
+
+        void close() {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            try {
+                this.result.close();
+                this.statement.close();
+            } catch (SQLException exception) {
+                exception.printStackTrace();
+            } finally {
+                DaoImp.this.source.release(this.connection);
+            }
+        }
+    }
+
+    public int getFetchSize() {
+        return this.fetchSize;
+    }
+
+    /**
+     * Sets the number of rows the driver should fetch at once for streamed queries. The default can be set with the
+     * system property <code>nhplus.fetch.size</code>.
+     * @param fetchSize the number of rows per fetch, at least 1
+     */
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = Math.max(1, fetchSize);
+    }
+
+    public IdentityMap getIdentityMap() {
+        return this.identityMap;
+    }
+
+    /**
+     * Sets the identity map this DAO registers its objects in. DAOs of the same session share one map, so every row
+     * exists only once in memory.
+     * @param identityMap the identity map of the session, or null to create new instances for every row
+     */
+    public void setIdentityMap(IdentityMap identityMap) {
+        this.identityMap = identityMap;
+    }
+
+    /**
+     * Returns the instance of the given object's row that is known to the identity map. If the row is not known yet,
+     * the given object is registered and returned.
+     * @param object the object just read from the database
+     * @return the one instance of the row
+     */
+    protected T managed(T object) {
+        IdentityMap map = this.identityMap;
+        if (map == null || object == null) {
+            return object;
+        }
+        return map.putIfAbsent(getTableName(), getKey(object), object);
+    }
+
+    /**
+     * Replaces every object of the given list by the instance known to the identity map.
+     * @param objects the objects just read from the database
+     * @return the given list
+     */
+    protected <L extends List<T>> L managed(L objects) {
+        if (this.identityMap != null) {
+            objects.replaceAll(this::managed);
+        }
+        return objects;
+    }
+
+    /**
+     * Returns copies of the given objects, e.g. to put them into a cache.
+     * @param objects the objects just read from the database
+     * @return a new list with a copy of every object
+     */
+    private ArrayList<T> detach(List<T> objects) {
+        ArrayList<T> copies = new ArrayList<>(objects.size());
+        objects.forEach(object -> copies.add(detach(object)));
+        return copies;
+    }
+
+    /**
+     * Reads a date stored as days since 1970, e.g. in a column generated by the migration to integer dates.
+     * @param result the result set positioned on a row
+     * @param column the name of the column
+     * @return the date of the column
+     * @throws SQLException if the column is NULL because the stored text is not a valid date
+     */
+    protected static LocalDate getEpochDay(ResultSet result, String column) throws SQLException {
+        long day = result.getLong(column);
+        if (result.wasNull()) {
+            throw new SQLException("Die Spalte " + column + " enthält kein gültiges Datum");
+        }
+        return LocalDate.ofEpochDay(day);
+    }
+
+    /**
+     * Reads a time stored as the minute of the day, e.g. in a column generated by the migration to integer times.
+     * @param result the result set positioned on a row
+     * @param column the name of the column
+     * @return the time of the column
+     * @throws SQLException if the column is NULL or out of range because the stored text is not a valid time
+     */
+    protected static LocalTime getMinuteOfDay(ResultSet result, String column) throws SQLException {
+        long minute = result.getLong(column);
+        if (result.wasNull() || minute < 0 || minute >= 24 * 60) {
+            throw new SQLException("Die Spalte " + column + " enthält keine gültige Uhrzeit");
+        }
+        return LocalTime.ofSecondOfDay(minute * 60);
+    }
+
+    private void remember(T object) {
+        IdentityMap map = this.identityMap;
+        if (map != null) {
+            map.put(getTableName(), getKey(object), object);
+        }
+    }
+
+    private void forget(long key) {
+        IdentityMap map = this.identityMap;
+        if (map != null) {
+            map.remove(getTableName(), key);
+        }
+    }
+
+    public EntityCache<T> getEntityCache() {
+        return this.entityCache;
+    }
+
+    /**
+     * Sets the second-level cache of the table. DAOs of the same table share one cache, so views that read the same
+     * objects again do not query the table again.
+     * @param entityCache the cache of the table, or null to read every object from the database
+     */
+    public void setEntityCache(EntityCache<T> entityCache) {
+        this.entityCache = entityCache;
+    }
+
+    public QueryCache getQueryCache() {
+        return this.queryCache;
+    }
+
+    /**
+     * Sets the cache for the results of list queries. DAOs of the same database share one cache.
+     * @param queryCache the cache of the database, or null to run every list query
+     */
+    public void setQueryCache(QueryCache queryCache) {
+        this.queryCache = queryCache;
+    }
+
+    /**
+     * Applies the given invalidation to the entity cache and bumps the version of the table in the query cache after
+     * a write. Within a {@link UnitOfWork} this is done again when the transaction has ended, because until the commit
+     * other threads may still cache the old rows. Subclasses call it after writes of their own, e.g. with
+     * {@link EntityCache#invalidateAll()}.
+     * @param invalidation the invalidation to apply
+     */
+    protected void invalidate(Consumer<EntityCache<T>> invalidation) {
+        EntityCache<T> cache = this.entityCache;
+        QueryCache results = this.queryCache;
+        if (cache == null && results == null) {
+            return;
+        }
+        Runnable action = () -> {
+            if (cache != null) {
+                invalidation.accept(cache);
+            }
+            if (results != null) {
+                results.getVersions().bump(getTableName());
+            }
+        };
+        action.run();
+        UnitOfWork unit = UnitOfWork.current();
+        if (unit != null) {
+            unit.afterCompletion(action);
+        }
+    }
+
+    /**
+     * A database call that runs on the connection bound by {@link #onReader(SqlCall)} or {@link #onWriter(SqlCall)}.
+     * @param <R> the result of the call
+     */
+    @FunctionalInterface
+    protected interface SqlCall<R> {
+        R call() throws SQLException;
+    }
+
+    /**
+     * Runs the given call with a reader connection bound to the current thread.
+     * @param call the call to run
+     * @return the result of the call
+     * @throws SQLException if an error occurs while acquiring the connection or in the call
+     */
+    protected <R> R onReader(SqlCall<R> call) throws SQLException {
+        return on(this.source.acquireReader(), call);
+    }
+
+    /**
+     * Runs the given call with the writer connection bound to the current thread.
+     * @param call the call to run
+     * @return the result of the call
+     * @throws SQLException if an error occurs while acquiring the connection or in the call
+     */
+    protected <R> R onWriter(SqlCall<R> call) throws SQLException {
+        return on(this.source.acquireWriter(), call);
+    }
+
+    private <R> R on(Connection connection, SqlCall<R> call) throws SQLException {
+        try {
+            return bound(connection, call);
+        } finally {
+            this.source.release(connection);
+        }
+    }
+
+    /**
+     * Runs the given call with the given connection bound to the current thread, without releasing it afterwards.
+     */
+    private <R> R bound(Connection connection, SqlCall<R> call) throws SQLException {
+        Connection previous = this.boundConnection.get();
+        this.boundConnection.set(connection);
+        try {
+            return call.call();
+        } finally {
+            if (previous == null) {
+                this.boundConnection.remove();
+            } else {
+                this.boundConnection.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Returns the connection bound to the current thread by the running operation.
+     * @return the bound connection
+     * @throws IllegalStateException if no operation of this DAO runs on the current thread
+     */
+    protected Connection getConnection() {
+        Connection connection = this.boundConnection.get();
+        if (connection == null) {
+            throw new IllegalStateException("No connection is bound, use onReader() or onWriter()");
+        }
+        return connection;
+    }
+
+    /**
+     * Returns the source of the connections used by this DAO.
+     * @return the connection source
+     */
+    protected ConnectionSource getConnectionSource() {
+        return this.source;
+    }
+
+    /**
+     * Returns a PreparedStatement for the given SQL from the statement cache of the bound connection. The statement is
+     * reused by later calls with the same SQL, so it must not be closed by the caller. Only the ResultSets have to be
+     * closed. While a stream is opened by {@link #stream(SqlCall)}, a private statement is prepared instead. If the
+     * {@link SlowQueryLog} is switched on, the statement is wrapped to time its executions.
+     * @param sql the SQL text of the statement
+     * @return a PreparedStatement for the given SQL
+     * @throws SQLException if the statement could not be prepared
+     */
+    protected PreparedStatement prepare(String sql) throws SQLException {
+        Connection connection = getConnection();
+        PreparedStatement statement = this.privateStatements.get() ? connection.prepareStatement(sql)
+                : StatementCache.forConnection(connection).prepare(sql);
+        return SlowQueryLog.getInstance().wrap(connection, sql, statement);
+    }
+
+    /**
+     * Returns the name of the table the objects are stored in.
+     * @return the name of the table
+     */
+    protected abstract String getTableName();
+
+    /**
+     * Returns the name of the primary key column of the table.
+     * @return the name of the primary key column
+     */
+    protected abstract String getIdColumn();
+
+    /**
+     * Returns the ID (Primary Key) of the given object.
+     * @param t the object
+     * @return the ID of the object
+     */
+    protected abstract long getKey(T t);
+
+    /**
+     * Returns the name of the date column used by {@link PageOrder#DATE} and {@link PageOrder#DATE_DESC}.
+     * @return the name of the date column, or null if the objects cannot be sorted by date
+     */
+    protected String getDateColumn() {
+        return null;
     }
 
     /**
@@ -0,0 +1,136 @@
+package de.hitec.nhplus.datastorage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Properties;
+
+import org.sqlite.SQLiteConfig;
+
+/**
+ * The DatabaseProfile enum bundles the SQLite pragmas that decide between durability and throughput. All profiles
+ * keep the WAL journal, because the reader connections of the {@link ConnectionPool} depend on it.
+ * <ul>
+ *     <li><code>durable</code>: every commit is synced to disk (synchronous = FULL). This is the default.</li>
+ *     <li><code>balanced</code>: commits are synced at checkpoints (synchronous = NORMAL), a bigger page cache,
+ *     memory mapped I/O and temporary tables in memory. A power loss can lose the last commits, but never
+ *     corrupts the database.</li>
+ *     <li><code>bulk-load</code>: no syncs at all (synchronous = OFF) and large caches. Only meant for imports
+ *     and migrations that can be repeated after a crash.</li>
+ * </ul>
+ * The profile is selected with the system property <code>nhplus.db.profile</code> or the key <code>db.profile</code>
+ * in the file <code>db/nhplus.properties</code>.
+ */
+public enum DatabaseProfile {
+
+    DURABLE("durable", SQLiteConfig.SynchronousMode.FULL, -2000, 0, SQLiteConfig.TempStore.DEFAULT, 10000),
+    BALANCED("balanced", SQLiteConfig.SynchronousMode.NORMAL, -16000, 64L * 1024 * 1024,
+            SQLiteConfig.TempStore.MEMORY, 5000),
+    BULK_LOAD("bulk-load", SQLiteConfig.SynchronousMode.OFF, -65536, 256L * 1024 * 1024,
+            SQLiteConfig.TempStore.MEMORY, 30000);
+
+    private static final String PROPERTY = "nhplus.db.profile";
+    private static final Path CONFIG_FILE = Paths.get("db", "nhplus.properties");
+
+    private final String name;
+    private final SQLiteConfig.SynchronousMode synchronous;
+    private final int cacheSize;
+    private final long mmapSize;
+    private final SQLiteConfig.TempStore tempStore;
+    private final int busyTimeoutMillis;
+
+    /**
+     * Constructor of the profiles.
+     * @param name the name used in the configuration
+     * @param synchronous the synchronous level of the writer
+     * @param cacheSize the page cache size, negative values are KiB
+     * @param mmapSize the number of bytes to access by memory mapped I/O
+     * @param tempStore where temporary tables and indexes are kept
+     * @param busyTimeoutMillis how long to wait for a lock held by another process
+     */
+    DatabaseProfile(String name, SQLiteConfig.SynchronousMode synchronous, int cacheSize, long mmapSize,
+                    SQLiteConfig.TempStore tempStore, int busyTimeoutMillis) {
+        this.name = name;
+        this.synchronous = synchronous;
+        this.cacheSize = cacheSize;
+        this.mmapSize = mmapSize;
+        this.tempStore = tempStore;
+        this.busyTimeoutMillis = busyTimeoutMillis;
+    }
+
+    /**
+     * Applies the pragmas of this profile to the configuration of a connection. Read-only connections only get the
+     * pragmas that affect reading.
+     * @param configuration the configuration of the connection
+     * @param writer true for the writer connection, false for a reader
+     */
+    public void apply(SQLiteConfig configuration, boolean writer) {
+        if (writer) {
+            configuration.setJournalMode(SQLiteConfig.JournalMode.WAL);
+            configuration.setSynchronous(this.synchronous);
+        }
+        configuration.setCacheSize(this.cacheSize);
+        configuration.setPragma(SQLiteConfig.Pragma.MMAP_SIZE, Long.toString(this.mmapSize));
+        configuration.setTempStore(this.tempStore);
+        configuration.setBusyTimeout(this.busyTimeoutMillis);
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Returns the profile with the given name.
+     * @param name the name of the profile, e.g. "balanced"
+     * @return the profile with the given name
+     * @throws IllegalArgumentException if there is no profile with the given name
+     */
+    public static DatabaseProfile fromName(String name) {
+        String normalized = name.trim().toLowerCase(Locale.ROOT).replace('_', '-');
+        for (DatabaseProfile profile : values()) {
+            if (profile.name.equals(normalized)) {
+                return profile;
+            }
+        }
+        throw new IllegalArgumentException("Unknown database profile: " + name);
+    }
+
+    /**
+     * Returns the configured profile. The system property wins over the configuration file. If neither is set or
+     * the name is unknown, <code>durable</code> is used.
+     * @return the configured profile
+     */
+    public static DatabaseProfile configured() {
+        String name = System.getProperty(PROPERTY);
+        if (name == null && Files.isReadable(CONFIG_FILE)) {
+            Properties properties = new Properties();
+            try (InputStream input = Files.newInputStream(CONFIG_FILE)) {
+                properties.load(input);
+                name = properties.getProperty("db.profile");
+            } catch (IOException exception) {
+                exception.printStackTrace();
+            }
+        }
+        if (name == null || name.isBlank()) {
+            return DURABLE;
+        }
+        try {
+            return fromName(name);
+        } catch (IllegalArgumentException exception) {
+            System.out.println(exception.getMessage() + ", verwende " + DURABLE.name);
+            return DURABLE;
+        }
+    }
+
+    /**
+     * Presents the profile by its name.
+     * @return the name of the profile
+     */
+    @Override
+    public String toString() {
+        return this.name;
+    }
+}
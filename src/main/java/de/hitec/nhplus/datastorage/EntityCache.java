@@ -0,0 +1,84 @@
+package de.hitec.nhplus.datastorage;
+
+import java.util.List;
+
+/**
+ * The EntityCache interface is the second-level cache behind {@link DaoImp#read(long)} and {@link DaoImp#readAll()}.
+ * One cache belongs to one table and is shared by all DAOs of the table. The DAOs invalidate it on every write.
+ * <p>
+ * A reader can race with a writer: it may read a row before the writer commits and put it into the cache after the
+ * writer invalidated it. Therefore every invalidation starts a new generation, and a reader hands the generation it
+ * saw before its query to <code>put</code>. Objects of an older generation are not cached.
+ * @param <T> Object of the table
+ */
+public interface EntityCache<T> {
+
+    /**
+     * Returns the current generation, to be passed to <code>put</code> and <code>putAll</code> after the query.
+     * @return the number of invalidations so far
+     */
+    long getGeneration();
+
+    /**
+     * Returns the cached object with the given ID.
+     * @param key the ID of the object
+     * @return the cached object, or null if it is not cached or expired
+     */
+    T get(long key);
+
+    /**
+     * Caches the given object, unless the cache was invalidated since the given generation.
+     * @param generation the generation seen before the object was read
+     * @param key the ID of the object
+     * @param object the object read from the database
+     */
+    void put(long generation, long key, T object);
+
+    /**
+     * Returns the cached result of <code>readAll</code>.
+     * @return the cached objects of the table, or null if they are not cached or expired
+     */
+    List<T> getAll();
+
+    /**
+     * Caches the result of <code>readAll</code> and its objects, unless the cache was invalidated since the given
+     * generation.
+     * @param generation the generation seen before the objects were read
+     * @param objects all objects of the table
+     * @param keys the IDs of the objects, in the same order
+     */
+    void putAll(long generation, List<T> objects, List<Long> keys);
+
+    /**
+     * Removes the object with the given ID and the cached result of <code>readAll</code>.
+     * @param key the ID of the changed object
+     */
+    void invalidate(long key);
+
+    /**
+     * Removes the cached result of <code>readAll</code>, e.g. after an object was created.
+     */
+    void invalidateList();
+
+    /**
+     * Removes everything from the cache.
+     */
+    void invalidateAll();
+
+    int size();
+
+    long getHits();
+
+    long getMisses();
+
+    long getEvictions();
+
+    /**
+     * Returns the share of lookups that could be answered from the cache.
+     * @return the hit ratio between 0 and 1
+     */
+    default double getHitRatio() {
+        long total = getHits() + getMisses();
+        return total == 0 ? 0 : (double) getHits() / total;
+    }
+}
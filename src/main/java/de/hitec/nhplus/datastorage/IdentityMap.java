@@ -0,0 +1,150 @@
+package de.hitec.nhplus.datastorage;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The IdentityMap class keeps one in-memory instance per table and primary key for the session of a user. The DAOs
+ * created by {@link DaoFactory} during a session share the map: a row that is already known is returned as the known
+ * instance, and {@link DaoImp#read(long)} answers known keys without asking SQLite at all. The instances are only
+ * referenced weakly, so objects that no view uses anymore are garbage collected and drop out of the map.
+ */
+public class IdentityMap {
+
+    private final Map<EntryKey, InstanceReference> instances = new ConcurrentHashMap<>();
+    private final ReferenceQueue<Object> collected = new ReferenceQueue<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * The table and the primary key of an instance.
+     */
+    private record EntryKey(String table, long key) {
+    }
+
+    /**
+     * A weak reference that remembers its key, so it can be removed from the map after its object was collected.
+     */
+    private static final class InstanceReference extends WeakReference<Object> {
+        private final EntryKey key;
+
+        InstanceReference(EntryKey key, Object instance, ReferenceQueue<Object> queue) {
+            super(instance, queue);
+            this.key = key;
+        }
+    }
+
+    /**
+     * Returns the known instance of the given row.
+     * @param table the table of the row
+     * @param key the primary key of the row
+     * @return the known instance, or null if the row is not known
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String table, long key) {
+        purge();
+        InstanceReference reference = this.instances.get(new EntryKey(table, key));
+        Object instance = reference == null ? null : reference.get();
+        if (instance == null) {
+            this.misses.incrementAndGet();
+        } else {
+            this.hits.incrementAndGet();
+        }
+        return (T) instance;
+    }
+
+    /**
+     * Returns the known instance of the given row, or registers the given instance if the row is not known yet.
+     * @param table the table of the row
+     * @param key the primary key of the row
+     * @param instance the instance just read from the database
+     * @return the one instance of the row in this session
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T putIfAbsent(String table, long key, T instance) {
+        purge();
+        EntryKey entryKey = new EntryKey(table, key);
+        Object[] result = new Object[1];
+        this.instances.compute(entryKey, (ignored, reference) -> {
+            Object known = reference == null ? null : reference.get();
+            if (known != null) {
+                result[0] = known;
+                return reference;
+            }
+            result[0] = instance;
+            return new InstanceReference(entryKey, instance, this.collected);
+        });
+        return (T) result[0];
+    }
+
+    /**
+     * Registers the given instance as the instance of the row, e.g. after it was written to the database.
+     * @param table the table of the row
+     * @param key the primary key of the row
+     * @param instance the instance of the row
+     */
+    public void put(String table, long key, Object instance) {
+        purge();
+        EntryKey entryKey = new EntryKey(table, key);
+        this.instances.put(entryKey, new InstanceReference(entryKey, Objects.requireNonNull(instance), this.collected));
+    }
+
+    /**
+     * Forgets the instance of the given row, e.g. after it was deleted.
+     * @param table the table of the row
+     * @param key the primary key of the row
+     */
+    public void remove(String table, long key) {
+        this.instances.remove(new EntryKey(table, key));
+    }
+
+    /**
+     * Forgets all instances, e.g. when the user logs out.
+     */
+    public void clear() {
+        this.instances.clear();
+        purge();
+    }
+
+    /**
+     * Removes the entries whose instances were garbage collected.
+     */
+    private void purge() {
+        Reference<?> reference;
+        while ((reference = this.collected.poll()) != null) {
+            InstanceReference instance = (InstanceReference) reference;
+            this.instances.remove(instance.key, instance);
+        }
+    }
+
+    public int size() {
+        purge();
+        return this.instances.size();
+    }
+
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * toString method for debugging purposes.
+     * @return String representation of the map counters.
+     */
+    @Override
+    public String toString() {
+        return "IdentityMap{" +
+                "size=" + size() +
+                ", hits=" + getHits() +
+                ", misses=" + getMisses() +
+                '}';
+    }
+}
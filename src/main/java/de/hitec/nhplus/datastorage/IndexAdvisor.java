@@ -0,0 +1,234 @@
+package de.hitec.nhplus.datastorage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The IndexAdvisor class reads the entries of the {@link SlowQueryLog} and reports the statements whose query plan
+ * scans a whole table. For every scan it proposes an index on the columns the statement filters by: columns compared
+ * by equality first, then columns compared by range, as SQLite can only use the columns of an index up to the first
+ * range. Statements that neither filter nor sort read the whole table on purpose and get no proposal.
+ */
+public class IndexAdvisor {
+
+    private static final Pattern SCAN = Pattern.compile("^\\s*SCAN (?:TABLE )?(\\w+)(.*)$");
+    private static final Pattern TABLE = Pattern.compile(
+            "\\b(?:FROM|JOIN|UPDATE|INTO)\\s+(\\w+)(?:\\s+(?:AS\\s+)?(?!WHERE\\b|ON\\b|JOIN\\b|SET\\b|ORDER\\b|GROUP\\b"
+                    + "|LIMIT\\b|LEFT\\b|INNER\\b|CROSS\\b|USING\\b|VALUES\\b)(\\w+))?",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern ROW_VALUE = Pattern.compile(
+            "\\(\\s*(?:(\\w+)\\.)?(\\w+)\\s*,[^)]*\\)\\s*(<=|>=|<|>)");
+    private static final Pattern ORDER_BY = Pattern.compile("\\bORDER\\s+BY\\s+(.+?)(?:\\bLIMIT\\b|$)",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern PREDICATE = Pattern.compile(
+            "(?:\\b(\\w+)\\.)?\\b(\\w+)\\s*(=|==|<=|>=|<>|!=|<|>|\\bBETWEEN\\b|\\bIN\\b|\\bLIKE\\b)",
+            Pattern.CASE_INSENSITIVE);
+
+    private final Map<String, Statistics> statements = new LinkedHashMap<>();
+
+    /**
+     * Constructor to initiate the advisor with the given log entries. Entries with the same SQL are summed up.
+     * @param entries the entries of the slow query log
+     */
+    public IndexAdvisor(Collection<SlowQuery> entries) {
+        for (SlowQuery entry : entries) {
+            this.statements.computeIfAbsent(entry.getSql(), sql -> new Statistics(entry.getPlan())).add(entry);
+        }
+    }
+
+    /**
+     * Returns the proposed indexes of all statements that scan a table.
+     * @return the proposed <code>CREATE INDEX</code> statements, without duplicates
+     */
+    public Set<String> getProposals() {
+        Set<String> proposals = new LinkedHashSet<>();
+        for (Map.Entry<String, Statistics> statement : this.statements.entrySet()) {
+            for (String table : getScannedTables(statement.getValue().plan)) {
+                String proposal = propose(statement.getKey(), table, statement.getValue().plan);
+                if (proposal != null) {
+                    proposals.add(proposal);
+                }
+            }
+        }
+        return proposals;
+    }
+
+    /**
+     * Returns the report of the advisor: the statements with full table scans, slowest first, and the proposed
+     * indexes.
+     * @return the report as text
+     */
+    public String report() {
+        String newline = System.lineSeparator();
+        StringBuilder report = new StringBuilder("Slow query report: ").append(this.statements.size())
+                .append(" statements").append(newline);
+        List<Map.Entry<String, Statistics>> sorted = new ArrayList<>(this.statements.entrySet());
+        sorted.sort((first, second) -> Double.compare(second.getValue().totalMillis, first.getValue().totalMillis));
+        for (Map.Entry<String, Statistics> statement : sorted) {
+            Statistics statistics = statement.getValue();
+            List<String> scans = getScannedTables(statistics.plan);
+            report.append(newline).append(String.format("%d x, total %.1f ms, max %.1f ms, %s%n", statistics.count,
+                    statistics.totalMillis, statistics.maxMillis,
+                    scans.isEmpty() ? "no full scan" : "full scan of " + String.join(", ", scans)));
+            report.append("    ").append(statement.getKey()).append(newline);
+            for (String step : statistics.plan) {
+                report.append("      ").append(step).append(newline);
+            }
+            for (String table : scans) {
+                String proposal = propose(statement.getKey(), table, statistics.plan);
+                report.append("    -> ").append(proposal == null
+                        ? "no filter or sort on " + table + ", the whole table is read on purpose" : proposal)
+                        .append(newline);
+            }
+        }
+        Set<String> proposals = getProposals();
+        report.append(newline).append("Proposed indexes: ").append(proposals.size()).append(newline);
+        for (String proposal : proposals) {
+            report.append(proposal).append(newline);
+        }
+        return report.toString();
+    }
+
+    /**
+     * Returns the tables or aliases a plan scans without an index.
+     */
+    private static List<String> getScannedTables(List<String> plan) {
+        List<String> tables = new ArrayList<>();
+        for (String step : plan) {
+            Matcher matcher = SCAN.matcher(step);
+            if (matcher.matches() && !matcher.group(2).contains("USING")) {
+                tables.add(matcher.group(1));
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * Proposes an index for the scanned table of the given statement. If the plan sorts the rows in a temporary
+     * B-tree and the statement has no range filter, the columns of the ORDER BY are added, so the index delivers
+     * the rows in order.
+     * @param sql the SQL of the statement
+     * @param scanned the table or alias named by the plan
+     * @param plan the query plan of the statement
+     * @return the <code>CREATE INDEX</code> statement, or null if the statement neither filters nor sorts the table
+     */
+    private static String propose(String sql, String scanned, List<String> plan) {
+        Map<String, String> aliases = new LinkedHashMap<>();
+        Matcher tables = TABLE.matcher(sql);
+        while (tables.find()) {
+            aliases.put(tables.group(1).toLowerCase(Locale.ROOT), tables.group(1));
+            if (tables.group(2) != null) {
+                aliases.put(tables.group(2).toLowerCase(Locale.ROOT), tables.group(1));
+            }
+        }
+        String table = aliases.getOrDefault(scanned.toLowerCase(Locale.ROOT), scanned);
+        boolean singleTable = aliases.values().stream().distinct().count() <= 1;
+
+        Set<String> equalities = new LinkedHashSet<>();
+        Set<String> ranges = new LinkedHashSet<>();
+        int where = indexOfKeyword(sql, "WHERE");
+        int on = indexOfKeyword(sql, "ON");
+        int start = where < 0 ? on : (on < 0 ? where : Math.min(where, on));
+        int end = sql.length();
+        for (String keyword : new String[]{"GROUP BY", "ORDER BY", "LIMIT", "RETURNING"}) {
+            int index = indexOfKeyword(sql, keyword);
+            if (index > start) {
+                end = Math.min(end, index);
+            }
+        }
+
+        String filter = start < 0 ? "" : sql.substring(start, end);
+        Matcher rowValues = ROW_VALUE.matcher(filter);
+        while (rowValues.find()) {
+            if (isOfTable(rowValues.group(1), table, aliases, singleTable)) {
+                ranges.add(rowValues.group(2));
+            }
+        }
+        Matcher predicates = PREDICATE.matcher(filter);
+        while (predicates.find()) {
+            String qualifier = predicates.group(1);
+            String column = predicates.group(2);
+            if (column.equalsIgnoreCase("WHERE") || column.equalsIgnoreCase("AND") || column.equalsIgnoreCase("OR")
+                    || column.equalsIgnoreCase("ON")) {
+                continue;
+            }
+            if (!isOfTable(qualifier, table, aliases, singleTable)) {
+                continue;
+            }
+            String operator = predicates.group(3);
+            if (operator.equals("=") || operator.equals("==") || operator.equalsIgnoreCase("IN")) {
+                equalities.add(column);
+            } else {
+                ranges.add(column);
+            }
+        }
+        ranges.removeAll(equalities);
+        List<String> columns = new ArrayList<>(equalities);
+        if (!ranges.isEmpty()) {
+            columns.add(ranges.iterator().next());
+        } else if (plan.stream().anyMatch(step -> step.contains("TEMP B-TREE FOR ORDER BY"))) {
+            Matcher orderBy = ORDER_BY.matcher(sql);
+            if (orderBy.find()) {
+                for (String term : orderBy.group(1).split(",")) {
+                    String[] parts = term.trim().split("\\s+")[0].split("\\.");
+                    String qualifier = parts.length > 1 ? parts[0] : null;
+                    String column = parts[parts.length - 1];
+                    if (isOfTable(qualifier, table, aliases, singleTable) && !columns.contains(column)) {
+                        columns.add(column);
+                    }
+                }
+            }
+        }
+        if (columns.isEmpty()) {
+            return null;
+        }
+        return "CREATE INDEX IF NOT EXISTS idx_" + table + "_" + String.join("_", columns) + " ON " + table
+                + " (" + String.join(", ", columns) + ");";
+    }
+
+    /**
+     * Tells whether a column with the given qualifier belongs to the given table. Columns without a qualifier are
+     * only assigned if the statement reads a single table.
+     */
+    private static boolean isOfTable(String qualifier, String table, Map<String, String> aliases,
+                                     boolean singleTable) {
+        if (qualifier == null) {
+            return singleTable;
+        }
+        return table.equalsIgnoreCase(aliases.getOrDefault(qualifier.toLowerCase(Locale.ROOT), qualifier));
+    }
+
+    private static int indexOfKeyword(String sql, String keyword) {
+        Matcher matcher = Pattern.compile("\\b" + keyword.replace(" ", "\\s+") + "\\b", Pattern.CASE_INSENSITIVE)
+                .matcher(sql);
+        return matcher.find() ? matcher.start() : -1;
+    }
+
+    /**
+     * The summed up executions of one SQL text.
+     */
+    private static final class Statistics {
+        private final List<String> plan;
+        private int count;
+        private double totalMillis;
+        private double maxMillis;
+
+        Statistics(List<String> plan) {
+            this.plan = plan;
+        }
+
+        void add(SlowQuery entry) {
+            this.count++;
+            this.totalMillis += entry.getDurationMillis();
+            this.maxMillis = Math.max(this.maxMillis, entry.getDurationMillis());
+        }
+    }
+}
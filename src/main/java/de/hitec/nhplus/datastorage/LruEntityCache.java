@@ -0,0 +1,187 @@
+package de.hitec.nhplus.datastorage;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The LruEntityCache class is an {@link EntityCache} bounded by the number of objects. When it is full, the least
+ * recently used object is evicted. Optionally, objects expire after a time to live. The cached result of
+ * <code>readAll</code> is only kept while all its objects fit into the cache. The defaults can be set with the system
+ * properties <code>nhplus.cache.size</code> and <code>nhplus.cache.ttlSeconds</code>.
+ * @param <T> Object of the table
+ */
+public class LruEntityCache<T> implements EntityCache<T> {
+
+    private static final int DEFAULT_MAX_SIZE = 1000;
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LinkedHashMap<Long, Entry<T>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private Entry<List<T>> all;
+    private long generation;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * A cached value with the time it was cached.
+     */
+    private record Entry<V>(V value, long createdNanos) {
+    }
+
+    /**
+     * Constructor to initiate a cache with the configured size and time to live.
+     */
+    public LruEntityCache() {
+        this(Integer.getInteger("nhplus.cache.size", DEFAULT_MAX_SIZE),
+                TimeUnit.SECONDS.toMillis(Long.getLong("nhplus.cache.ttlSeconds", 0)));
+    }
+
+    /**
+     * Constructor to initiate a cache with the given bounds.
+     * @param maxSize the maximum number of objects to keep
+     * @param ttlMillis how long an object stays valid, 0 for no expiry
+     */
+    public LruEntityCache(int maxSize, long ttlMillis) {
+        this.maxSize = Math.max(1, maxSize);
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, ttlMillis));
+    }
+
+    @Override
+    public synchronized long getGeneration() {
+        return this.generation;
+    }
+
+    @Override
+    public synchronized T get(long key) {
+        Entry<T> entry = this.entries.get(key);
+        if (entry != null && isExpired(entry)) {
+            this.entries.remove(key);
+            entry = null;
+        }
+        if (entry == null) {
+            this.misses.incrementAndGet();
+            return null;
+        }
+        this.hits.incrementAndGet();
+        return entry.value();
+    }
+
+    @Override
+    public synchronized void put(long generation, long key, T object) {
+        if (generation != this.generation || object == null) {
+            return;
+        }
+        this.entries.put(key, new Entry<>(object, System.nanoTime()));
+        evictEldest();
+    }
+
+    @Override
+    public synchronized List<T> getAll() {
+        if (this.all != null && isExpired(this.all)) {
+            this.all = null;
+        }
+        if (this.all == null) {
+            this.misses.incrementAndGet();
+            return null;
+        }
+        this.hits.incrementAndGet();
+        return new ArrayList<>(this.all.value());
+    }
+
+    @Override
+    public synchronized void putAll(long generation, List<T> objects, List<Long> keys) {
+        if (generation != this.generation) {
+            return;
+        }
+        long now = System.nanoTime();
+        for (int i = 0; i < objects.size(); i++) {
+            this.entries.put(keys.get(i), new Entry<>(objects.get(i), now));
+        }
+        this.all = objects.size() <= this.maxSize ? new Entry<>(new ArrayList<>(objects), now) : null;
+        evictEldest();
+    }
+
+    @Override
+    public synchronized void invalidate(long key) {
+        this.generation++;
+        this.entries.remove(key);
+        this.all = null;
+    }
+
+    @Override
+    public synchronized void invalidateList() {
+        this.generation++;
+        this.all = null;
+    }
+
+    @Override
+    public synchronized void invalidateAll() {
+        this.generation++;
+        this.entries.clear();
+        this.all = null;
+    }
+
+    /**
+     * Evicts the least recently used objects until the cache is within its bounds again. The cached result of
+     * <code>readAll</code> is dropped with the first eviction, as it would hold the evicted objects.
+     */
+    private void evictEldest() {
+        Iterator<Entry<T>> iterator = this.entries.values().iterator();
+        while (this.entries.size() > this.maxSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            this.evictions.incrementAndGet();
+            this.all = null;
+        }
+    }
+
+    private boolean isExpired(Entry<?> entry) {
+        return this.ttlNanos > 0 && System.nanoTime() - entry.createdNanos() > this.ttlNanos;
+    }
+
+    @Override
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    @Override
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    @Override
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    @Override
+    public long getEvictions() {
+        return this.evictions.get();
+    }
+
+    /**
+     * toString method for debugging purposes.
+     * @return String representation of the cache counters.
+     */
+    @Override
+    public String toString() {
+        return "LruEntityCache{" +
+                "size=" + size() +
+                ", maxSize=" + this.maxSize +
+                ", hits=" + getHits() +
+                ", misses=" + getMisses() +
+                ", evictions=" + getEvictions() +
+                ", hitRatio=" + String.format("%.3f", getHitRatio()) +
+                '}';
+    }
+}
@@ -0,0 +1,40 @@
+package de.hitec.nhplus.datastorage;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A page of objects read by {@link Dao#readPage(PageKey, int, PageOrder)}, together with the key to read the next page.
+ * @param <T> Object of the page
+ */
+public final class Page<T> {
+
+    private final List<T> items;
+    private final PageKey nextKey;
+
+    /**
+     * Constructor to initiate a page.
+     * @param items the objects of the page
+     * @param nextKey the key of the last object, or null if there is no further page
+     */
+    public Page(List<T> items, PageKey nextKey) {
+        this.items = Collections.unmodifiableList(items);
+        this.nextKey = nextKey;
+    }
+
+    public List<T> getItems() {
+        return this.items;
+    }
+
+    /**
+     * Returns the key to pass to the next call of <code>readPage</code>.
+     * @return the key of the last object, or null if this was the last page
+     */
+    public PageKey getNextKey() {
+        return this.nextKey;
+    }
+
+    public boolean hasNext() {
+        return this.nextKey != null;
+    }
+}
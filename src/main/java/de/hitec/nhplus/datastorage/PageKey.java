@@ -0,0 +1,62 @@
+package de.hitec.nhplus.datastorage;
+
+import java.util.Objects;
+
+/**
+ * The PageKey class marks the position of the last row of a page: the value of the sort column and the primary key.
+ * The next page starts right after this position, so the database can seek to it in an index instead of skipping
+ * rows with OFFSET.
+ */
+public final class PageKey {
+
+    private final Object value;
+    private final long id;
+
+    /**
+     * Constructor to initiate a key with the given position.
+     * @param value the value of the sort column, null when sorting by the primary key only
+     * @param id the primary key of the row
+     */
+    public PageKey(Object value, long id) {
+        this.value = value;
+        this.id = id;
+    }
+
+    /**
+     * Creates a key for an order by the primary key only.
+     * @param id the primary key of the row
+     * @return the key of the given row
+     */
+    public static PageKey ofId(long id) {
+        return new PageKey(null, id);
+    }
+
+    public Object getValue() {
+        return this.value;
+    }
+
+    public long getId() {
+        return this.id;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof PageKey key)) {
+            return false;
+        }
+        return this.id == key.id && Objects.equals(this.value, key.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.value, this.id);
+    }
+
+    @Override
+    public String toString() {
+        return "PageKey{" + "value=" + this.value + ", id=" + this.id + '}';
+    }
+}
@@ -0,0 +1,26 @@
+package de.hitec.nhplus.datastorage;
+
+/**
+ * The sort orders supported by {@link Dao#readPage(PageKey, int, PageOrder)}. Every order ends with the primary key,
+ * so the position of a row in the order is unique and can be used as key of the next page.
+ */
+public enum PageOrder {
+    /** Ascending by the primary key. */
+    ID(false),
+    /** Descending by the primary key. */
+    ID_DESC(true),
+    /** Ascending by date, e.g. the date of a treatment, then by the primary key. */
+    DATE(false),
+    /** Descending by date, newest first, then by the primary key. */
+    DATE_DESC(true);
+
+    private final boolean descending;
+
+    PageOrder(boolean descending) {
+        this.descending = descending;
+    }
+
+    public boolean isDescending() {
+        return this.descending;
+    }
+}
@@ -4,7 +4,6 @@ import de.hitec.nhplus.model.Patient;
 import de.hitec.nhplus.utils.DateConverter;
 
 import java.sql.*;
-import java.time.LocalDate;
 import java.util.ArrayList;
 
 /**
@@ -22,6 +21,16 @@ public class PatientDao extends DaoImp<Patient> {
         super(connection);
     }
 
+    /**
+     * The constructor initiates an object of <code>PatientDao</code> and passes the connection source to its super
+     * class. Reads and writes are routed to the reader and writer connections of the source.
+     *
+     * @param source Source of the connections to execute the SQL-statements.
+     */
+    public PatientDao(ConnectionSource source) {
+        super(source);
+    }
+
     /**
      * Generates a <code>PreparedStatement</code> to persist the given object of <code>Patient</code>.
      *
@@ -34,7 +43,7 @@ public class PatientDao extends DaoImp<Patient> {
         try {
             final String SQL = "INSERT INTO patient (firstname, surname, dateOfBirth, carelevel, roomnumber, locked, datecreated) " +
                     "VALUES (?, ?, ?, ?, ?, ?, ?)";
-            preparedStatement = this.connection.prepareStatement(SQL);
+            preparedStatement = this.prepare(SQL);
             preparedStatement.setString(1, patient.getFirstName());
             preparedStatement.setString(2, patient.getSurname());
             preparedStatement.setString(3, patient.getDateOfBirth());
@@ -59,7 +68,7 @@ public class PatientDao extends DaoImp<Patient> {
         PreparedStatement preparedStatement = null;
         try {
             final String SQL = "SELECT * FROM patient WHERE pid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
+            preparedStatement = this.prepare(SQL);
             preparedStatement.setLong(1, pid);
         } catch (SQLException exception) {
             exception.printStackTrace();
@@ -68,10 +77,56 @@ public class PatientDao extends DaoImp<Patient> {
     }
 
     /**
-     * Maps a <code>ResultSet</code> of one patient to an object of <code>Patient</code>.
+     * Returns the name of the table <code>patient</code>.
+     *
+     * @return Name of the table.
+     */
+    @Override
+    protected String getTableName() {
+        return "patient";
+    }
+
+    /**
+     * Returns the name of the primary key column of the table <code>patient</code>.
+     *
+     * @return Name of the primary key column.
+     */
+    @Override
+    protected String getIdColumn() {
+        return "pid";
+    }
+
+    /**
+     * Returns the primary key of the given patient.
+     *
+     * @param patient Object of class <code>Patient</code>.
+     * @return The pid of the patient.
+     */
+    @Override
+    protected long getKey(Patient patient) {
+        return patient.getPid();
+    }
+
+    /**
+     * Returns a copy of the given patient, whose properties are not shared with it.
+     *
+     * @param patient Object of class <code>Patient</code>.
+     * @return The copy of the patient.
+     */
+    @Override
+    public Patient detach(Patient patient) {
+        return new Patient(patient.getPid(), patient.getFirstName(), patient.getSurname(),
+                DateConverter.convertStringToLocalDate(patient.getDateOfBirth()), patient.getCareLevel(),
+                patient.getRoomNumber(), patient.isLocked(), patient.getDateCreated());
+    }
+
+    /**
+     * Maps a <code>ResultSet</code> of one patient to an object of <code>Patient</code>. The date of birth is taken
+     * from the integer column <code>birth_day</code>, so it does not have to be parsed.
      *
      * @param result ResultSet with a single row. Columns will be mapped to an object of class <code>Patient</code>.
      * @return Object of class <code>Patient</code> with the data from the resultSet.
+     * @throws SQLException if the stored date of birth is not valid.
      */
     @Override
     protected Patient getInstanceFromResultSet(ResultSet result) throws SQLException {
@@ -79,7 +134,7 @@ public class PatientDao extends DaoImp<Patient> {
                 result.getInt(1),
                 result.getString(2),
                 result.getString(3),
-                DateConverter.convertStringToLocalDate(result.getString(4)),
+                getEpochDay(result, "birth_day"),
                 result.getString(5),
                 result.getString(6),
                 result.getBoolean(7),
@@ -96,7 +151,7 @@ public class PatientDao extends DaoImp<Patient> {
         PreparedStatement statement = null;
         try {
             final String SQL = "SELECT * FROM patient";
-            statement = this.connection.prepareStatement(SQL);
+            statement = this.prepare(SQL);
         } catch (SQLException exception) {
             exception.printStackTrace();
         }
@@ -114,11 +169,7 @@ public class PatientDao extends DaoImp<Patient> {
     protected ArrayList<Patient> getListFromResultSet(ResultSet result) throws SQLException {
         ArrayList<Patient> list = new ArrayList<>();
         while (result.next()) {
-            LocalDate date = DateConverter.convertStringToLocalDate(result.getString(4));
-            Patient patient = new Patient(result.getInt(1), result.getString(2),
-                    result.getString(3), date,
-                    result.getString(5), result.getString(6), result.getBoolean(7), result.getString(8));
-            list.add(patient);
+            list.add(getInstanceFromResultSet(result));
         }
         return list;
     }
@@ -144,7 +195,7 @@ public class PatientDao extends DaoImp<Patient> {
                             "locked = ?, " +
                             "datecreated = ? " +
                             "WHERE pid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
+            preparedStatement = this.prepare(SQL);
             preparedStatement.setString(1, patient.getFirstName());
             preparedStatement.setString(2, patient.getSurname());
             preparedStatement.setString(3, patient.getDateOfBirth());
@@ -170,7 +221,7 @@ public class PatientDao extends DaoImp<Patient> {
         PreparedStatement preparedStatement = null;
         try {
             final String SQL = "DELETE FROM patient WHERE pid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
+            preparedStatement = this.prepare(SQL);
             preparedStatement.setLong(1, pid);
         } catch (SQLException exception) {
             exception.printStackTrace();
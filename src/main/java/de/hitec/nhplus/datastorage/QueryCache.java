@@ -0,0 +1,156 @@
+package de.hitec.nhplus.datastorage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The QueryCache class keeps the results of list queries, keyed by the query and its parameters. Every result
+ * remembers the {@link TableVersions version} of its table when it was read and is only returned while that version
+ * is still current, so any write to the table invalidates all its results at once. The number of results is bounded,
+ * the least recently used result is dropped first. The bound can be set with the system property
+ * <code>nhplus.queryCache.size</code>.
+ */
+public class QueryCache {
+
+    private static final int DEFAULT_MAX_ENTRIES = 256;
+
+    private final TableVersions versions;
+    private final int maxEntries;
+    private final Map<QueryKey, Result> results;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * A query with its parameters.
+     */
+    private record QueryKey(String table, String query, List<Object> parameters) {
+    }
+
+    /**
+     * A cached result with the version of its table.
+     */
+    private record Result(List<?> objects, long version) {
+    }
+
+    /**
+     * Constructor to initiate a cache with the configured bound.
+     * @param versions the versions of the tables
+     */
+    public QueryCache(TableVersions versions) {
+        this(versions, Integer.getInteger("nhplus.queryCache.size", DEFAULT_MAX_ENTRIES));
+    }
+
+    /**
+     * Constructor to initiate a cache with the given bound.
+     * @param versions the versions of the tables
+     * @param maxEntries the maximum number of results to keep
+     */
+    public QueryCache(TableVersions versions, int maxEntries) {
+        this.versions = versions;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.results = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<QueryKey, Result> eldest) {
+                return size() > QueryCache.this.maxEntries;
+            }
+        };
+    }
+
+    public TableVersions getVersions() {
+        return this.versions;
+    }
+
+    /**
+     * Returns the current version of the given table, to be passed to <code>put</code> after the query.
+     * @param table the table the query reads
+     * @return the current version of the table
+     */
+    public long getVersion(String table) {
+        return this.versions.get(table);
+    }
+
+    /**
+     * Returns a copy of the cached result of the given query.
+     * @param table the table the query reads
+     * @param query the name or SQL text of the query
+     * @param parameters the parameters of the query
+     * @return the cached objects, or null if the result is not cached or the table has changed since
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <E> ArrayList<E> get(String table, String query, Object... parameters) {
+        QueryKey key = new QueryKey(table, query, Arrays.asList(parameters));
+        Result result = this.results.get(key);
+        if (result != null && result.version() != this.versions.get(table)) {
+            this.results.remove(key);
+            result = null;
+        }
+        if (result == null) {
+            this.misses.incrementAndGet();
+            return null;
+        }
+        this.hits.incrementAndGet();
+        return new ArrayList<>((List<E>) result.objects());
+    }
+
+    /**
+     * Caches the result of the given query, unless the table has changed since the given version.
+     * @param table the table the query reads
+     * @param version the version of the table seen before the query
+     * @param objects the objects read
+     * @param query the name or SQL text of the query
+     * @param parameters the parameters of the query
+     */
+    public synchronized void put(String table, long version, List<?> objects, String query, Object... parameters) {
+        if (version != this.versions.get(table)) {
+            return;
+        }
+        this.results.put(new QueryKey(table, query, Arrays.asList(parameters)), new Result(List.copyOf(objects),
+                version));
+    }
+
+    /**
+     * Removes all results.
+     */
+    public synchronized void clear() {
+        this.results.clear();
+    }
+
+    public synchronized int size() {
+        return this.results.size();
+    }
+
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * Returns the share of queries that could be answered from the cache.
+     * @return the hit ratio between 0 and 1
+     */
+    public double getHitRatio() {
+        long total = getHits() + getMisses();
+        return total == 0 ? 0 : (double) getHits() / total;
+    }
+
+    /**
+     * toString method for debugging purposes.
+     * @return String representation of the cache counters.
+     */
+    @Override
+    public String toString() {
+        return "QueryCache{" +
+                "size=" + size() +
+                ", hits=" + getHits() +
+                ", misses=" + getMisses() +
+                ", hitRatio=" + String.format("%.3f", getHitRatio()) +
+                '}';
+    }
+}
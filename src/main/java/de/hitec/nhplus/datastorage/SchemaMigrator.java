@@ -0,0 +1,353 @@
+package de.hitec.nhplus.datastorage;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * The SchemaMigrator class brings the schema of the database up to date. The version of the schema is kept in
+ * <code>PRAGMA user_version</code>. Every {@link Migration} with a higher version than the database is applied in its
+ * own transaction, together with the new version, so a failed migration leaves the database at the previous version.
+ * A database that is already up to date is not changed. New schema changes are added as a new migration at the end
+ * of {@link #MIGRATIONS}; applied migrations must never be changed.
+ */
+public class SchemaMigrator {
+
+    /**
+     * One step of the schema, identified by its version.
+     */
+    public static final class Migration {
+        private final int version;
+        private final String description;
+        private final List<String> statements;
+
+        /**
+         * Constructor to initiate a migration.
+         * @param version the version of the schema after this migration
+         * @param description what the migration changes
+         * @param statements the SQL statements of the migration, executed in order
+         */
+        public Migration(int version, String description, String... statements) {
+            this.version = version;
+            this.description = description;
+            this.statements = List.of(statements);
+        }
+
+        public int getVersion() {
+            return this.version;
+        }
+
+        public String getDescription() {
+            return this.description;
+        }
+
+        public List<String> getStatements() {
+            return this.statements;
+        }
+    }
+
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "Tabellen patient, caregiver, treatment und user",
+                    "CREATE TABLE IF NOT EXISTS patient (" +
+                            "   pid INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                            "   firstname TEXT NOT NULL, " +
+                            "   surname TEXT NOT NULL, " +
+                            "   dateOfBirth TEXT NOT NULL, " +
+                            "   carelevel TEXT NOT NULL, " +
+                            "   roomnumber TEXT NOT NULL, " +
+                            "   locked BOOLEAN NOT NULL, " +
+                            "   datecreated TEXT NOT NULL " +
+                            ")",
+                    "CREATE TABLE IF NOT EXISTS caregiver (" +
+                            "   cid INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                            "   firstname TEXT NOT NULL, " +
+                            "   surname TEXT NOT NULL, " +
+                            "   phonenumber TEXT NOT NULL, " +
+                            "   locked BOOLEAN NOT NULL, " +
+                            "   datecreated TEXT NOT NULL" +
+                            ")",
+                    "CREATE TABLE IF NOT EXISTS treatment (" +
+                            "   tid INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                            "   pid INTEGER NOT NULL, " +
+                            "   cid INTEGER NOT NULL," +
+                            "   treatment_date TEXT NOT NULL, " +
+                            "   begin TEXT NOT NULL, " +
+                            "   end TEXT NOT NULL, " +
+                            "   description TEXT NOT NULL, " +
+                            "   remark TEXT NOT NULL," +
+                            "   locked BOOLEAN NOT NULL, " +
+                            "   datecreated TEXT NOT NULL, " +
+                            "   FOREIGN KEY (cid) REFERENCES caregiver (cid), " +
+                            "   FOREIGN KEY (pid) REFERENCES patient (pid) " +
+                            ")",
+                    "CREATE TABLE IF NOT EXISTS user (" +
+                            "   id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                            "   email TEXT NOT NULL, " +
+                            "   password TEXT NOT NULL, " +
+                            "   status INTEGER NOT NULL" +
+                            ")"),
+            new Migration(2, "Indizes auf treatment und eindeutige E-Mail-Adressen der Benutzer",
+                    "CREATE INDEX IF NOT EXISTS idx_treatment_pid ON treatment (pid)",
+                    "CREATE INDEX IF NOT EXISTS idx_treatment_cid ON treatment (cid)",
+                    "CREATE INDEX IF NOT EXISTS idx_treatment_treatment_date ON treatment (treatment_date)",
+                    "CREATE UNIQUE INDEX IF NOT EXISTS idx_user_email ON user (email)"),
+            new Migration(3, "Kombinierte Indizes für Behandlungsfilter nach Patient oder Pflegekraft und Datum",
+                    "CREATE INDEX IF NOT EXISTS idx_treatment_pid_treatment_date ON treatment (pid, treatment_date)",
+                    "CREATE INDEX IF NOT EXISTS idx_treatment_cid_treatment_date ON treatment (cid, treatment_date)"),
+            new Migration(4, "Datumsangaben als Tage seit 1970 und Uhrzeiten als Minuten des Tages mit Indizes",
+                    "ALTER TABLE treatment ADD COLUMN treatment_day INTEGER " +
+                            "GENERATED ALWAYS AS (" + epochDay("treatment_date") + ") VIRTUAL",
+                    "ALTER TABLE treatment ADD COLUMN begin_minute INTEGER " +
+                            "GENERATED ALWAYS AS (" + minuteOfDay("begin") + ") VIRTUAL",
+                    "ALTER TABLE treatment ADD COLUMN end_minute INTEGER " +
+                            "GENERATED ALWAYS AS (" + minuteOfDay("end") + ") VIRTUAL",
+                    "ALTER TABLE treatment ADD COLUMN created_day INTEGER " +
+                            "GENERATED ALWAYS AS (" + epochDay("datecreated") + ") VIRTUAL",
+                    "ALTER TABLE patient ADD COLUMN birth_day INTEGER " +
+                            "GENERATED ALWAYS AS (" + epochDay("dateOfBirth") + ") VIRTUAL",
+                    "ALTER TABLE patient ADD COLUMN created_day INTEGER " +
+                            "GENERATED ALWAYS AS (" + epochDay("datecreated") + ") VIRTUAL",
+                    "ALTER TABLE caregiver ADD COLUMN created_day INTEGER " +
+                            "GENERATED ALWAYS AS (" + epochDay("datecreated") + ") VIRTUAL",
+                    "CREATE INDEX IF NOT EXISTS idx_treatment_treatment_day ON treatment (treatment_day)",
+                    "CREATE INDEX IF NOT EXISTS idx_treatment_pid_treatment_day ON treatment (pid, treatment_day)",
+                    "CREATE INDEX IF NOT EXISTS idx_treatment_cid_treatment_day ON treatment (cid, treatment_day)",
+                    "CREATE INDEX IF NOT EXISTS idx_treatment_created_day ON treatment (created_day)",
+                    "CREATE INDEX IF NOT EXISTS idx_patient_created_day ON patient (created_day)",
+                    "CREATE INDEX IF NOT EXISTS idx_caregiver_created_day ON caregiver (created_day)",
+                    "DROP INDEX IF EXISTS idx_treatment_treatment_date",
+                    "DROP INDEX IF EXISTS idx_treatment_pid_treatment_date",
+                    "DROP INDEX IF EXISTS idx_treatment_cid_treatment_date"),
+            new Migration(5, "Volltextsuche über Beschreibung und Bemerkungen der Behandlungen",
+                    "CREATE VIRTUAL TABLE IF NOT EXISTS treatment_fts USING fts5(" +
+                            "description, remark, content = 'treatment', content_rowid = 'tid', " +
+                            "tokenize = 'unicode61 remove_diacritics 2')",
+                    "CREATE TRIGGER IF NOT EXISTS treatment_fts_insert AFTER INSERT ON treatment BEGIN " +
+                            "INSERT INTO treatment_fts (rowid, description, remark) " +
+                            "VALUES (new.tid, new.description, new.remark); " +
+                            "END",
+                    "CREATE TRIGGER IF NOT EXISTS treatment_fts_delete AFTER DELETE ON treatment BEGIN " +
+                            "INSERT INTO treatment_fts (treatment_fts, rowid, description, remark) " +
+                            "VALUES ('delete', old.tid, old.description, old.remark); " +
+                            "END",
+                    "CREATE TRIGGER IF NOT EXISTS treatment_fts_update AFTER UPDATE OF description, remark " +
+                            "ON treatment BEGIN " +
+                            "INSERT INTO treatment_fts (treatment_fts, rowid, description, remark) " +
+                            "VALUES ('delete', old.tid, old.description, old.remark); " +
+                            "INSERT INTO treatment_fts (rowid, description, remark) " +
+                            "VALUES (new.tid, new.description, new.remark); " +
+                            "END",
+                    "INSERT INTO treatment_fts (treatment_fts, rank) VALUES ('rank', 'bm25(2.0, 1.0)')",
+                    "INSERT INTO treatment_fts (treatment_fts) VALUES ('rebuild')"),
+            new Migration(6, "Pflegeminuten je Pflegekraft und Patient/in, Monat und Beschreibung",
+                    "CREATE TABLE IF NOT EXISTS care_minutes_caregiver (" +
+                            "   cid INTEGER NOT NULL, " +
+                            "   month INTEGER NOT NULL, " +
+                            "   description TEXT NOT NULL, " +
+                            "   minutes INTEGER NOT NULL, " +
+                            "   treatments INTEGER NOT NULL, " +
+                            "   PRIMARY KEY (cid, month, description)" +
+                            ") WITHOUT ROWID",
+                    "CREATE TABLE IF NOT EXISTS care_minutes_patient (" +
+                            "   pid INTEGER NOT NULL, " +
+                            "   month INTEGER NOT NULL, " +
+                            "   description TEXT NOT NULL, " +
+                            "   minutes INTEGER NOT NULL, " +
+                            "   treatments INTEGER NOT NULL, " +
+                            "   PRIMARY KEY (pid, month, description)" +
+                            ") WITHOUT ROWID",
+                    "CREATE INDEX IF NOT EXISTS idx_care_minutes_caregiver_month ON care_minutes_caregiver (month)",
+                    "CREATE INDEX IF NOT EXISTS idx_care_minutes_patient_month ON care_minutes_patient (month)",
+                    "CREATE TRIGGER IF NOT EXISTS care_minutes_insert AFTER INSERT ON treatment BEGIN " +
+                            addCareMinutes("cid", "care_minutes_caregiver") +
+                            addCareMinutes("pid", "care_minutes_patient") +
+                            "END",
+                    "CREATE TRIGGER IF NOT EXISTS care_minutes_delete AFTER DELETE ON treatment BEGIN " +
+                            subtractCareMinutes("cid", "care_minutes_caregiver") +
+                            subtractCareMinutes("pid", "care_minutes_patient") +
+                            "END",
+                    "CREATE TRIGGER IF NOT EXISTS care_minutes_update " +
+                            "AFTER UPDATE OF pid, cid, treatment_date, begin, end, description ON treatment BEGIN " +
+                            subtractCareMinutes("cid", "care_minutes_caregiver") +
+                            subtractCareMinutes("pid", "care_minutes_patient") +
+                            addCareMinutes("cid", "care_minutes_caregiver") +
+                            addCareMinutes("pid", "care_minutes_patient") +
+                            "END",
+                    "INSERT INTO care_minutes_caregiver (cid, month, description, minutes, treatments) " +
+                            "SELECT cid, CAST(strftime('%Y%m', treatment_date) AS INTEGER), description, " +
+                            "SUM(((end_minute - begin_minute + 1440) % 1440)), COUNT(*) FROM treatment " +
+                            "GROUP BY 1, 2, 3",
+                    "INSERT INTO care_minutes_patient (pid, month, description, minutes, treatments) " +
+                            "SELECT pid, CAST(strftime('%Y%m', treatment_date) AS INTEGER), description, " +
+                            "SUM(((end_minute - begin_minute + 1440) % 1440)), COUNT(*) FROM treatment " +
+                            "GROUP BY 1, 2, 3"),
+            new Migration(7, "Änderungsprotokoll für die Aktualisierung der Ansichten",
+                    "CREATE TABLE IF NOT EXISTS change_log (" +
+                            "   seq INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                            "   table_name TEXT NOT NULL, " +
+                            "   row_id INTEGER NOT NULL, " +
+                            "   operation TEXT NOT NULL, " +
+                            "   changed_at INTEGER NOT NULL DEFAULT (unixepoch())" +
+                            ")",
+                    "CREATE INDEX IF NOT EXISTS idx_change_log_table_name_seq ON change_log (table_name, seq)",
+                    logChanges("patient", "pid", "INSERT", "new"),
+                    logChanges("patient", "pid", "UPDATE", "new"),
+                    logChanges("patient", "pid", "DELETE", "old"),
+                    logChanges("caregiver", "cid", "INSERT", "new"),
+                    logChanges("caregiver", "cid", "UPDATE", "new"),
+                    logChanges("caregiver", "cid", "DELETE", "old"),
+                    logChanges("treatment", "tid", "INSERT", "new"),
+                    logChanges("treatment", "tid", "UPDATE", "new"),
+                    logChanges("treatment", "tid", "DELETE", "old"))
+    );
+
+    private SchemaMigrator() {
+    }
+
+    /**
+     * Returns the SQL expression converting a date column in the format <code>yyyy-MM-dd</code> to the number of days
+     * since 1970-01-01, like {@link java.time.LocalDate#toEpochDay()}.
+     */
+    private static String epochDay(String column) {
+        return "CAST(unixepoch(" + column + ") / 86400 AS INTEGER)";
+    }
+
+    /**
+     * Returns the SQL expression converting a time column in the format <code>HH:mm</code> to the minute of the day.
+     */
+    private static String minuteOfDay(String column) {
+        return "CAST(substr(" + column + ", 1, 2) AS INTEGER) * 60 + CAST(substr(" + column + ", 4, 2) AS INTEGER)";
+    }
+
+    /**
+     * Returns the trigger statement adding the minutes of the new row of a treatment to the given summary table. The
+     * month and the duration are written out here instead of taken from {@link CareMinutesDao}, so the migration
+     * stays as it was released.
+     */
+    private static String addCareMinutes(String keyColumn, String table) {
+        return "INSERT INTO " + table + " (" + keyColumn + ", month, description, minutes, treatments) " +
+                "VALUES (new." + keyColumn + ", CAST(strftime('%Y%m', new.treatment_date) AS INTEGER), " +
+                "new.description, ((new.end_minute - new.begin_minute + 1440) % 1440), 1) " +
+                "ON CONFLICT (" + keyColumn + ", month, description) DO UPDATE SET " +
+                "minutes = minutes + excluded.minutes, treatments = treatments + 1; ";
+    }
+
+    /**
+     * Returns the trigger statements subtracting the minutes of the old row of a treatment from the given summary
+     * table and dropping the summary row once it counts no treatment anymore.
+     */
+    private static String subtractCareMinutes(String keyColumn, String table) {
+        String condition = " WHERE " + keyColumn + " = old." + keyColumn + " AND month = " +
+                "CAST(strftime('%Y%m', old.treatment_date) AS INTEGER) AND description = old.description";
+        return "UPDATE " + table + " SET minutes = minutes - ((old.end_minute - old.begin_minute + 1440) % 1440)" +
+                ", treatments = treatments - 1" + condition + "; " +
+                "DELETE FROM " + table + condition + " AND treatments <= 0; ";
+    }
+
+    /**
+     * Returns the statement creating the trigger that writes the given operation on a table to the change log.
+     */
+    private static String logChanges(String table, String idColumn, String operation, String row) {
+        return "CREATE TRIGGER IF NOT EXISTS change_log_" + table + "_" + operation.toLowerCase() + " AFTER " +
+                operation + " ON " + table + " BEGIN " +
+                "INSERT INTO change_log (table_name, row_id, operation) " +
+                "VALUES ('" + table + "', " + row + "." + idColumn + ", '" + operation + "'); " +
+                "END";
+    }
+
+    /**
+     * Returns all migrations, ordered by version.
+     * @return the migrations of the schema
+     */
+    public static List<Migration> getMigrations() {
+        return MIGRATIONS;
+    }
+
+    /**
+     * Returns the version of the newest migration.
+     * @return the version the schema is migrated to
+     */
+    public static int getLatestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).getVersion();
+    }
+
+    /**
+     * Migrates the database of the given source on its writer connection.
+     * @param source the source of the connections to the database
+     * @return the number of applied migrations
+     * @throws SQLException if a migration failed or the database is newer than this application
+     */
+    public static int migrate(ConnectionSource source) throws SQLException {
+        Connection writer = source.acquireWriter();
+        try {
+            return migrate(writer);
+        } finally {
+            source.release(writer);
+        }
+    }
+
+    /**
+     * Applies all migrations with a higher version than the database on the given connection.
+     * @param connection the connection to the database
+     * @return the number of applied migrations
+     * @throws SQLException if a migration failed or the database is newer than this application
+     */
+    public static int migrate(Connection connection) throws SQLException {
+        int current = getVersion(connection);
+        if (current > getLatestVersion()) {
+            throw new SQLException("The database has schema version " + current
+                    + ", this application only knows version " + getLatestVersion());
+        }
+        int applied = 0;
+        for (Migration migration : MIGRATIONS) {
+            if (migration.getVersion() > current && apply(connection, migration)) {
+                applied++;
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Applies one migration in a transaction. The version is read again within the transaction, so a migration that
+     * another process applied in the meantime is skipped.
+     * @return true if the migration was applied
+     */
+    private static boolean apply(Connection connection, Migration migration) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            if (getVersion(connection) >= migration.getVersion()) {
+                connection.rollback();
+                return false;
+            }
+            for (String sql : migration.getStatements()) {
+                statement.execute(sql);
+            }
+            statement.execute("PRAGMA user_version = " + migration.getVersion());
+            connection.commit();
+            System.out.println("Datenbank auf Version " + migration.getVersion() + " migriert: "
+                    + migration.getDescription());
+            return true;
+        } catch (SQLException | RuntimeException exception) {
+            connection.rollback();
+            throw exception;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Returns the schema version stored in the database.
+     * @param connection the connection to the database
+     * @return the value of <code>PRAGMA user_version</code>, 0 for a new database
+     * @throws SQLException if the version could not be read
+     */
+    public static int getVersion(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("PRAGMA user_version")) {
+            return result.next() ? result.getInt(1) : 0;
+        }
+    }
+}
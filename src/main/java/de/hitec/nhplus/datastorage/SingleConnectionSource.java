@@ -0,0 +1,48 @@
+package de.hitec.nhplus.datastorage;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * The SingleConnectionSource class hands out the same connection for reads and writes. It is used for DAOs that are
+ * created with a plain <code>Connection</code>.
+ */
+public class SingleConnectionSource implements ConnectionSource {
+
+    private final Connection connection;
+
+    /**
+     * Constructor to initiate a source for the given connection.
+     * @param connection the connection to hand out
+     */
+    public SingleConnectionSource(Connection connection) {
+        this.connection = connection;
+    }
+
+    @Override
+    public Connection acquireReader() {
+        return this.connection;
+    }
+
+    @Override
+    public Connection acquireWriter() {
+        return this.connection;
+    }
+
+    @Override
+    public void release(Connection connection) {
+    }
+
+    /**
+     * Closes the cached statements and the connection.
+     */
+    @Override
+    public void close() {
+        StatementCache.discard(this.connection);
+        try {
+            this.connection.close();
+        } catch (SQLException exception) {
+            exception.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package de.hitec.nhplus.datastorage;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The SlowQuery class is one entry of the {@link SlowQueryLog}: the SQL of a statement that took longer than the
+ * threshold, its redacted bind values, its duration and the output of <code>EXPLAIN QUERY PLAN</code>.
+ */
+public final class SlowQuery {
+
+    private final LocalDateTime time;
+    private final String sql;
+    private final SortedMap<Integer, String> binds;
+    private final double durationMillis;
+    private final int rows;
+    private final List<String> plan;
+
+    /**
+     * Constructor to initiate an entry. The bind values are redacted right away, so no patient data is kept.
+     * @param sql the SQL text of the statement
+     * @param binds the bind values by parameter index
+     * @param durationMillis the time spent in the statement and in reading its rows
+     * @param rows the number of rows read, or the number of rows changed by an update
+     * @param plan the lines of the query plan
+     */
+    SlowQuery(String sql, Map<Integer, Object> binds, double durationMillis, int rows, List<String> plan) {
+        this.time = LocalDateTime.now();
+        this.sql = sql;
+        this.binds = new TreeMap<>();
+        for (Map.Entry<Integer, Object> bind : binds.entrySet()) {
+            this.binds.put(bind.getKey(), redact(bind.getValue()));
+        }
+        this.durationMillis = durationMillis;
+        this.rows = rows;
+        this.plan = Collections.unmodifiableList(plan);
+    }
+
+    /**
+     * Returns a presentation of a bind value that is safe to log. Numbers and booleans are kept, because they are
+     * keys and flags, all other values are replaced by their length.
+     * @param value the bind value
+     * @return the redacted value
+     */
+    static String redact(Object value) {
+        if (value == null) {
+            return "NULL";
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            return value.toString();
+        }
+        return "'***'(" + value.toString().length() + ")";
+    }
+
+    public LocalDateTime getTime() {
+        return this.time;
+    }
+
+    public String getSql() {
+        return this.sql;
+    }
+
+    public SortedMap<Integer, String> getBinds() {
+        return Collections.unmodifiableSortedMap(this.binds);
+    }
+
+    public double getDurationMillis() {
+        return this.durationMillis;
+    }
+
+    public int getRows() {
+        return this.rows;
+    }
+
+    public List<String> getPlan() {
+        return this.plan;
+    }
+
+    /**
+     * Presents the entry as it is written to the log file.
+     * @return the entry with its plan, one line per plan step
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        text.append(this.time).append(String.format(" %.1f ms, %d rows: ", this.durationMillis, this.rows))
+                .append(this.sql);
+        if (!this.binds.isEmpty()) {
+            text.append(" binds ").append(this.binds);
+        }
+        for (String step : this.plan) {
+            text.append(System.lineSeparator()).append("    ").append(step);
+        }
+        return text.toString();
+    }
+}
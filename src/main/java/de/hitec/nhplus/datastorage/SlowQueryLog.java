@@ -0,0 +1,290 @@
+package de.hitec.nhplus.datastorage;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The SlowQueryLog class records the statements of the DAOs that take longer than a threshold. For every slow
+ * statement the SQL, the redacted bind values and the output of <code>EXPLAIN QUERY PLAN</code> are kept and appended
+ * to a log file. The {@link IndexAdvisor} turns the entries into a report of full table scans and proposed indexes.
+ * <p>
+ * The log is off by default. It is switched on with the system property <code>nhplus.slowQuery.thresholdMs</code>,
+ * a threshold of 0 records every statement. The log file is <code>db/slow-queries.log</code> and can be changed with
+ * the system property <code>nhplus.slowQuery.file</code>. While the log is off, the statements are not wrapped at all.
+ */
+public class SlowQueryLog {
+
+    private static final String THRESHOLD_PROPERTY = "nhplus.slowQuery.thresholdMs";
+    private static final String FILE_PROPERTY = "nhplus.slowQuery.file";
+    private static final int MAX_ENTRIES = 1000;
+
+    private static final SlowQueryLog INSTANCE = new SlowQueryLog(Long.getLong(THRESHOLD_PROPERTY, -1),
+            Paths.get(System.getProperty(FILE_PROPERTY, "db/slow-queries.log")));
+
+    private volatile long thresholdNanos;
+    private final Path file;
+    private final Deque<SlowQuery> entries = new ArrayDeque<>();
+    private final Map<String, List<String>> plans = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor to initiate a log with the given threshold.
+     * @param thresholdMillis the threshold in milliseconds, a negative value switches the log off
+     * @param file the file to append the entries to, or null to keep them in memory only
+     */
+    SlowQueryLog(long thresholdMillis, Path file) {
+        setThresholdMillis(thresholdMillis);
+        this.file = file;
+    }
+
+    /**
+     * Returns the log used by the DAOs.
+     * @return the slow query log of the application
+     */
+    public static SlowQueryLog getInstance() {
+        return INSTANCE;
+    }
+
+    public boolean isEnabled() {
+        return this.thresholdNanos >= 0;
+    }
+
+    public long getThresholdMillis() {
+        return this.thresholdNanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(this.thresholdNanos);
+    }
+
+    /**
+     * Sets the threshold above which statements are recorded.
+     * @param thresholdMillis the threshold in milliseconds, a negative value switches the log off
+     */
+    public void setThresholdMillis(long thresholdMillis) {
+        this.thresholdNanos = thresholdMillis < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+    }
+
+    /**
+     * Wraps the given statement, so its executions are timed. If the log is off, the statement is returned as it is.
+     * @param connection the connection the statement belongs to, used to explain the query plan
+     * @param sql the SQL text of the statement
+     * @param statement the statement to wrap
+     * @return the wrapped statement
+     */
+    public PreparedStatement wrap(Connection connection, String sql, PreparedStatement statement) {
+        if (!isEnabled() || statement == null) {
+            return statement;
+        }
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, new TimedStatement(connection, sql, statement));
+    }
+
+    /**
+     * Records the execution of a statement if it took longer than the threshold.
+     */
+    private void record(Connection connection, String sql, Map<Integer, Object> binds, long nanos, int rows) {
+        long threshold = this.thresholdNanos;
+        if (threshold < 0 || nanos < threshold) {
+            return;
+        }
+        SlowQuery entry = new SlowQuery(sql, binds, nanos / 1_000_000.0, rows, explain(connection, sql, binds));
+        synchronized (this.entries) {
+            this.entries.addLast(entry);
+            if (this.entries.size() > MAX_ENTRIES) {
+                this.entries.removeFirst();
+            }
+        }
+        append(entry);
+    }
+
+    /**
+     * Returns the query plan of the given SQL. The plan is explained once per SQL text on the connection that ran the
+     * statement, so it is based on the same schema and statistics.
+     */
+    private List<String> explain(Connection connection, String sql, Map<Integer, Object> binds) {
+        return this.plans.computeIfAbsent(sql, key -> {
+            List<String> plan = new ArrayList<>();
+            Map<Integer, Integer> depths = new HashMap<>();
+            try (PreparedStatement statement = connection.prepareStatement("EXPLAIN QUERY PLAN " + key)) {
+                for (Map.Entry<Integer, Object> bind : binds.entrySet()) {
+                    statement.setObject(bind.getKey(), bind.getValue());
+                }
+                try (ResultSet result = statement.executeQuery()) {
+                    while (result.next()) {
+                        int depth = depths.getOrDefault(result.getInt("parent"), -1) + 1;
+                        depths.put(result.getInt("id"), depth);
+                        plan.add("  ".repeat(depth) + result.getString("detail"));
+                    }
+                }
+            } catch (SQLException exception) {
+                plan.add("EXPLAIN QUERY PLAN failed: " + exception.getMessage());
+            }
+            return plan;
+        });
+    }
+
+    private void append(SlowQuery entry) {
+        if (this.file == null) {
+            return;
+        }
+        synchronized (this.file) {
+            try {
+                Files.writeString(this.file, entry + System.lineSeparator(), StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException exception) {
+                exception.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Returns the recorded entries, oldest first. Only the last entries are kept in memory.
+     * @return a copy of the recorded entries
+     */
+    public List<SlowQuery> getEntries() {
+        synchronized (this.entries) {
+            return new ArrayList<>(this.entries);
+        }
+    }
+
+    /**
+     * Forgets the recorded entries and explained plans, e.g. after new indexes were created.
+     */
+    public void clear() {
+        synchronized (this.entries) {
+            this.entries.clear();
+        }
+        this.plans.clear();
+    }
+
+    /**
+     * Returns the report of the {@link IndexAdvisor} for the recorded entries.
+     * @return the report as text
+     */
+    public String report() {
+        return new IndexAdvisor(getEntries()).report();
+    }
+
+    /**
+     * Writes the report of the {@link IndexAdvisor} to the given file, e.g. when the application is closed.
+     * @param target the file to write the report to
+     * @throws IOException if the file could not be written
+     */
+    public void writeReport(Path target) throws IOException {
+        Files.writeString(target, report(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Unwraps the exception of a reflective call, so the caller sees the exception of the driver.
+     */
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException exception) {
+            throw exception.getCause();
+        }
+    }
+
+    /**
+     * Times the executions of one statement and remembers its bind values. Queries are timed until their ResultSet is
+     * read to the end or closed, because SQLite computes most rows while they are fetched.
+     */
+    private final class TimedStatement implements InvocationHandler {
+        private final Connection connection;
+        private final String sql;
+        private final PreparedStatement statement;
+        private final Map<Integer, Object> binds = new TreeMap<>();
+
+        TimedStatement(Connection connection, String sql, PreparedStatement statement) {
+            this.connection = connection;
+            this.sql = sql;
+            this.statement = statement;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                this.binds.put(index, name.equals("setNull") ? null : args[1]);
+            } else if (name.equals("clearParameters")) {
+                this.binds.clear();
+            } else if (name.equals("executeQuery") && (args == null || args.length == 0)) {
+                long start = System.nanoTime();
+                ResultSet result = (ResultSet) SlowQueryLog.invoke(this.statement, method, args);
+                return Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                        new TimedResultSet(this, result, System.nanoTime() - start));
+            } else if (name.startsWith("execute")) {
+                long start = System.nanoTime();
+                Object result = SlowQueryLog.invoke(this.statement, method, args);
+                record(this.connection, this.sql, new TreeMap<>(this.binds), System.nanoTime() - start,
+                        result instanceof Integer count ? count : 0);
+                return result;
+            }
+            return SlowQueryLog.invoke(this.statement, method, args);
+        }
+    }
+
+    /**
+     * Adds the time spent in <code>next()</code> to the time of the query and records it once, when the last row
+     * was read or the ResultSet is closed.
+     */
+    private final class TimedResultSet implements InvocationHandler {
+        private final TimedStatement statement;
+        private final ResultSet result;
+        private final Map<Integer, Object> binds;
+        private long nanos;
+        private int rows;
+        private boolean recorded;
+
+        TimedResultSet(TimedStatement statement, ResultSet result, long nanos) {
+            this.statement = statement;
+            this.result = result;
+            this.binds = new TreeMap<>(statement.binds);
+            this.nanos = nanos;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("next")) {
+                long start = System.nanoTime();
+                boolean hasRow = (Boolean) SlowQueryLog.invoke(this.result, method, args);
+                this.nanos += System.nanoTime() - start;
+                if (hasRow) {
+                    this.rows++;
+                } else {
+                    finish();
+                }
+                return hasRow;
+            }
+            if (name.equals("close")) {
+                finish();
+            }
+            return SlowQueryLog.invoke(this.result, method, args);
+        }
+
+        private void finish() {
+            if (!this.recorded) {
+                this.recorded = true;
+                record(this.statement.connection, this.statement.sql, this.binds, this.nanos, this.rows);
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package de.hitec.nhplus.datastorage;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The StatementCache class keeps the <code>PreparedStatement</code>s of one connection, keyed by their SQL text.
+ * Preparing a statement makes SQLite parse and plan the SQL again, so the DAOs ask this cache instead of calling
+ * <code>Connection.prepareStatement()</code> directly. The cache is bounded: when it is full, the least recently used
+ * statement is closed and removed. The size can be set with the system property <code>nhplus.statementCache.size</code>.
+ */
+public class StatementCache {
+
+    private static final int DEFAULT_MAX_SIZE = 32;
+    private static final Map<Connection, StatementCache> CACHES = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final Connection connection;
+    private final int maxSize;
+    private final LinkedHashMap<String, PreparedStatement> statements;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Constructor to initiate a cache for the given connection.
+     * @param connection the connection to prepare the statements on
+     * @param maxSize the maximum number of statements to keep open
+     */
+    StatementCache(Connection connection, int maxSize) {
+        this.connection = connection;
+        this.maxSize = Math.max(1, maxSize);
+        this.statements = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns the cache of the given connection. If the connection has no cache yet, a new one is created.
+     * @param connection the connection the cache belongs to
+     * @return the cache of the given connection
+     */
+    public static StatementCache forConnection(Connection connection) {
+        synchronized (CACHES) {
+            return CACHES.computeIfAbsent(connection,
+                    key -> new StatementCache(key, Integer.getInteger("nhplus.statementCache.size", DEFAULT_MAX_SIZE)));
+        }
+    }
+
+    /**
+     * Closes and removes the cache of the given connection. Has to be called before the connection is closed.
+     * @param connection the connection whose cache should be discarded
+     */
+    public static void discard(Connection connection) {
+        StatementCache cache = CACHES.remove(connection);
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Returns a prepared statement for the given SQL. A cached statement is reused and its parameters are cleared,
+     * otherwise a new statement is prepared and cached. The returned statement must not be closed by the caller.
+     * @param sql the SQL text of the statement
+     * @return a prepared statement for the given SQL
+     * @throws SQLException if the statement could not be prepared
+     */
+    public synchronized PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement statement = this.statements.get(sql);
+        if (statement != null && !statement.isClosed()) {
+            this.hits.incrementAndGet();
+            statement.clearParameters();
+            return statement;
+        }
+        this.misses.incrementAndGet();
+        statement = this.connection.prepareStatement(sql);
+        this.statements.put(sql, statement);
+        evictEldest();
+        return statement;
+    }
+
+    /**
+     * Closes the least recently used statements until the cache is within its bounds again.
+     */
+    private void evictEldest() {
+        Iterator<PreparedStatement> iterator = this.statements.values().iterator();
+        while (this.statements.size() > this.maxSize && iterator.hasNext()) {
+            PreparedStatement eldest = iterator.next();
+            iterator.remove();
+            this.evictions.incrementAndGet();
+            close(eldest);
+        }
+    }
+
+    /**
+     * Closes all cached statements and empties the cache. The counters are kept.
+     */
+    public synchronized void clear() {
+        for (PreparedStatement statement : this.statements.values()) {
+            close(statement);
+        }
+        this.statements.clear();
+    }
+
+    private static void close(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException exception) {
+            exception.printStackTrace();
+        }
+    }
+
+    public synchronized int size() {
+        return this.statements.size();
+    }
+
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    public long getEvictions() {
+        return this.evictions.get();
+    }
+
+    /**
+     * Returns the share of requests that could be answered from the cache.
+     * @return the hit ratio between 0 and 1
+     */
+    public double getHitRatio() {
+        long total = getHits() + getMisses();
+        return total == 0 ? 0 : (double) getHits() / total;
+    }
+
+    /**
+     * toString method for debugging purposes.
+     * @return String representation of the cache counters.
+     */
+    @Override
+    public String toString() {
+        return "StatementCache{" +
+                "size=" + size() +
+                ", maxSize=" + this.maxSize +
+                ", hits=" + getHits() +
+                ", misses=" + getMisses() +
+                ", evictions=" + getEvictions() +
+                '}';
+    }
+}
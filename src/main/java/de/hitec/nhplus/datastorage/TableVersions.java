@@ -0,0 +1,142 @@
+package de.hitec.nhplus.datastorage;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The TableVersions class counts the changes of every table. The DAOs bump the version of their table with every
+ * write, so a cached query result is valid as long as the version of its table has not changed since it was read.
+ * <p>
+ * Changes by other processes are found with <code>PRAGMA data_version</code>: on the writer connection, its value
+ * only changes when another connection committed. The monitor started by {@link #startMonitor(ConnectionSource, long)}
+ * checks it periodically and bumps all tables when it changed, because it cannot tell which tables were written.
+ */
+public class TableVersions {
+
+    private final Map<String, AtomicLong> versions = new ConcurrentHashMap<>();
+    private final List<Runnable> externalChangeListeners = new CopyOnWriteArrayList<>();
+    private volatile long dataVersion = -1;
+    private ScheduledExecutorService monitor;
+
+    /**
+     * Returns the current version of the given table.
+     * @param table the name of the table
+     * @return the number of changes of the table so far
+     */
+    public long get(String table) {
+        return counter(table).get();
+    }
+
+    /**
+     * Bumps the version of the given table after a write.
+     * @param table the name of the table
+     */
+    public void bump(String table) {
+        counter(table).incrementAndGet();
+    }
+
+    /**
+     * Bumps the versions of all tables, e.g. after another process changed the database.
+     */
+    public void bumpAll() {
+        this.versions.values().forEach(AtomicLong::incrementAndGet);
+    }
+
+    private AtomicLong counter(String table) {
+        return this.versions.computeIfAbsent(table, ignored -> new AtomicLong());
+    }
+
+    /**
+     * Registers an action to run when another process changed the database, e.g. to clear a cache that does not
+     * check the table versions.
+     * @param listener the action to run
+     */
+    public void addExternalChangeListener(Runnable listener) {
+        this.externalChangeListeners.add(listener);
+    }
+
+    /**
+     * Compares the <code>data_version</code> of the given writer connection with the value of the last check. If it
+     * changed, another connection committed in between and all tables are bumped.
+     * @param writer the writer connection, which must not be used by another thread during the check
+     * @return true if another connection changed the database since the last check
+     * @throws SQLException if the pragma cannot be read
+     */
+    public boolean checkDataVersion(Connection writer) throws SQLException {
+        long current;
+        try (Statement statement = writer.createStatement();
+             ResultSet result = statement.executeQuery("PRAGMA data_version")) {
+            current = result.next() ? result.getLong(1) : -1;
+        }
+        long previous = this.dataVersion;
+        this.dataVersion = current;
+        if (previous == -1 || previous == current) {
+            return false;
+        }
+        bumpAll();
+        this.externalChangeListeners.forEach(Runnable::run);
+        return true;
+    }
+
+    /**
+     * Starts checking the <code>data_version</code> of the writer of the given source in the background. A check is
+     * skipped while another thread holds the writer, e.g. during an import, so the monitor never waits for it; the
+     * value only grows, so the next check still finds the changes in between.
+     * @param source the source of the writer connection
+     * @param intervalMillis the time between two checks
+     */
+    public synchronized void startMonitor(ConnectionSource source, long intervalMillis) {
+        if (this.monitor != null) {
+            return;
+        }
+        this.monitor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "nhplus-data-version");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.monitor.scheduleWithFixedDelay(() -> {
+            try {
+                Connection writer = source.tryAcquireWriter();
+                if (writer == null) {
+                    return;
+                }
+                try {
+                    checkDataVersion(writer);
+                } finally {
+                    source.release(writer);
+                }
+            } catch (SQLException exception) {
+                exception.printStackTrace();
+            }
+        }, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the background check, e.g. before the connections are closed.
+     */
+    public synchronized void stopMonitor() {
+        if (this.monitor != null) {
+            this.monitor.shutdownNow();
+            this.monitor = null;
+        }
+    }
+
+    /**
+     * toString method for debugging purposes.
+     * @return String representation of the versions.
+     */
+    @Override
+    public String toString() {
+        return "TableVersions" + this.versions;
+    }
+}
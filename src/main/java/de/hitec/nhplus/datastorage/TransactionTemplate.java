@@ -0,0 +1,87 @@
+package de.hitec.nhplus.datastorage;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * The TransactionTemplate class runs several DAO calls in one transaction on the writer connection of a
+ * {@link ConnectionSource}. The work gets a {@link UnitOfWork} to create its DAOs with; DAOs that use the
+ * {@link ConnectionPool} directly join the transaction as well, because the pool hands the writer to the thread that
+ * holds it. The transaction is committed once when the work returns and rolled back if it throws.
+ * <p>
+ * A template that is executed while a unit on the same connection is open, e.g. by a DAO method within the work, runs
+ * in a savepoint of that unit instead of a transaction of its own.
+ */
+public class TransactionTemplate {
+
+    private final ConnectionSource source;
+
+    /**
+     * The work to run in a transaction.
+     * @param <R> the result of the work
+     */
+    @FunctionalInterface
+    public interface Work<R> {
+        R execute(UnitOfWork unit) throws SQLException;
+    }
+
+    /**
+     * Constructor to initiate a template for the given source.
+     * @param source the source of the writer connection
+     */
+    public TransactionTemplate(ConnectionSource source) {
+        this.source = source;
+    }
+
+    /**
+     * Returns a template for the connection source of the application.
+     * @return a template for the connection source of {@link ConnectionBuilder}
+     */
+    public static TransactionTemplate forApplication() {
+        return new TransactionTemplate(ConnectionBuilder.getConnectionSource());
+    }
+
+    /**
+     * Runs the given work in a transaction and commits it, unless the unit was marked as rollback only.
+     * @param work the work to run
+     * @return the result of the work
+     * @throws SQLException if an error occurs; the transaction is rolled back then
+     */
+    public <R> R execute(Work<R> work) throws SQLException {
+        Connection connection = this.source.acquireWriter();
+        try {
+            UnitOfWork current = UnitOfWork.current();
+            if (current != null && current.getConnection() == connection) {
+                return current.savepoint(work);
+            }
+            if (!connection.getAutoCommit()) {
+                throw new SQLException("The writer is in a transaction that was not opened by a TransactionTemplate");
+            }
+            return inTransaction(connection, work);
+        } finally {
+            this.source.release(connection);
+        }
+    }
+
+    private <R> R inTransaction(Connection connection, Work<R> work) throws SQLException {
+        UnitOfWork unit = new UnitOfWork(connection, null);
+        connection.setAutoCommit(false);
+        unit.begin();
+        try {
+            R result = work.execute(unit);
+            if (unit.isRollbackOnly()) {
+                connection.rollback();
+            } else {
+                connection.commit();
+            }
+            return result;
+        } catch (SQLException | RuntimeException exception) {
+            connection.rollback();
+            throw exception;
+        } finally {
+            unit.end();
+            connection.setAutoCommit(true);
+            unit.runCompletionActions();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package de.hitec.nhplus.datastorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The TreatmentCriteria class combines filters for {@link TreatmentDao#readByCriteria(TreatmentCriteria)}. Every
+ * filter that is set adds one condition, all conditions have to match. The criteria compile to one parameterized
+ * query whose text only depends on which filters are set, so the statement of every combination is prepared once
+ * and then reused from the statement cache. The dates are compared as days since 1970-01-01, so the filters by
+ * patient, caregiver and date use the indexes on <code>(pid, treatment_day)</code>, <code>(cid, treatment_day)</code>,
+ * <code>treatment_day</code> and <code>created_day</code>.
+ */
+public class TreatmentCriteria {
+
+    private Long pid;
+    private Long cid;
+    private LocalDate from;
+    private LocalDate until;
+    private String description;
+    private Boolean locked;
+    private LocalDate createdBefore;
+    private boolean withoutRemarks;
+
+    /**
+     * Only treatments of the given patient.
+     * @param pid the ID of the patient
+     * @return these criteria
+     */
+    public TreatmentCriteria withPatient(long pid) {
+        this.pid = pid;
+        return this;
+    }
+
+    /**
+     * Only treatments by the given caregiver.
+     * @param cid the ID of the caregiver
+     * @return these criteria
+     */
+    public TreatmentCriteria withCaregiver(long cid) {
+        this.cid = cid;
+        return this;
+    }
+
+    /**
+     * Only treatments on or after the given date.
+     * @param from the first date, or null for no lower bound
+     * @return these criteria
+     */
+    public TreatmentCriteria from(LocalDate from) {
+        this.from = from;
+        return this;
+    }
+
+    /**
+     * Only treatments on or before the given date.
+     * @param until the last date, or null for no upper bound
+     * @return these criteria
+     */
+    public TreatmentCriteria until(LocalDate until) {
+        this.until = until;
+        return this;
+    }
+
+    /**
+     * Only treatments whose description contains the given text, ignoring the case of ASCII letters.
+     * @param description the text to search for, or null for any description
+     * @return these criteria
+     */
+    public TreatmentCriteria withDescription(String description) {
+        this.description = description == null || description.isBlank() ? null : description;
+        return this;
+    }
+
+    /**
+     * Only locked or only unlocked treatments.
+     * @param locked true for locked treatments, false for unlocked ones
+     * @return these criteria
+     */
+    public TreatmentCriteria locked(boolean locked) {
+        this.locked = locked;
+        return this;
+    }
+
+    /**
+     * Only treatments created before the given date, e.g. to find treatments older than the retention period.
+     * @param createdBefore the first date that is excluded
+     * @return these criteria
+     */
+    public TreatmentCriteria createdBefore(LocalDate createdBefore) {
+        this.createdBefore = createdBefore;
+        return this;
+    }
+
+    /**
+     * Reads the treatments without their remarks, e.g. for a table that does not show them. The remarks are free text
+     * of any length and would make up most of the data read. The treatments return null as remarks until they are
+     * loaded, e.g. by {@link TreatmentDao#readDetail(long)}.
+     * @return these criteria
+     */
+    public TreatmentCriteria withoutRemarks() {
+        this.withoutRemarks = true;
+        return this;
+    }
+
+    /**
+     * Returns the SQL text of the query, with one placeholder per filter that is set.
+     * @return the query ordered by date and ID
+     */
+    String toSql() {
+        List<String> conditions = new ArrayList<>();
+        if (this.pid != null) {
+            conditions.add("pid = ?");
+        }
+        if (this.cid != null) {
+            conditions.add("cid = ?");
+        }
+        if (this.from != null) {
+            conditions.add("treatment_day >= ?");
+        }
+        if (this.until != null) {
+            conditions.add("treatment_day <= ?");
+        }
+        if (this.description != null) {
+            conditions.add("description LIKE ? ESCAPE '\\'");
+        }
+        if (this.locked != null) {
+            conditions.add("locked = ?");
+        }
+        if (this.createdBefore != null) {
+            conditions.add("created_day < ?");
+        }
+        StringBuilder sql = new StringBuilder(this.withoutRemarks ? TreatmentDao.SELECT_WITHOUT_REMARKS
+                : "SELECT * FROM treatment");
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        return sql.append(" ORDER BY treatment_day, tid").toString();
+    }
+
+    /**
+     * Returns the values of the placeholders of {@link #toSql()}, in the same order.
+     * @return the parameters of the query
+     */
+    Object[] getParameters() {
+        List<Object> parameters = new ArrayList<>();
+        if (this.pid != null) {
+            parameters.add(this.pid);
+        }
+        if (this.cid != null) {
+            parameters.add(this.cid);
+        }
+        if (this.from != null) {
+            parameters.add(this.from.toEpochDay());
+        }
+        if (this.until != null) {
+            parameters.add(this.until.toEpochDay());
+        }
+        if (this.description != null) {
+            parameters.add("%" + this.description.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%");
+        }
+        if (this.locked != null) {
+            parameters.add(this.locked);
+        }
+        if (this.createdBefore != null) {
+            parameters.add(this.createdBefore.toEpochDay());
+        }
+        return parameters.toArray();
+    }
+
+    /**
+     * toString method for debugging purposes.
+     * @return String representation of the query and its parameters.
+     */
+    @Override
+    public String toString() {
+        return toSql() + " " + List.of(getParameters());
+    }
+}
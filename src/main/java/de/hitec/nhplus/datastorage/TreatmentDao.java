@@ -1,6 +1,10 @@
 package de.hitec.nhplus.datastorage;
 
+import de.hitec.nhplus.model.Caregiver;
+import de.hitec.nhplus.model.Patient;
 import de.hitec.nhplus.model.Treatment;
+import de.hitec.nhplus.model.TreatmentDetail;
+import de.hitec.nhplus.model.TreatmentSearchHit;
 import de.hitec.nhplus.utils.DateConverter;
 
 import java.sql.*;
@@ -8,6 +12,7 @@ import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Implements the Interface <code>DaoImp</code>. Overrides methods to generate specific <code>PreparedStatements</code>,
@@ -15,6 +20,13 @@ import java.util.List;
  */
 public class TreatmentDao extends DaoImp<Treatment> {
 
+    /**
+     * Projection of all columns but <code>remark</code>, which is read as NULL. The columns keep their positions, so
+     * the rows are mapped like those of <code>SELECT *</code>.
+     */
+    static final String SELECT_WITHOUT_REMARKS = "SELECT tid, pid, cid, treatment_date, begin, end, description, " +
+            "NULL AS remark, locked, datecreated, treatment_day, begin_minute, end_minute, created_day FROM treatment";
+
     /**
      * The constructor initiates an object of <code>TreatmentDao</code> and passes the connection to its super class.
      *
@@ -24,6 +36,16 @@ public class TreatmentDao extends DaoImp<Treatment> {
         super(connection);
     }
 
+    /**
+     * The constructor initiates an object of <code>TreatmentDao</code> and passes the connection source to its super
+     * class. Reads and writes are routed to the reader and writer connections of the source.
+     *
+     * @param source Source of the connections to execute the SQL-statements.
+     */
+    public TreatmentDao(ConnectionSource source) {
+        super(source);
+    }
+
     /**
      * Generates a <code>PreparedStatement</code> to persist the given object of <code>Treatment</code>.
      *
@@ -36,7 +58,7 @@ public class TreatmentDao extends DaoImp<Treatment> {
         try {
             final String SQL = "INSERT INTO treatment (pid, cid, treatment_date, begin, end, description, remark, locked, datecreated) " +
                     "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
-            preparedStatement = this.connection.prepareStatement(SQL);
+            preparedStatement = this.prepare(SQL);
             preparedStatement.setLong(1, treatment.getPid());
             preparedStatement.setLong(2, treatment.getCid());
             preparedStatement.setString(3, treatment.getDate());
@@ -63,7 +85,7 @@ public class TreatmentDao extends DaoImp<Treatment> {
         PreparedStatement preparedStatement = null;
         try {
             final String SQL = "SELECT * FROM treatment WHERE tid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
+            preparedStatement = this.prepare(SQL);
             preparedStatement.setLong(1, tid);
         } catch (SQLException exception) {
             exception.printStackTrace();
@@ -72,16 +94,127 @@ public class TreatmentDao extends DaoImp<Treatment> {
     }
 
     /**
-     * Maps a <code>ResultSet</code> of one treatment to an object of <code>Treatment</code>.
+     * Returns the name of the table <code>treatment</code>.
+     *
+     * @return Name of the table.
+     */
+    @Override
+    protected String getTableName() {
+        return "treatment";
+    }
+
+    /**
+     * Returns the name of the primary key column of the table <code>treatment</code>.
+     *
+     * @return Name of the primary key column.
+     */
+    @Override
+    protected String getIdColumn() {
+        return "tid";
+    }
+
+    /**
+     * Returns the column <code>treatment_day</code>, so treatments can be paged by date. It holds the date as number
+     * of days since 1970-01-01 and is indexed.
+     *
+     * @return Name of the date column.
+     */
+    @Override
+    protected String getDateColumn() {
+        return "treatment_day";
+    }
+
+    /**
+     * Returns the primary key of the given treatment.
+     *
+     * @param treatment Object of class <code>Treatment</code>.
+     * @return The tid of the treatment.
+     */
+    @Override
+    protected long getKey(Treatment treatment) {
+        return treatment.getTid();
+    }
+
+    /**
+     * Returns a copy of the given treatment. Remarks that are not loaded stay not loaded in the copy.
+     *
+     * @param treatment Object of class <code>Treatment</code>.
+     * @return The copy of the treatment.
+     */
+    @Override
+    public Treatment detach(Treatment treatment) {
+        return new Treatment(treatment.getTid(), treatment.getPid(), treatment.getCid(),
+                DateConverter.convertStringToLocalDate(treatment.getDate()),
+                DateConverter.convertStringToLocalTime(treatment.getBegin()),
+                DateConverter.convertStringToLocalTime(treatment.getEnd()), treatment.getDescription(),
+                treatment.getRemarks(), treatment.isLocked(), treatment.getDateCreated());
+    }
+
+    /**
+     * Returns the instance of the treatment known to the identity map. If the known instance was read without its
+     * remarks, it takes over the remarks of the given, freshly read treatment.
+     *
+     * @param treatment Object of class <code>Treatment</code> just read from the database.
+     * @return The one instance of the treatment.
+     */
+    @Override
+    protected Treatment managed(Treatment treatment) {
+        Treatment known = super.managed(treatment);
+        if (known != null && known != treatment && !known.isRemarksLoaded()) {
+            known.setRemarks(treatment.getRemarks());
+        }
+        return known;
+    }
+
+    /**
+     * Queries all treatments without their remarks, ordered by date, e.g. for the table of all treatments.
+     *
+     * @return <code>List</code> with objects of class <code>Treatment</code>, whose remarks are not loaded.
+     */
+    public List<Treatment> readAllWithoutRemarks() throws SQLException {
+        return readByCriteria(new TreatmentCriteria().withoutRemarks());
+    }
+
+    /**
+     * Reads a treatment by its tid. If the instance known to the identity map was read without its remarks, e.g. by
+     * {@link #readAllWithoutRemarks()}, its remarks are loaded now, so a treatment read by its tid always has them.
+     *
+     * @param key Id of the treatment.
+     * @return Object of class <code>Treatment</code>, or null if there is no treatment with the given id.
+     */
+    @Override
+    public Treatment read(long key) throws SQLException {
+        Treatment treatment = super.read(key);
+        if (treatment != null && !treatment.isRemarksLoaded()) {
+            treatment.setRemarks(readRemarks(key));
+        }
+        return treatment;
+    }
+
+    private String readRemarks(long tid) throws SQLException {
+        return onReader(() -> {
+            PreparedStatement statement = prepare("SELECT remark FROM treatment WHERE tid = ?");
+            statement.setLong(1, tid);
+            try (ResultSet result = statement.executeQuery()) {
+                return result.next() ? result.getString(1) : null;
+            }
+        });
+    }
+
+    /**
+     * Maps a <code>ResultSet</code> of one treatment to an object of <code>Treatment</code>. The date and the times
+     * are taken from the integer columns <code>treatment_day</code>, <code>begin_minute</code> and
+     * <code>end_minute</code>, so they do not have to be parsed.
      *
      * @param result ResultSet with a single row. Columns will be mapped to an object of class <code>Treatment</code>.
      * @return Object of class <code>Treatment</code> with the data from the resultSet.
+     * @throws SQLException if the stored date or one of the times is not valid.
      */
     @Override
     protected Treatment getInstanceFromResultSet(ResultSet result) throws SQLException {
-        LocalDate date = DateConverter.convertStringToLocalDate(result.getString(3));
-        LocalTime begin = DateConverter.convertStringToLocalTime(result.getString(4));
-        LocalTime end = DateConverter.convertStringToLocalTime(result.getString(5));
+        LocalDate date = getEpochDay(result, "treatment_day");
+        LocalTime begin = getMinuteOfDay(result, "begin_minute");
+        LocalTime end = getMinuteOfDay(result, "end_minute");
         return new Treatment(result.getLong(1), result.getLong(2), result.getLong(3), date, begin, end, result.getString(7), result.getString(8), result.getBoolean(9), result.getString(10));
     }
 
@@ -95,7 +228,7 @@ public class TreatmentDao extends DaoImp<Treatment> {
         PreparedStatement statement = null;
         try {
             final String SQL = "SELECT * FROM treatment";
-            statement = this.connection.prepareStatement(SQL);
+            statement = this.prepare(SQL);
         } catch (SQLException exception) {
             exception.printStackTrace();
         }
@@ -114,15 +247,146 @@ public class TreatmentDao extends DaoImp<Treatment> {
     protected ArrayList<Treatment> getListFromResultSet(ResultSet result) throws SQLException {
         ArrayList<Treatment> list = new ArrayList<Treatment>();
         while (result.next()) {
-            LocalDate date = DateConverter.convertStringToLocalDate(result.getString(4));
-            LocalTime begin = DateConverter.convertStringToLocalTime(result.getString(5));
-            LocalTime end = DateConverter.convertStringToLocalTime(result.getString(6));
-            Treatment treatment = new Treatment(result.getLong(1), result.getLong(2), result.getLong(3), date, begin, end, result.getString(7), result.getString(8), result.getBoolean(9), result.getString(10));
-            list.add(treatment);
+            list.add(getInstanceFromResultSet(result));
         }
         return list;
     }
 
+    /**
+     * Generates a <code>PreparedStatement</code> to query treatments joined with their patient and caregiver. The
+     * columns of the treatment come first, followed by those of the patient and the caregiver, prefixed with
+     * <code>p_</code> and <code>c_</code>.
+     *
+     * @param condition Optional <code>WHERE</code> clause of the query, or an empty string for all treatments.
+     * @return <code>PreparedStatement</code> to query the joined rows.
+     */
+    private PreparedStatement getReadDetailStatement(String condition) throws SQLException {
+        final String SQL = "SELECT t.*, " +
+                "p.pid AS p_pid, p.firstname AS p_firstname, p.surname AS p_surname, p.birth_day AS p_birth_day, " +
+                "p.carelevel AS p_carelevel, p.roomnumber AS p_roomnumber, p.locked AS p_locked, " +
+                "p.datecreated AS p_datecreated, c.cid AS c_cid, c.firstname AS c_firstname, " +
+                "c.surname AS c_surname, c.phonenumber AS c_phonenumber, c.locked AS c_locked, " +
+                "c.datecreated AS c_datecreated FROM treatment t " +
+                "JOIN patient p ON p.pid = t.pid " +
+                "JOIN caregiver c ON c.cid = t.cid" + condition;
+        return this.prepare(SQL);
+    }
+
+    /**
+     * Maps the current row of a joined <code>ResultSet</code> to an object of <code>TreatmentDetail</code>. The
+     * treatment, patient and caregiver are registered in the identity map of the session, if there is one.
+     *
+     * @param result ResultSet of {@link #getReadDetailStatement(String)}.
+     * @return Object of class <code>TreatmentDetail</code> with the data of the row.
+     */
+    private TreatmentDetail getDetailFromResultSet(ResultSet result) throws SQLException {
+        Treatment treatment = managed(getInstanceFromResultSet(result));
+        Patient patient = new Patient(result.getLong("p_pid"), result.getString("p_firstname"),
+                result.getString("p_surname"), getEpochDay(result, "p_birth_day"),
+                result.getString("p_carelevel"), result.getString("p_roomnumber"), result.getBoolean("p_locked"),
+                result.getString("p_datecreated"));
+        Caregiver caregiver = new Caregiver(result.getLong("c_cid"), result.getString("c_firstname"),
+                result.getString("c_surname"), result.getString("c_phonenumber"), result.getBoolean("c_locked"),
+                result.getString("c_datecreated"));
+        IdentityMap map = getIdentityMap();
+        if (map != null) {
+            patient = map.putIfAbsent("patient", patient.getPid(), patient);
+            caregiver = map.putIfAbsent("caregiver", caregiver.getCid(), caregiver);
+        }
+        return new TreatmentDetail(treatment, patient, caregiver);
+    }
+
+    /**
+     * Reads a treatment with its patient and caregiver in one query.
+     *
+     * @param tid Id of the treatment.
+     * @return Object of class <code>TreatmentDetail</code>, or null if there is no treatment with the given id.
+     */
+    public TreatmentDetail readDetail(long tid) throws SQLException {
+        return onReader(() -> {
+            PreparedStatement statement = getReadDetailStatement(" WHERE t.tid = ?");
+            statement.setLong(1, tid);
+            try (ResultSet result = statement.executeQuery()) {
+                return result.next() ? getDetailFromResultSet(result) : null;
+            }
+        });
+    }
+
+    /**
+     * Reads all treatments with their patients and caregivers in one query, instead of one query per patient and
+     * caregiver.
+     *
+     * @return <code>List</code> with objects of class <code>TreatmentDetail</code> of all treatments.
+     */
+    public List<TreatmentDetail> readAllDetails() throws SQLException {
+        return onReader(() -> {
+            List<TreatmentDetail> list = new ArrayList<>();
+            try (ResultSet result = getReadDetailStatement("").executeQuery()) {
+                while (result.next()) {
+                    list.add(getDetailFromResultSet(result));
+                }
+            }
+            return list;
+        });
+    }
+
+    /**
+     * Searches the descriptions and remarks of all treatments with the full-text index <code>treatment_fts</code>.
+     * Every word of the query has to occur, also as the beginning of a longer word, ignoring case and accents. Hits
+     * in the description rank higher than hits in the remarks.
+     *
+     * @param query Words to search for, e.g. <code>Schmerzen</code>. Quotes and operators are searched as text.
+     * @param limit Maximum number of hits.
+     * @return <code>List</code> with the best hits first, empty if the query contains no words.
+     */
+    public List<TreatmentSearchHit> search(String query, int limit) throws SQLException {
+        String match = toMatchExpression(query);
+        if (match.isEmpty() || limit < 1) {
+            return new ArrayList<>();
+        }
+        return onReader(() -> {
+            final String SQL = "SELECT t.*, treatment_fts.rank AS search_rank, " +
+                    "snippet(treatment_fts, -1, '[', ']', '…', 12) AS search_snippet " +
+                    "FROM treatment_fts JOIN treatment t ON t.tid = treatment_fts.rowid " +
+                    "WHERE treatment_fts MATCH ? ORDER BY treatment_fts.rank LIMIT ?";
+            PreparedStatement statement = this.prepare(SQL);
+            statement.setString(1, match);
+            statement.setInt(2, limit);
+            List<TreatmentSearchHit> hits = new ArrayList<>();
+            try (ResultSet result = statement.executeQuery()) {
+                while (result.next()) {
+                    hits.add(new TreatmentSearchHit(managed(getInstanceFromResultSet(result)),
+                            result.getDouble("search_rank"), result.getString("search_snippet")));
+                }
+            }
+            return hits;
+        });
+    }
+
+    /**
+     * Turns the words of a search into an FTS5 query. Every word becomes a quoted prefix search, so characters like
+     * quotes, hyphens or colons cannot form FTS5 operators.
+     *
+     * @param query Words to search for.
+     * @return FTS5 query matching all words, or an empty string if there are none.
+     */
+    static String toMatchExpression(String query) {
+        if (query == null) {
+            return "";
+        }
+        StringBuilder match = new StringBuilder();
+        for (String word : query.trim().split("\\s+")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            if (match.length() > 0) {
+                match.append(' ');
+            }
+            match.append('"').append(word.replace("\"", "\"\"")).append("\"*");
+        }
+        return match.toString();
+    }
+
     /**
      * Generates a <code>PreparedStatement</code> to query all treatments of a patient with a given patient id (pid).
      *
@@ -133,7 +397,7 @@ public class TreatmentDao extends DaoImp<Treatment> {
         PreparedStatement preparedStatement = null;
         try {
             final String SQL = "SELECT * FROM treatment WHERE pid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
+            preparedStatement = this.prepare(SQL);
             preparedStatement.setLong(1, pid);
         } catch (SQLException exception) {
             exception.printStackTrace();
@@ -150,7 +414,7 @@ public class TreatmentDao extends DaoImp<Treatment> {
         PreparedStatement preparedStatement = null;
         try {
             final String SQL = "SELECT * FROM treatment WHERE cid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
+            preparedStatement = this.prepare(SQL);
             preparedStatement.setLong(1, cid);
         } catch (SQLException exception) {
             exception.printStackTrace();
@@ -161,20 +425,24 @@ public class TreatmentDao extends DaoImp<Treatment> {
     /**
      * Queries all treatments of a given patient id (pid) and maps the results to an <code>ArrayList</code> with
      * objects of class <code>Treatment</code>.
+     * The result is answered from the query cache until the treatment table is written.
      *
      * @param pid Patient id to query all treatments referencing this id.
      * @return <code>ArrayList</code> with objects of class <code>Treatment</code> of all rows in the
      * <code>ResultSet</code>.
      */
     public List<Treatment> readTreatmentsByPid(long pid) throws SQLException {
-        ResultSet result = getReadAllTreatmentsOfOnePatientByPid(pid).executeQuery();
-        return getListFromResultSet(result);
+        return readCached(() -> {
+            try (ResultSet result = getReadAllTreatmentsOfOnePatientByPid(pid).executeQuery()) {
+                return getListFromResultSet(result);
+            }
+        }, "readTreatmentsByPid", pid);
     }
 
 
     /**
      * Generates a <code>PreparedStatement</code> to update the given treatment, identified
-     * by the id of the treatment (tid).
+     * by the id of the treatment (tid). If the remarks of the treatment were not loaded, the stored remarks are kept.
      *
      * @param treatment Treatment object to update.
      * @return <code>PreparedStatement</code> to update the given treatment.
@@ -191,11 +459,11 @@ public class TreatmentDao extends DaoImp<Treatment> {
                             "begin = ?, " +
                             "end = ?, " +
                             "description = ?, " +
-                            "remark = ?, " +
-                            "locked = ? " +
+                            "remark = COALESCE(?, remark), " +
+                            "locked = ?, " +
                             "datecreated = ? " +
                             "WHERE tid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
+            preparedStatement = this.prepare(SQL);
             preparedStatement.setLong(1, treatment.getPid());
             preparedStatement.setLong(2, treatment.getCid());
             preparedStatement.setString(3, treatment.getDate());
@@ -224,7 +492,7 @@ public class TreatmentDao extends DaoImp<Treatment> {
         try {
             final String SQL =
                     "DELETE FROM treatment WHERE tid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
+            preparedStatement = this.prepare(SQL);
             preparedStatement.setLong(1, tid);
         } catch (SQLException exception) {
             exception.printStackTrace();
@@ -236,13 +504,58 @@ public class TreatmentDao extends DaoImp<Treatment> {
     /**
      * Queries all treatments of a given caregiver id (cid) and maps the results to an <code>ArrayList</code> with
      * objects of class <code>Treatment</code>.
+     * The result is answered from the query cache until the treatment table is written.
      *
      * @param cid Caregiver id to query all treatments referencing this id.
      * @return <code>ArrayList</code> with objects of class <code>Treatment</code> of all rows in the
      * <code>ResultSet</code>.
      */
     public List<Treatment> readTreatmentsByCid(long cid) throws SQLException {
-        ResultSet result = getReadAllTreatmentsOfOneCaregiverByCid(cid).executeQuery();
-        return getListFromResultSet(result);
+        return readCached(() -> {
+            try (ResultSet result = getReadAllTreatmentsOfOneCaregiverByCid(cid).executeQuery()) {
+                return getListFromResultSet(result);
+            }
+        }, "readTreatmentsByCid", cid);
+    }
+
+    /**
+     * Queries the treatments matching all filters of the given criteria in one statement, ordered by date. The result
+     * is answered from the query cache until the treatment table is written.
+     *
+     * @param criteria Filters of the query.
+     * @return <code>List</code> with objects of class <code>Treatment</code> of all matching rows.
+     */
+    public List<Treatment> readByCriteria(TreatmentCriteria criteria) throws SQLException {
+        String sql = criteria.toSql();
+        Object[] parameters = criteria.getParameters();
+        return readCached(() -> {
+            PreparedStatement statement = this.prepare(sql);
+            for (int i = 0; i < parameters.length; i++) {
+                statement.setObject(i + 1, parameters[i]);
+            }
+            try (ResultSet result = statement.executeQuery()) {
+                return getListFromResultSet(result);
+            }
+        }, sql, parameters);
+    }
+
+    /**
+     * Streams all treatments of a given patient id (pid) row by row. The stream has to be closed after use.
+     *
+     * @param pid Patient id to query all treatments referencing this id.
+     * @return Lazy <code>Stream</code> with objects of class <code>Treatment</code>.
+     */
+    public Stream<Treatment> streamTreatmentsByPid(long pid) throws SQLException {
+        return stream(() -> getReadAllTreatmentsOfOnePatientByPid(pid));
+    }
+
+    /**
+     * Streams all treatments of a given caregiver id (cid) row by row. The stream has to be closed after use.
+     *
+     * @param cid Caregiver id to query all treatments referencing this id.
+     * @return Lazy <code>Stream</code> with objects of class <code>Treatment</code>.
+     */
+    public Stream<Treatment> streamTreatmentsByCid(long cid) throws SQLException {
+        return stream(() -> getReadAllTreatmentsOfOneCaregiverByCid(cid));
     }
-}
\ No newline at end of file
+}
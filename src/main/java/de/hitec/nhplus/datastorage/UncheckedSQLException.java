@@ -0,0 +1,29 @@
+package de.hitec.nhplus.datastorage;
+
+import java.sql.SQLException;
+
+/**
+ * Wraps a <code>SQLException</code> where a checked exception cannot be thrown, e.g. while a
+ * <code>Stream</code> returned by a DAO is consumed.
+ */
+public class UncheckedSQLException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructor to wrap the given exception.
+     * @param cause the SQLException to wrap
+     */
+    public UncheckedSQLException(SQLException cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    /**
+     * Returns the wrapped exception.
+     * @return the wrapped SQLException
+     */
+    @Override
+    public synchronized SQLException getCause() {
+        return (SQLException) super.getCause();
+    }
+}
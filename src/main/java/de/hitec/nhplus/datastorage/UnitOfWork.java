@@ -0,0 +1,191 @@
+package de.hitec.nhplus.datastorage;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The UnitOfWork class is one transaction on the writer connection, opened by {@link TransactionTemplate}. It is a
+ * {@link ConnectionSource} itself: DAOs created with the unit, e.g. <code>new PatientDao(unit)</code>, read and write
+ * on the connection of the transaction, so all their changes are committed together. The unit belongs to the thread
+ * that opened it and must not be used after the transaction ended.
+ */
+public class UnitOfWork implements ConnectionSource {
+
+    private static final ThreadLocal<UnitOfWork> CURRENT = new ThreadLocal<>();
+
+    private final Connection connection;
+    private final Thread owner;
+    private final UnitOfWork outer;
+    private boolean rollbackOnly;
+    private boolean active = true;
+    private final List<Runnable> completionActions = new ArrayList<>();
+
+    /**
+     * Constructor to initiate a unit on the given connection.
+     * @param connection the writer connection of the transaction
+     * @param outer the unit this unit is nested in, or null for the outermost unit
+     */
+    UnitOfWork(Connection connection, UnitOfWork outer) {
+        this.connection = connection;
+        this.owner = Thread.currentThread();
+        this.outer = outer;
+    }
+
+    /**
+     * Returns the innermost unit that is open on the current thread.
+     * @return the current unit, or null if no transaction is open
+     */
+    public static UnitOfWork current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Makes this unit the current unit of the thread.
+     */
+    void begin() {
+        CURRENT.set(this);
+    }
+
+    /**
+     * Makes the outer unit the current unit of the thread again and ends this unit.
+     */
+    void end() {
+        this.active = false;
+        if (this.outer == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(this.outer);
+        }
+    }
+
+    /**
+     * Runs the given work within a savepoint of this transaction. If the work fails or marks its unit as rollback
+     * only, only the changes since the savepoint are rolled back and the transaction goes on.
+     * @param work the work to run
+     * @return the result of the work
+     * @throws SQLException if an error occurs; the changes of the work are rolled back then
+     */
+    public <R> R savepoint(TransactionTemplate.Work<R> work) throws SQLException {
+        check();
+        Savepoint savepoint = this.connection.setSavepoint();
+        UnitOfWork nested = new UnitOfWork(this.connection, this);
+        nested.begin();
+        try {
+            R result = work.execute(nested);
+            if (nested.rollbackOnly) {
+                this.connection.rollback(savepoint);
+            }
+            this.connection.releaseSavepoint(savepoint);
+            return result;
+        } catch (SQLException | RuntimeException exception) {
+            this.connection.rollback(savepoint);
+            this.connection.releaseSavepoint(savepoint);
+            throw exception;
+        } finally {
+            nested.end();
+        }
+    }
+
+    /**
+     * Registers an action to run when the outermost transaction has been committed or rolled back, e.g. to invalidate
+     * a cache again, because other threads may have cached the old rows in the meantime.
+     * @param action the action to run after the transaction
+     */
+    public void afterCompletion(Runnable action) {
+        if (this.outer != null) {
+            this.outer.afterCompletion(action);
+        } else {
+            this.completionActions.add(action);
+        }
+    }
+
+    /**
+     * Runs the actions registered with {@link #afterCompletion(Runnable)}.
+     */
+    void runCompletionActions() {
+        for (Runnable action : this.completionActions) {
+            try {
+                action.run();
+            } catch (RuntimeException exception) {
+                exception.printStackTrace();
+            }
+        }
+        this.completionActions.clear();
+    }
+
+    /**
+     * Marks the changes of this unit to be rolled back instead of committed when its work returns.
+     */
+    public void setRollbackOnly() {
+        this.rollbackOnly = true;
+    }
+
+    public boolean isRollbackOnly() {
+        return this.rollbackOnly;
+    }
+
+    /**
+     * Tells whether this unit runs in a savepoint of an outer unit.
+     * @return true for a nested unit
+     */
+    public boolean isNested() {
+        return this.outer != null;
+    }
+
+    /**
+     * Returns the writer connection of the transaction.
+     * @return the connection of the transaction
+     */
+    public Connection getConnection() {
+        return this.connection;
+    }
+
+    private void check() throws SQLException {
+        if (!this.active) {
+            throw new SQLException("The unit of work has already ended");
+        }
+        if (Thread.currentThread() != this.owner) {
+            throw new SQLException("The unit of work belongs to the thread " + this.owner.getName());
+        }
+    }
+
+    /**
+     * Returns the connection of the transaction, reads see the uncommitted changes of the unit.
+     * @return the connection of the transaction
+     * @throws SQLException if the unit has ended or is used by another thread
+     */
+    @Override
+    public Connection acquireReader() throws SQLException {
+        check();
+        return this.connection;
+    }
+
+    /**
+     * Returns the connection of the transaction.
+     * @return the connection of the transaction
+     * @throws SQLException if the unit has ended or is used by another thread
+     */
+    @Override
+    public Connection acquireWriter() throws SQLException {
+        check();
+        return this.connection;
+    }
+
+    /**
+     * Does nothing, the connection is released by the {@link TransactionTemplate} when the transaction ends.
+     * @param connection the connection acquired before
+     */
+    @Override
+    public void release(Connection connection) {
+    }
+
+    /**
+     * Does nothing, the connection belongs to the source of the {@link TransactionTemplate}.
+     */
+    @Override
+    public void close() {
+    }
+}
@@ -20,6 +20,15 @@ public class UserDao extends DaoImp<User> {
         super(connection);
     }
 
+    /**
+     * The constructor initializes an instance of UserDao with the given source of database connections.
+     *
+     * @param source the source of the reader and writer connections used to execute SQL statements.
+     */
+    public UserDao(ConnectionSource source) {
+        super(source);
+    }
+
     /**
      * Generates a PreparedStatement to insert a new user into the database.
      *
@@ -30,7 +39,7 @@ public class UserDao extends DaoImp<User> {
     protected PreparedStatement getCreateStatement(User user) {
         String sql = "INSERT INTO user (email, password, status) VALUES (?, ?, ?)";
         try {
-            PreparedStatement statement = this.connection.prepareStatement(sql);
+            PreparedStatement statement = this.prepare(sql);
             statement.setString(1, user.getEmail());
             statement.setString(2, user.getPassword());
             statement.setInt(3, user.getStatus());
@@ -51,7 +60,7 @@ public class UserDao extends DaoImp<User> {
     protected PreparedStatement getReadByIDStatement(long id) {
         String sql = "SELECT * FROM user WHERE id = ?";
         try {
-            PreparedStatement statement = this.connection.prepareStatement(sql);
+            PreparedStatement statement = this.prepare(sql);
             statement.setLong(1, id);
             return statement;
         } catch (SQLException exception) {
@@ -60,6 +69,55 @@ public class UserDao extends DaoImp<User> {
         return null;
     }
 
+    /**
+     * Reads the user with the given email. The query seeks in the unique index on the email column instead of reading
+     * all users.
+     *
+     * @param email the email of the user.
+     * @return the user, or null if no user has this email.
+     * @throws SQLException if there's an error while reading the user.
+     */
+    public User readByEmail(String email) throws SQLException {
+        return onReader(() -> {
+            PreparedStatement statement = this.prepare("SELECT * FROM user WHERE email = ?");
+            statement.setString(1, email);
+            try (ResultSet result = statement.executeQuery()) {
+                return result.next() ? managed(getInstanceFromResultSet(result)) : null;
+            }
+        });
+    }
+
+    /**
+     * Returns the name of the table of the users.
+     *
+     * @return the name of the table.
+     */
+    @Override
+    protected String getTableName() {
+        return "user";
+    }
+
+    /**
+     * Returns the name of the primary key column of the users.
+     *
+     * @return the name of the primary key column.
+     */
+    @Override
+    protected String getIdColumn() {
+        return "id";
+    }
+
+    /**
+     * Returns the primary key of the given user.
+     *
+     * @param user the user.
+     * @return the id of the user.
+     */
+    @Override
+    protected long getKey(User user) {
+        return user.getId();
+    }
+
     /**
      * Maps a ResultSet to a User object.
      *
@@ -86,7 +144,7 @@ public class UserDao extends DaoImp<User> {
     protected PreparedStatement getReadAllStatement() {
         String sql = "SELECT * FROM user";
         try {
-            return this.connection.prepareStatement(sql);
+            return this.prepare(sql);
         } catch (SQLException exception) {
             exception.printStackTrace();
         }
@@ -125,7 +183,7 @@ public class UserDao extends DaoImp<User> {
     protected PreparedStatement getUpdateStatement(User user) {
         String sql = "UPDATE user SET email = ?, password = ?, status = ? WHERE id = ?";
         try {
-            PreparedStatement statement = this.connection.prepareStatement(sql);
+            PreparedStatement statement = this.prepare(sql);
             statement.setString(1, user.getEmail());
             statement.setString(2, user.getPassword());
             statement.setInt(3, user.getStatus());
@@ -147,7 +205,7 @@ public class UserDao extends DaoImp<User> {
     protected PreparedStatement getDeleteStatement(long id) {
         String sql = "DELETE FROM user WHERE id = ?";
         try {
-            PreparedStatement statement = this.connection.prepareStatement(sql);
+            PreparedStatement statement = this.prepare(sql);
             statement.setLong(1, id);
             return statement;
         } catch (SQLException exception) {
@@ -0,0 +1,220 @@
+package de.hitec.nhplus.datastorage;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * The WriteBehindQueue class collects changed objects, e.g. the rows of a table view after a cell edit, and writes
+ * them to the database later with one {@link Dao#updateAll(java.util.Collection)}. Several edits of the same row
+ * before the flush result in one UPDATE. The flush runs on a background thread after a short delay, which can be set
+ * with the system property <code>nhplus.writeBehind.delayMs</code>.
+ * <p>
+ * All queues share the background thread, so their flushes run one after another. Queues with pending objects can be
+ * flushed together with {@link #flushAll()}, e.g. when the user leaves a view, logs out or closes the application.
+ * If a flush fails, the objects stay pending in their order, the error handler is called and the flush is retried after
+ * a growing delay of up to a minute. When the application closes, {@link #flushAllBeforeExit(long)} retries until a
+ * timeout and prints the objects it could not write, so the edits can be entered again.
+ * @param <T> Object of the DAO
+ */
+public class WriteBehindQueue<T> {
+
+    private static final long DEFAULT_DELAY_MILLIS = 500;
+    private static final long MIN_RETRY_DELAY_MILLIS = 1000;
+    private static final long MAX_RETRY_DELAY_MILLIS = 60000;
+    private static final ScheduledExecutorService FLUSHER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "nhplus-write-behind");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final Set<WriteBehindQueue<?>> PENDING = ConcurrentHashMap.newKeySet();
+
+    private final Dao<T> dao;
+    private final ToLongFunction<T> keyOf;
+    private final long delayMillis;
+    private Map<Long, T> pending = new LinkedHashMap<>();
+    private ScheduledFuture<?> scheduled;
+    private int failures;
+    private volatile Consumer<? super SQLException> errorHandler = Throwable::printStackTrace;
+
+    /**
+     * Constructor to initiate a queue with the configured delay.
+     * @param dao the DAO to write the objects with
+     * @param keyOf returns the ID (Primary Key) of an object
+     */
+    public WriteBehindQueue(Dao<T> dao, ToLongFunction<T> keyOf) {
+        this(dao, keyOf, Long.getLong("nhplus.writeBehind.delayMs", DEFAULT_DELAY_MILLIS));
+    }
+
+    /**
+     * Constructor to initiate a queue with the given delay.
+     * @param dao the DAO to write the objects with
+     * @param keyOf returns the ID (Primary Key) of an object
+     * @param delayMillis the time between the first pending change and the flush
+     */
+    public WriteBehindQueue(Dao<T> dao, ToLongFunction<T> keyOf, long delayMillis) {
+        this.dao = dao;
+        this.keyOf = keyOf;
+        this.delayMillis = Math.max(0, delayMillis);
+    }
+
+    /**
+     * Flushes all queues with pending objects.
+     * @return a future completed when all flushes have finished
+     */
+    public static CompletableFuture<Void> flushAll() {
+        return CompletableFuture.allOf(PENDING.stream()
+                .map(WriteBehindQueue::flush)
+                .toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * Flushes all queues with pending objects until all are written or the timeout has passed, e.g. when the
+     * application closes. The objects that could not be written are printed, so the edits are not lost silently.
+     * @param timeoutMillis how long to retry failed flushes
+     * @return true if all pending objects were written
+     */
+    public static boolean flushAllBeforeExit(long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (true) {
+            try {
+                flushAll().join();
+            } catch (CompletionException exception) {
+                exception.getCause().printStackTrace();
+            }
+            long remaining = deadline - System.currentTimeMillis();
+            if (PENDING.isEmpty()) {
+                return true;
+            }
+            if (remaining <= 0) {
+                break;
+            }
+            try {
+                Thread.sleep(Math.min(MIN_RETRY_DELAY_MILLIS, remaining));
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        for (WriteBehindQueue<?> queue : PENDING) {
+            synchronized (queue) {
+                queue.pending.values().forEach(object -> System.out.println("Änderung nicht gespeichert: " + object));
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds a changed object to the queue. If the object is already pending, it is written only once. The queue keeps
+     * a copy made with {@link Dao#detach(Object)}, so the flush does not read the object while it is changed again.
+     * @param object the changed object
+     */
+    public synchronized void enqueue(T object) {
+        this.pending.put(this.keyOf.applyAsLong(object), this.dao.detach(object));
+        PENDING.add(this);
+        if (this.scheduled == null) {
+            this.scheduled = FLUSHER.schedule(this::flushPending, this.delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes the pending objects now instead of after the delay.
+     * @return a future completed when the flush has finished, also if it failed
+     */
+    public CompletableFuture<Void> flush() {
+        return CompletableFuture.runAsync(this::flushPending, FLUSHER);
+    }
+
+    /**
+     * Writes the pending objects in one transaction. On failure, they become pending again in front of the objects
+     * queued in the meantime; an object changed again in the meantime keeps its place but is written in its newer
+     * state. Then the error handler is called and a retry is scheduled.
+     */
+    private void flushPending() {
+        List<T> batch;
+        synchronized (this) {
+            if (this.scheduled != null) {
+                this.scheduled.cancel(false);
+                this.scheduled = null;
+            }
+            batch = new ArrayList<>(this.pending.values());
+            this.pending.clear();
+        }
+        if (!batch.isEmpty()) {
+            try {
+                this.dao.updateAll(batch);
+                synchronized (this) {
+                    this.failures = 0;
+                }
+            } catch (SQLException exception) {
+                synchronized (this) {
+                    requeue(batch);
+                    if (this.scheduled == null) {
+                        this.scheduled = FLUSHER.schedule(this::flushPending, getRetryDelay(),
+                                TimeUnit.MILLISECONDS);
+                    }
+                }
+                this.errorHandler.accept(exception);
+            }
+        }
+        synchronized (this) {
+            if (this.pending.isEmpty()) {
+                PENDING.remove(this);
+            }
+        }
+    }
+
+    /**
+     * Puts the objects of a failed batch back in front of the pending objects. Must be called while holding the lock.
+     * @param batch the objects of the failed flush in their order
+     */
+    private void requeue(List<T> batch) {
+        Map<Long, T> requeued = new LinkedHashMap<>();
+        for (T object : batch) {
+            long key = this.keyOf.applyAsLong(object);
+            T newer = this.pending.get(key);
+            requeued.put(key, newer != null ? newer : object);
+        }
+        this.pending.forEach(requeued::putIfAbsent);
+        this.pending = requeued;
+    }
+
+    /**
+     * Returns the delay before the next retry, doubled with every failure in a row. Must be called while holding the
+     * lock.
+     * @return the delay in milliseconds
+     */
+    private long getRetryDelay() {
+        this.failures++;
+        long delay = Math.max(this.delayMillis, MIN_RETRY_DELAY_MILLIS) << Math.min(this.failures - 1, 6);
+        return Math.min(delay, MAX_RETRY_DELAY_MILLIS);
+    }
+
+    /**
+     * Sets the handler for failed flushes. It is called on the background thread.
+     * @param errorHandler the handler, by default the stack trace is printed
+     */
+    public void setErrorHandler(Consumer<? super SQLException> errorHandler) {
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * Returns the number of objects waiting to be written.
+     * @return the number of pending objects
+     */
+    public synchronized int getPendingCount() {
+        return this.pending.size();
+    }
+}
@@ -0,0 +1,61 @@
+package de.hitec.nhplus.model;
+
+import java.time.YearMonth;
+
+/**
+ * The minutes of care a caregiver gave, or a patient received, in one month for one kind of treatment.
+ */
+public class CareMinutes {
+    private final long id;
+    private final YearMonth month;
+    private final String description;
+    private final long minutes;
+    private final long treatments;
+
+    /**
+     * Constructor to initiate an object of class <code>CareMinutes</code> with the given parameter.
+     *
+     * @param id The ID of the caregiver or of the patient.
+     * @param month The month of the treatments.
+     * @param description The description of the treatments.
+     * @param minutes The sum of the durations of the treatments in minutes.
+     * @param treatments The number of treatments.
+     */
+    public CareMinutes(long id, YearMonth month, String description, long minutes, long treatments) {
+        this.id = id;
+        this.month = month;
+        this.description = description;
+        this.minutes = minutes;
+        this.treatments = treatments;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public YearMonth getMonth() {
+        return month;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public long getMinutes() {
+        return minutes;
+    }
+
+    public long getTreatments() {
+        return treatments;
+    }
+
+    @Override
+    public String toString() {
+        return "CareMinutes" + "\nID: " + id +
+                "\nMonth: " + month +
+                "\nDescription: " + description +
+                "\nMinutes: " + minutes +
+                "\nTreatments: " + treatments +
+                "\n";
+    }
+}
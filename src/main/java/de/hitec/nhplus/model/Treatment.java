@@ -150,10 +150,19 @@ public class Treatment {
         this.description = description;
     }
 
+    /**
+     * Returns the remarks of the treatment. Treatments read for a list without their remarks return null until the
+     * remarks are loaded, see {@link #isRemarksLoaded()}.
+     * @return The remarks, or null if they were not loaded.
+     */
     public String getRemarks() {
         return remarks;
     }
 
+    public boolean isRemarksLoaded() {
+        return remarks != null;
+    }
+
     public void setRemarks(String remarks) {
         this.remarks = remarks;
     }
@@ -0,0 +1,82 @@
+package de.hitec.nhplus.model;
+
+/**
+ * A treatment together with its patient and caregiver, as read by one joined query. It provides the data of the
+ * treatment detail dialog and of table rows showing the names of the patient and caregiver.
+ */
+public class TreatmentDetail {
+    private final Treatment treatment;
+    private final Patient patient;
+    private final Caregiver caregiver;
+
+    /**
+     * Constructor to initiate an object of class <code>TreatmentDetail</code> with the given parameter.
+     *
+     * @param treatment The treatment.
+     * @param patient The treated patient.
+     * @param caregiver The caregiver who performed the treatment.
+     */
+    public TreatmentDetail(Treatment treatment, Patient patient, Caregiver caregiver) {
+        this.treatment = treatment;
+        this.patient = patient;
+        this.caregiver = caregiver;
+    }
+
+    public Treatment getTreatment() {
+        return treatment;
+    }
+
+    public Patient getPatient() {
+        return patient;
+    }
+
+    public Caregiver getCaregiver() {
+        return caregiver;
+    }
+
+    public long getTid() {
+        return treatment.getTid();
+    }
+
+    public String getDate() {
+        return treatment.getDate();
+    }
+
+    public String getBegin() {
+        return treatment.getBegin();
+    }
+
+    public String getEnd() {
+        return treatment.getEnd();
+    }
+
+    public String getDescription() {
+        return treatment.getDescription();
+    }
+
+    /**
+     * Returns the name of the patient in the form "surname, first name".
+     *
+     * @return The name of the patient.
+     */
+    public String getPatientName() {
+        return patient.getSurname() + ", " + patient.getFirstName();
+    }
+
+    /**
+     * Returns the name of the caregiver in the form "surname, first name".
+     *
+     * @return The name of the caregiver.
+     */
+    public String getCaregiverName() {
+        return caregiver.getSurname() + ", " + caregiver.getFirstName();
+    }
+
+    @Override
+    public String toString() {
+        return "TreatmentDetail" + "\nTreatment: " + treatment.getTid() +
+                "\nPatient: " + getPatientName() +
+                "\nCaregiver: " + getCaregiverName() +
+                "\n";
+    }
+}
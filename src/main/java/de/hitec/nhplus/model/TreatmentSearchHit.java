@@ -0,0 +1,43 @@
+package de.hitec.nhplus.model;
+
+/**
+ * A treatment found by the full-text search, with its rank and a snippet of the matching text.
+ */
+public class TreatmentSearchHit {
+    private final Treatment treatment;
+    private final double rank;
+    private final String snippet;
+
+    /**
+     * Constructor to initiate an object of class <code>TreatmentSearchHit</code> with the given parameter.
+     *
+     * @param treatment The treatment found.
+     * @param rank The BM25 rank of the hit, lower values match better.
+     * @param snippet Part of the description or remarks with the matching words in square brackets.
+     */
+    public TreatmentSearchHit(Treatment treatment, double rank, String snippet) {
+        this.treatment = treatment;
+        this.rank = rank;
+        this.snippet = snippet;
+    }
+
+    public Treatment getTreatment() {
+        return treatment;
+    }
+
+    public double getRank() {
+        return rank;
+    }
+
+    public String getSnippet() {
+        return snippet;
+    }
+
+    @Override
+    public String toString() {
+        return "TreatmentSearchHit" + "\nTreatment: " + treatment.getTid() +
+                "\nRank: " + rank +
+                "\nSnippet: " + snippet +
+                "\n";
+    }
+}
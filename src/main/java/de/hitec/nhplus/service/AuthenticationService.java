@@ -21,6 +21,14 @@ public class AuthenticationService {
         this.userDao = new UserDao(connection);
     }
 
+    /**
+     * Constructor to initialize an object of class <code>AuthenticationService</code> with the given parameters.
+     * @param userDao UserDao to query the users with.
+     */
+    public AuthenticationService(UserDao userDao) {
+        this.userDao = userDao;
+    }
+
     /**
      * Authenticates a user with the given email and password.
      *
@@ -30,12 +38,11 @@ public class AuthenticationService {
      * @throws SQLException if an error occurs while querying the database.
      */
     public User authenticate(String email, String password) throws SQLException {
-        for (User user : userDao.readAll()) {
-            if (user.getEmail().equals(email) && user.getPassword().equals(hashPassword(password))) {
-                return user;
-            }
+        User user = userDao.readByEmail(email);
+        if (user == null || !user.getPassword().equals(hashPassword(password))) {
+            return null;
         }
-        return null;
+        return user;
     }
 
     /**
@@ -0,0 +1,263 @@
+package de.hitec.nhplus.service;
+
+import de.hitec.nhplus.datastorage.ConnectionBuilder;
+import de.hitec.nhplus.datastorage.SchemaMigrator;
+import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteConnection;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * The BackupService class writes snapshots of the running database with the online backup API of SQLite. The backup
+ * reads through a read-only connection of its own, so it takes no connection from the
+ * {@link de.hitec.nhplus.datastorage.ConnectionPool} and never holds the writer. It copies
+ * <code>nhplus.backup.pagesPerStep</code> pages per step (default 256) and pauses
+ * <code>nhplus.backup.pauseMs</code> milliseconds (default 5) between two steps.
+ * <p>
+ * All steps run in one read transaction. In WAL mode this pins a consistent snapshot without blocking the writer.
+ * Without it, every write at a terminal would restart the backup from the first page. Each snapshot is written to a
+ * temporary file and checked with <code>PRAGMA integrity_check</code>. Only then is it renamed to
+ * <code>nursingHome-yyyyMMdd-HHmmss-SSS.db</code>. Of these files the newest <code>nhplus.backup.keep</code> (default
+ * 7) are kept.
+ */
+public class BackupService {
+
+    private static final String PREFIX = "nursingHome-";
+    private static final String SUFFIX = ".db";
+    private static final String PART_SUFFIX = ".part";
+    private static final long STOP_TIMEOUT_SECONDS = 5;
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+    private final String url;
+    private final Path directory;
+    private final int keep;
+    private final int pagesPerStep;
+    private final long pauseMillis;
+    private ScheduledExecutorService scheduler;
+    private volatile Path currentPart;
+
+    /**
+     * Constructor to initialize an object of class <code>BackupService</code> with the given parameters.
+     * @param url the JDBC URL of the database to back up
+     * @param directory the directory of the snapshot files
+     * @param keep the number of snapshot files to keep
+     */
+    public BackupService(String url, Path directory, int keep) {
+        this.url = url;
+        this.directory = directory;
+        this.keep = keep;
+        this.pagesPerStep = Integer.getInteger("nhplus.backup.pagesPerStep", 256);
+        this.pauseMillis = Long.getLong("nhplus.backup.pauseMs", 5);
+    }
+
+    /**
+     * Returns a service for the database of the application, writing to <code>db/backup</code>.
+     * @return a service for the database of {@link ConnectionBuilder}
+     */
+    public static BackupService forApplication() {
+        return new BackupService(ConnectionBuilder.getUrl(), Paths.get("db", "backup"),
+                Integer.getInteger("nhplus.backup.keep", 7));
+    }
+
+    /**
+     * Writes a snapshot of the database, verifies it and deletes the oldest snapshots beyond the number to keep. If
+     * the thread is interrupted, e.g. by {@link #stop()}, the remaining pages are copied without pauses, because the
+     * backup API of SQLite cannot be left in between, and the snapshot is deleted without being verified.
+     * @return the path of the new snapshot
+     * @throws SQLException if the backup failed or the snapshot is damaged; no snapshot is kept then
+     * @throws InterruptedIOException if the thread was interrupted; no snapshot is kept then
+     * @throws IOException if the snapshot file could not be written or renamed
+     */
+    public Path backup() throws SQLException, IOException {
+        Files.createDirectories(this.directory);
+        Path target = this.directory.resolve(PREFIX + LocalDateTime.now().format(TIMESTAMP) + SUFFIX);
+        Path part = target.resolveSibling(target.getFileName() + PART_SUFFIX);
+        Files.deleteIfExists(part);
+        this.currentPart = part;
+        int schemaVersion;
+        try {
+            checkInterrupted(target);
+            schemaVersion = copy(part);
+            checkInterrupted(target);
+            if (!verify(part, schemaVersion)) {
+                throw new SQLException("Die Sicherung " + target + " ist fehlerhaft");
+            }
+            Files.move(part, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            this.currentPart = null;
+            Files.deleteIfExists(part);
+        }
+        rotate();
+        return target;
+    }
+
+    /**
+     * Copies the database page by page within one read transaction to the given file.
+     * @param file the file to write
+     * @return the schema version of the copied snapshot
+     */
+    private int copy(Path file) throws SQLException {
+        SQLiteConfig configuration = new SQLiteConfig();
+        configuration.setReadOnly(true);
+        try (Connection connection = DriverManager.getConnection(this.url, configuration.toProperties())) {
+            connection.setAutoCommit(false);
+            try {
+                int schemaVersion = SchemaMigrator.getVersion(connection);
+                int result = connection.unwrap(SQLiteConnection.class).getDatabase().backup("main", file.toString(),
+                        (remaining, pageCount) -> pause(), 100, 50, this.pagesPerStep);
+                if (result != 0) {
+                    throw new SQLException("Die Sicherung ist mit dem Fehlercode " + result + " abgebrochen");
+                }
+                return schemaVersion;
+            } finally {
+                connection.rollback();
+            }
+        }
+    }
+
+    private static void checkInterrupted(Path target) throws InterruptedIOException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Die Sicherung " + target + " wurde abgebrochen");
+        }
+    }
+
+    private void pause() {
+        if (this.pauseMillis > 0 && !Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(this.pauseMillis);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Checks the given snapshot with <code>PRAGMA integrity_check</code>. The snapshot is opened for writing, because
+     * the check of the full-text index needs a writable database.
+     * @param file the snapshot to check
+     * @param schemaVersion the expected schema version, or a negative number to skip this check
+     * @return true if the snapshot is intact
+     * @throws SQLException if the snapshot could not be opened
+     */
+    public boolean verify(Path file, int schemaVersion) throws SQLException {
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file);
+             Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("PRAGMA integrity_check")) {
+            if (!result.next() || !"ok".equals(result.getString(1))) {
+                return false;
+            }
+            return schemaVersion < 0 || SchemaMigrator.getVersion(connection) == schemaVersion;
+        }
+    }
+
+    /**
+     * Returns the snapshot files, the newest first.
+     * @return the paths of the snapshots
+     * @throws IOException if the directory could not be read
+     */
+    public List<Path> listBackups() throws IOException {
+        if (!Files.isDirectory(this.directory)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> files = Files.list(this.directory)) {
+            return new ArrayList<>(files
+                    .filter(file -> file.getFileName().toString().startsWith(PREFIX))
+                    .filter(file -> file.getFileName().toString().endsWith(SUFFIX))
+                    .sorted(Comparator.comparing((Path file) -> file.getFileName().toString()).reversed())
+                    .toList());
+        }
+    }
+
+    /**
+     * Deletes the oldest snapshots beyond the number to keep and the temporary files left behind by backups that
+     * were killed before they could clean up, e.g. when the application crashed. The temporary file of a running
+     * backup is kept.
+     * @return the deleted snapshots and temporary files
+     * @throws IOException if a file could not be deleted
+     */
+    public List<Path> rotate() throws IOException {
+        List<Path> backups = listBackups();
+        List<Path> deleted = new ArrayList<>();
+        for (Path backup : backups.subList(Math.min(this.keep, backups.size()), backups.size())) {
+            Files.deleteIfExists(backup);
+            deleted.add(backup);
+        }
+        if (!Files.isDirectory(this.directory)) {
+            return deleted;
+        }
+        List<Path> parts;
+        try (Stream<Path> files = Files.list(this.directory)) {
+            parts = files
+                    .filter(file -> file.getFileName().toString().startsWith(PREFIX))
+                    .filter(file -> file.getFileName().toString().endsWith(SUFFIX + PART_SUFFIX))
+                    .filter(file -> !file.equals(this.currentPart))
+                    .toList();
+        }
+        for (Path part : parts) {
+            Files.deleteIfExists(part);
+            deleted.add(part);
+        }
+        return deleted;
+    }
+
+    /**
+     * Writes a snapshot every given number of minutes on a background thread, the first one after one interval.
+     * @param intervalMinutes the time between two backups
+     */
+    public synchronized void start(long intervalMinutes) {
+        if (this.scheduler != null) {
+            return;
+        }
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "nhplus-backup");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        this.scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                System.out.println("Sicherung geschrieben: " + backup());
+            } catch (SQLException | IOException exception) {
+                exception.printStackTrace();
+            }
+        }, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Stops the scheduled backups. A running backup is interrupted: it copies its remaining pages without pauses and
+     * its snapshot is deleted, see {@link #backup()}. The method waits up to 5 seconds for it, so the temporary file
+     * is gone before the application exits; a file left behind is deleted by the next {@link #rotate()}.
+     */
+    public synchronized void stop() {
+        if (this.scheduler != null) {
+            this.scheduler.shutdownNow();
+            try {
+                if (!this.scheduler.awaitTermination(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    System.out.println("Die laufende Sicherung wurde nicht rechtzeitig beendet");
+                }
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+            this.scheduler = null;
+        }
+    }
+}
@@ -0,0 +1,519 @@
+package de.hitec.nhplus.service;
+
+import de.hitec.nhplus.datastorage.ConnectionSource;
+import de.hitec.nhplus.datastorage.DaoFactory;
+import de.hitec.nhplus.datastorage.TransactionTemplate;
+import de.hitec.nhplus.utils.CsvReader;
+import de.hitec.nhplus.utils.CsvWriter;
+import de.hitec.nhplus.utils.DateConverter;
+import de.hitec.nhplus.utils.InputValidator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * The CsvTransferService class imports patients, caregivers and treatments from CSV files and exports them to CSV
+ * files, e.g. to take over the data of the previous software of a new facility. The files are read and written as a
+ * stream of records in UTF-8, with <code>nhplus.csv.delimiter</code> (default <code>;</code>) between the fields and
+ * the column names of the table in the first line. So the memory needed does not depend on the size of the file.
+ * <p>
+ * Every imported row is checked with the rules of the views, see {@link InputValidator}. Valid rows are written in
+ * transactions of <code>nhplus.csv.batchSize</code> rows (default 1000) with <code>INSERT ... ON CONFLICT DO
+ * UPDATE</code>: a row with the key of an existing row updates it, a row without a key is added. Locked rows are not
+ * changed, and a treatment is only taken over if its patient and caregiver exist. Rows that are not taken over are
+ * written to the reject file, together with their line and the reason, so they can be corrected and imported again.
+ */
+public class CsvTransferService {
+
+    /**
+     * The tables that can be imported and exported, with their columns in the order of the export.
+     */
+    public enum Table {
+        PATIENT("patient",
+                List.of("pid", "firstname", "surname", "dateOfBirth", "carelevel", "roomnumber", "locked",
+                        "datecreated"),
+                Map.of(),
+                values -> InputValidator.checkPatient(values[1], values[2], values[3], values[4], values[5])),
+        CAREGIVER("caregiver",
+                List.of("cid", "firstname", "surname", "phonenumber", "locked", "datecreated"),
+                Map.of(),
+                values -> InputValidator.checkCaregiver(values[1], values[2], values[3])),
+        TREATMENT("treatment",
+                List.of("tid", "pid", "cid", "treatment_date", "begin", "end", "description", "remark", "locked",
+                        "datecreated"),
+                Map.of("pid", "patient", "cid", "caregiver"),
+                values -> InputValidator.checkTreatment(values[3], values[4], values[5], values[6]));
+
+        private static final List<String> OPTIONAL_COLUMNS = List.of("remark", "locked", "datecreated");
+
+        private final String tableName;
+        private final List<String> columns;
+        private final Map<String, String> references;
+        private final Function<String[], String> check;
+        private final String upsert;
+
+        Table(String tableName, List<String> columns, Map<String, String> references,
+              Function<String[], String> check) {
+            this.tableName = tableName;
+            this.columns = columns;
+            this.references = references;
+            this.check = check;
+            this.upsert = createUpsert(tableName, columns, references);
+        }
+
+        public String getTableName() {
+            return this.tableName;
+        }
+
+        public List<String> getColumns() {
+            return this.columns;
+        }
+
+        private String getIdColumn() {
+            return this.columns.get(0);
+        }
+
+        private boolean isOptional(String column) {
+            return column.equals(getIdColumn()) || OPTIONAL_COLUMNS.contains(column);
+        }
+    }
+
+    /**
+     * The result of an import.
+     * @param table the imported table
+     * @param rows the number of records read, without the header
+     * @param imported the number of rows added or updated
+     * @param rejected the number of rows written to the reject file
+     * @param batches the number of transactions the import used
+     */
+    public record Report(Table table, long rows, long imported, long rejected, int batches) {
+
+        /**
+         * toString method for the log.
+         * @return String representation of the report.
+         */
+        @Override
+        public String toString() {
+            return "Import " + table.getTableName() + ": " + rows + " Zeilen, " + imported + " übernommen, " +
+                    rejected + " abgewiesen in " + batches + " Transaktionen";
+        }
+    }
+
+    /**
+     * A valid row waiting for its batch.
+     */
+    private record Row(long line, List<String> record, Object[] values) {
+    }
+
+    /**
+     * A row the database did not take over.
+     */
+    private record Failure(Row row, String reason) {
+    }
+
+    private final DaoFactory factory;
+    private final ConnectionSource source;
+    private final TransactionTemplate template;
+    private final int batchSize;
+    private final char delimiter;
+
+    /**
+     * Constructor to initialize an object of class <code>CsvTransferService</code> with the given parameters.
+     * @param factory the factory whose connection source is used and whose caches forget the imported rows
+     * @param batchSize the maximum number of rows written in one transaction
+     */
+    public CsvTransferService(DaoFactory factory, int batchSize) {
+        this.factory = factory;
+        this.source = factory.getConnectionSource();
+        this.template = new TransactionTemplate(this.source);
+        this.batchSize = batchSize;
+        this.delimiter = System.getProperty("nhplus.csv.delimiter", ";").charAt(0);
+    }
+
+    /**
+     * Constructor to initialize an object of class <code>CsvTransferService</code> with the given parameters.
+     * @param factory the factory whose connection source is used and whose caches forget the imported rows
+     */
+    public CsvTransferService(DaoFactory factory) {
+        this(factory, Integer.getInteger("nhplus.csv.batchSize", 1000));
+    }
+
+    /**
+     * Constructor to initialize an object of class <code>CsvTransferService</code> with the given parameters.
+     * @param source the source of the connections, e.g. a database in memory
+     * @param batchSize the maximum number of rows written in one transaction
+     */
+    public CsvTransferService(ConnectionSource source, int batchSize) {
+        this(new DaoFactory(source), batchSize);
+    }
+
+    /**
+     * Constructor to initialize an object of class <code>CsvTransferService</code> with the given parameters.
+     * @param source the source of the connections, e.g. a database in memory
+     */
+    public CsvTransferService(ConnectionSource source) {
+        this(new DaoFactory(source));
+    }
+
+    /**
+     * Returns a service for the database of the application, which also clears the caches of its DAOs.
+     * @return a service for the {@link DaoFactory} of the application
+     */
+    public static CsvTransferService forApplication() {
+        return new CsvTransferService(DaoFactory.getDaoFactory());
+    }
+
+    /**
+     * Writes all rows of the given table to a CSV file, ordered by their key.
+     * @param table the table to export
+     * @param file the file to write; an existing file is replaced
+     * @return the number of exported rows
+     * @throws SQLException if an error occurs while reading the table
+     * @throws IOException if the file could not be written
+     */
+    public long exportCsv(Table table, Path file) throws SQLException, IOException {
+        String sql = "SELECT " + String.join(", ", table.columns) + " FROM " + table.tableName +
+                " ORDER BY " + table.getIdColumn();
+        long rows = 0;
+        Connection connection = this.source.acquireReader();
+        try (CsvWriter writer = new CsvWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8), this.delimiter);
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setFetchSize(this.batchSize);
+            writer.writeRecord(table.columns);
+            try (ResultSet result = statement.executeQuery()) {
+                List<String> record = new ArrayList<>(table.columns.size());
+                while (result.next()) {
+                    record.clear();
+                    for (int index = 1; index <= table.columns.size(); index++) {
+                        record.add(result.getString(index));
+                    }
+                    writer.writeRecord(record);
+                    rows++;
+                }
+            }
+        } finally {
+            this.source.release(connection);
+        }
+        return rows;
+    }
+
+    /**
+     * Imports the rows of a CSV file into the given table. The first line names the columns; their order is free, the
+     * key, <code>remark</code>, <code>locked</code> and <code>datecreated</code> may be left out. Rows without a key
+     * are added, rows with a key update the row with this key or are added with it.
+     * @param table the table to import into
+     * @param file the file to read
+     * @param rejectFile the file for the rows that were not taken over, or null to only count them; it is only
+     *                   written if there are such rows
+     * @return the report of the import
+     * @throws SQLException if an error occurs while writing; the batches committed before stay imported
+     * @throws IOException if a file could not be read or written, or the header does not fit the table
+     */
+    public Report importCsv(Table table, Path file, Path rejectFile) throws SQLException, IOException {
+        if (rejectFile != null) {
+            Files.deleteIfExists(rejectFile);
+        }
+        long rows = 0;
+        long imported = 0;
+        int batches = 0;
+        try (CsvReader reader = new CsvReader(Files.newBufferedReader(file, StandardCharsets.UTF_8), this.delimiter);
+             RejectFile rejects = new RejectFile(rejectFile, this.delimiter)) {
+            List<String> header = reader.readRecord();
+            if (header == null) {
+                throw new IOException("Die Datei " + file + " ist leer");
+            }
+            int[] positions = map(table, header);
+            rejects.setHeader(header);
+            List<Row> batch = new ArrayList<>(this.batchSize);
+            for (List<String> record = reader.readRecord(); record != null; record = reader.readRecord()) {
+                if (record.size() == 1 && record.get(0).isBlank()) {
+                    continue;
+                }
+                rows++;
+                long line = reader.getRecordLine();
+                if (record.size() != header.size()) {
+                    rejects.write(line, "Die Zeile hat " + record.size() + " statt " + header.size() + " Felder",
+                            record);
+                    continue;
+                }
+                String[] values = new String[positions.length];
+                for (int index = 0; index < positions.length; index++) {
+                    values[index] = positions[index] < 0 ? null : record.get(positions[index]).trim();
+                }
+                String reason = table.check.apply(values);
+                Object[] converted = reason == null ? convert(table, values) : null;
+                if (converted == null) {
+                    rejects.write(line, reason != null ? reason : describeInvalid(table, values), record);
+                    continue;
+                }
+                batch.add(new Row(line, record, converted));
+                if (batch.size() >= this.batchSize) {
+                    imported += flush(table, batch, rejects);
+                    batches++;
+                }
+            }
+            if (!batch.isEmpty()) {
+                imported += flush(table, batch, rejects);
+                batches++;
+            }
+            return new Report(table, rows, imported, rejects.getCount(), batches);
+        }
+    }
+
+    /**
+     * Writes one batch in a transaction and empties it.
+     * @return the number of rows added or updated
+     */
+    private int flush(Table table, List<Row> batch, RejectFile rejects) throws SQLException, IOException {
+        List<Long> keys = new ArrayList<>(batch.size());
+        List<Failure> failures = this.template.execute(unit -> {
+            keys.clear();
+            List<Failure> failed = new ArrayList<>();
+            Connection connection = unit.getConnection();
+            try (PreparedStatement statement = connection.prepareStatement(table.upsert)) {
+                for (Row row : batch) {
+                    for (int index = 0; index < row.values().length; index++) {
+                        statement.setObject(index + 1, row.values()[index]);
+                    }
+                    try (ResultSet result = statement.executeQuery()) {
+                        if (result.next()) {
+                            keys.add(result.getLong(1));
+                        } else {
+                            failed.add(new Failure(row, describeSkipped(connection, table, row.values())));
+                        }
+                    } catch (SQLException exception) {
+                        failed.add(new Failure(row, exception.getMessage()));
+                    }
+                }
+            }
+            return failed;
+        });
+        for (Failure failure : failures) {
+            rejects.write(failure.row().line(), failure.reason(), failure.row().record());
+        }
+        batch.clear();
+        this.factory.invalidate(table.tableName, keys);
+        return keys.size();
+    }
+
+    /**
+     * Returns the position of each column of the table in the records, or -1 for a missing optional column.
+     * @throws IOException if the header names an unknown column or misses a required one
+     */
+    private static int[] map(Table table, List<String> header) throws IOException {
+        Map<String, Integer> names = IntStream.range(0, header.size()).boxed().collect(Collectors.toMap(
+                index -> header.get(index).trim().toLowerCase(Locale.ROOT), index -> index, (first, second) -> first));
+        for (String name : names.keySet()) {
+            if (table.columns.stream().noneMatch(column -> column.equalsIgnoreCase(name))) {
+                throw new IOException("Unbekannte Spalte " + name + " für die Tabelle " + table.tableName);
+            }
+        }
+        int[] positions = new int[table.columns.size()];
+        for (int index = 0; index < positions.length; index++) {
+            String column = table.columns.get(index);
+            positions[index] = names.getOrDefault(column.toLowerCase(Locale.ROOT), -1);
+            if (positions[index] < 0 && !table.isOptional(column)) {
+                throw new IOException("Die Spalte " + column + " fehlt");
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Converts the checked values to the parameters of the upsert: keys to numbers, <code>locked</code> to a boolean,
+     * and fills in the defaults of the optional columns.
+     * @return the parameters, or null if a key, <code>locked</code> or <code>datecreated</code> is invalid
+     */
+    private static Object[] convert(Table table, String[] values) {
+        Object[] converted = new Object[values.length];
+        for (int index = 0; index < values.length; index++) {
+            String column = table.columns.get(index);
+            String value = values[index];
+            if (index == 0 || table.references.containsKey(column)) {
+                if (value == null || value.isEmpty()) {
+                    if (index > 0) {
+                        return null;
+                    }
+                    continue;
+                }
+                Long key = parseKey(value);
+                if (key == null) {
+                    return null;
+                }
+                converted[index] = key;
+            } else if (column.equals("locked")) {
+                Boolean locked = parseBoolean(value);
+                if (locked == null) {
+                    return null;
+                }
+                converted[index] = locked;
+            } else if (column.equals("datecreated")) {
+                if (value == null || value.isEmpty()) {
+                    converted[index] = DateConverter.convertLocalDateToString(LocalDate.now());
+                } else if (InputValidator.isDate(value)) {
+                    converted[index] = value;
+                } else {
+                    return null;
+                }
+            } else {
+                converted[index] = value == null ? "" : value;
+            }
+        }
+        return converted;
+    }
+
+    /**
+     * Returns the reason why {@link #convert(Table, String[])} failed for the given values.
+     */
+    private static String describeInvalid(Table table, String[] values) {
+        for (int index = 0; index < values.length; index++) {
+            String column = table.columns.get(index);
+            String value = values[index];
+            boolean empty = value == null || value.isEmpty();
+            if (index == 0 && !empty && parseKey(value) == null) {
+                return "Der Schlüssel " + value + " ist keine positive Zahl";
+            } else if (table.references.containsKey(column) && (empty || parseKey(value) == null)) {
+                return column + " fehlt oder ist keine positive Zahl";
+            } else if (column.equals("locked") && parseBoolean(value) == null) {
+                return "locked ist weder 0, 1, true noch false";
+            } else if (column.equals("datecreated") && !empty && !InputValidator.isDate(value)) {
+                return "datecreated ist nicht im Format yyyy-MM-dd";
+            }
+        }
+        return "Ungültige Zeile";
+    }
+
+    /**
+     * Returns the reason why the upsert skipped a row: a missing patient or caregiver, or a locked row.
+     */
+    private static String describeSkipped(Connection connection, Table table, Object[] values) throws SQLException {
+        for (int index = 1; index < values.length; index++) {
+            String column = table.columns.get(index);
+            String referenced = table.references.get(column);
+            if (referenced != null) {
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "SELECT 1 FROM " + referenced + " WHERE " + column + " = ?")) {
+                    statement.setObject(1, values[index]);
+                    try (ResultSet result = statement.executeQuery()) {
+                        if (!result.next()) {
+                            return "Es gibt keinen Eintrag mit " + column + " = " + values[index] + " in " + referenced;
+                        }
+                    }
+                }
+            }
+        }
+        return "Der Eintrag mit " + table.getIdColumn() + " = " + values[0] + " ist gesperrt";
+    }
+
+    private static Long parseKey(String value) {
+        try {
+            long key = Long.parseLong(value);
+            return key > 0 ? key : null;
+        } catch (NumberFormatException exception) {
+            return null;
+        }
+    }
+
+    private static Boolean parseBoolean(String value) {
+        if (value == null || value.isEmpty() || value.equals("0") || value.equalsIgnoreCase("false")) {
+            return false;
+        }
+        if (value.equals("1") || value.equalsIgnoreCase("true")) {
+            return true;
+        }
+        return null;
+    }
+
+    /**
+     * Creates the upsert of a table. The rows are selected with numbered parameters, so the references can be checked
+     * in the same statement. On a conflict of the key, all columns but <code>datecreated</code> are updated, unless
+     * the existing row is locked. The statement returns the key of the row it added or updated.
+     */
+    private static String createUpsert(String tableName, List<String> columns, Map<String, String> references) {
+        String idColumn = columns.get(0);
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(tableName)
+                .append(" (").append(String.join(", ", columns)).append(") SELECT ")
+                .append(IntStream.rangeClosed(1, columns.size()).mapToObj(index -> "?" + index)
+                        .collect(Collectors.joining(", ")))
+                .append(" WHERE true");
+        for (int index = 1; index < columns.size(); index++) {
+            String referenced = references.get(columns.get(index));
+            if (referenced != null) {
+                sql.append(" AND EXISTS (SELECT 1 FROM ").append(referenced).append(" WHERE ")
+                        .append(columns.get(index)).append(" = ?").append(index + 1).append(")");
+            }
+        }
+        sql.append(" ON CONFLICT (").append(idColumn).append(") DO UPDATE SET ")
+                .append(columns.stream().skip(1).filter(column -> !column.equals("datecreated"))
+                        .map(column -> column + " = excluded." + column).collect(Collectors.joining(", ")))
+                .append(" WHERE ").append(tableName).append(".locked = 0")
+                .append(" RETURNING ").append(idColumn);
+        return sql.toString();
+    }
+
+    /**
+     * The reject file, which is only created when the first row is rejected. Each rejected record is written with its
+     * line and the reason in front of its original fields.
+     */
+    private static class RejectFile implements Closeable {
+
+        private final Path file;
+        private final char delimiter;
+        private List<String> header;
+        private CsvWriter writer;
+        private long count;
+
+        RejectFile(Path file, char delimiter) {
+            this.file = file;
+            this.delimiter = delimiter;
+        }
+
+        void setHeader(List<String> header) {
+            this.header = header;
+        }
+
+        void write(long line, String reason, List<String> record) throws IOException {
+            this.count++;
+            if (this.file == null) {
+                return;
+            }
+            if (this.writer == null) {
+                this.writer = new CsvWriter(Files.newBufferedWriter(this.file, StandardCharsets.UTF_8), this.delimiter);
+                this.writer.writeRecord(concat(List.of("zeile", "fehler"), this.header));
+            }
+            this.writer.writeRecord(concat(List.of(Long.toString(line), reason), record));
+        }
+
+        long getCount() {
+            return this.count;
+        }
+
+        private static List<String> concat(List<String> first, List<String> second) {
+            List<String> fields = new ArrayList<>(first);
+            fields.addAll(second);
+            return fields;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (this.writer != null) {
+                this.writer.close();
+            }
+        }
+    }
+}
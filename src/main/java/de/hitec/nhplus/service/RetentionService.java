@@ -0,0 +1,328 @@
+package de.hitec.nhplus.service;
+
+import de.hitec.nhplus.datastorage.AsyncDao;
+import de.hitec.nhplus.datastorage.ConnectionSource;
+import de.hitec.nhplus.datastorage.DaoFactory;
+import de.hitec.nhplus.datastorage.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The RetentionService class deletes the patients, caregivers and treatments whose retention period of 10 years has
+ * passed, the same rule that {@link de.hitec.nhplus.utils.DateUtils#isAtLeastTenYears(LocalDate)} checks for the
+ * delete buttons of the views. Locked rows are kept. The expired rows are found with set-based SQL on the indexed
+ * <code>created_day</code> columns and deleted in batches of <code>nhplus.retention.batchSize</code> rows (default
+ * 500). Every batch is a transaction of its own, so the writer is free for the users between two batches and the job
+ * can work through millions of rows without blocking the views.
+ * <p>
+ * Treatments are deleted first. Patients and caregivers are only deleted when no treatment refers to them anymore, so
+ * the foreign keys hold at any time. {@link #preview(LocalDate)} reports what a purge would delete without deleting
+ * anything, and {@link #reclaimSpace()} returns the freed pages to the file system afterwards. The change log is
+ * pruned by {@link de.hitec.nhplus.datastorage.ChangeTracker#startPruning} on its own schedule.
+ */
+public class RetentionService {
+
+    public static final int RETENTION_YEARS = 10;
+
+    private static final String DELETE_TREATMENTS =
+            "DELETE FROM treatment WHERE tid IN (" +
+            "SELECT tid FROM treatment WHERE created_day <= ? AND locked = 0 LIMIT ?) RETURNING tid";
+    private static final String DELETE_PATIENTS =
+            "DELETE FROM patient WHERE pid IN (" +
+            "SELECT pid FROM patient p WHERE created_day <= ? AND locked = 0 " +
+            "AND NOT EXISTS (SELECT 1 FROM treatment t WHERE t.pid = p.pid) LIMIT ?) RETURNING pid";
+    private static final String DELETE_CAREGIVERS =
+            "DELETE FROM caregiver WHERE cid IN (" +
+            "SELECT cid FROM caregiver c WHERE created_day <= ? AND locked = 0 " +
+            "AND NOT EXISTS (SELECT 1 FROM treatment t WHERE t.cid = c.cid) LIMIT ?) RETURNING cid";
+
+    private static final String COUNT_TREATMENTS =
+            "SELECT COUNT(*) FROM treatment WHERE created_day <= ? AND locked = 0";
+    private static final String COUNT_PATIENTS =
+            "SELECT COUNT(*) FROM patient p WHERE created_day <= ? AND locked = 0 " +
+            "AND NOT EXISTS (SELECT 1 FROM treatment t WHERE t.pid = p.pid AND (t.created_day > ? OR t.locked <> 0))";
+    private static final String COUNT_CAREGIVERS =
+            "SELECT COUNT(*) FROM caregiver c WHERE created_day <= ? AND locked = 0 " +
+            "AND NOT EXISTS (SELECT 1 FROM treatment t WHERE t.cid = c.cid AND (t.created_day > ? OR t.locked <> 0))";
+
+    private final DaoFactory factory;
+    private final ConnectionSource source;
+    private final TransactionTemplate template;
+    private final int batchSize;
+    private final int vacuumPages;
+    private final Set<AtomicBoolean> runs = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The result of a purge or of a dry run.
+     * @param cutoff rows created on or before this day have expired
+     * @param dryRun true if nothing was deleted
+     * @param treatments the number of deleted, or deletable, treatments
+     * @param patients the number of deleted, or deletable, patients
+     * @param caregivers the number of deleted, or deletable, caregivers
+     * @param batches the number of transactions the purge used
+     * @param completed false if the purge was cancelled before all expired rows were deleted
+     */
+    public record Report(LocalDate cutoff, boolean dryRun, long treatments, long patients, long caregivers,
+                         int batches, boolean completed) {
+
+        /**
+         * toString method for the log.
+         * @return String representation of the report.
+         */
+        @Override
+        public String toString() {
+            return (dryRun ? "Testlauf" : "Löschlauf") + " bis " + cutoff + ": " +
+                    treatments + " Behandlungen, " + patients + " Patient/innen, " + caregivers + " Pflegekräfte" +
+                    (dryRun ? "" : " in " + batches + " Transaktionen") + (completed ? "" : " (abgebrochen)");
+        }
+    }
+
+    /**
+     * Constructor to initialize an object of class <code>RetentionService</code> with the given parameters.
+     * @param factory the factory whose connection source is purged and whose caches forget the deleted rows
+     * @param batchSize the maximum number of rows deleted in one transaction
+     */
+    public RetentionService(DaoFactory factory, int batchSize) {
+        this.factory = factory;
+        this.source = factory.getConnectionSource();
+        this.template = new TransactionTemplate(this.source);
+        this.batchSize = batchSize;
+        this.vacuumPages = Integer.getInteger("nhplus.retention.vacuumPages", 1000);
+    }
+
+    /**
+     * Constructor to initialize an object of class <code>RetentionService</code> with the given parameters.
+     * @param factory the factory whose connection source is purged and whose caches forget the deleted rows
+     */
+    public RetentionService(DaoFactory factory) {
+        this(factory, Integer.getInteger("nhplus.retention.batchSize", 500));
+    }
+
+    /**
+     * Constructor to initialize an object of class <code>RetentionService</code> with the given parameters.
+     * @param source the source of the connections, e.g. a database in memory
+     * @param batchSize the maximum number of rows deleted in one transaction
+     */
+    public RetentionService(ConnectionSource source, int batchSize) {
+        this(new DaoFactory(source), batchSize);
+    }
+
+    /**
+     * Constructor to initialize an object of class <code>RetentionService</code> with the given parameters.
+     * @param source the source of the connections, e.g. a database in memory
+     */
+    public RetentionService(ConnectionSource source) {
+        this(new DaoFactory(source));
+    }
+
+    /**
+     * Returns a service for the database of the application, which also clears the caches of its DAOs.
+     * @return a service for the {@link DaoFactory} of the application
+     */
+    public static RetentionService forApplication() {
+        return new RetentionService(DaoFactory.getDaoFactory());
+    }
+
+    /**
+     * Returns the last day of creation of the rows that have expired on the given day.
+     * @param today the day of the purge
+     * @return the cutoff day; rows created on or before it are older than 10 years
+     */
+    public static LocalDate getCutoff(LocalDate today) {
+        return today.minusYears(RETENTION_YEARS);
+    }
+
+    /**
+     * Counts the rows a purge on the given day would delete, without deleting anything.
+     * @param today the day of the purge
+     * @return the report of the dry run
+     * @throws SQLException if an error occurs while counting
+     */
+    public Report preview(LocalDate today) throws SQLException {
+        LocalDate cutoff = getCutoff(today);
+        long cutoffDay = cutoff.toEpochDay();
+        Connection connection = this.source.acquireReader();
+        try {
+            return new Report(cutoff, true, count(connection, COUNT_TREATMENTS, cutoffDay),
+                    count(connection, COUNT_PATIENTS, cutoffDay), count(connection, COUNT_CAREGIVERS, cutoffDay),
+                    0, true);
+        } finally {
+            this.source.release(connection);
+        }
+    }
+
+    /**
+     * Deletes all expired, unlocked rows on the given day in batches, treatments first.
+     * @param today the day of the purge
+     * @return the report of the purge
+     * @throws SQLException if an error occurs; the batches committed before stay deleted
+     */
+    public Report purge(LocalDate today) throws SQLException {
+        return purge(today, startRun());
+    }
+
+    /**
+     * Deletes all expired, unlocked rows as of today on a virtual thread, see {@link AsyncDao#supplyAsync}. The purge
+     * counts as started right away, so a {@link #cancel()} while it still waits for a permit stops it as well.
+     * @return a future completed with the report of the purge
+     */
+    public CompletableFuture<Report> purgeAsync() {
+        AtomicBoolean cancelled = startRun();
+        return AsyncDao.supplyAsync(() -> purge(LocalDate.now(), cancelled))
+                .whenComplete((report, error) -> this.runs.remove(cancelled));
+    }
+
+    /**
+     * Stops the running and the waiting purges after their current batch, and a running {@link #reclaimSpace()}
+     * after its current step. Purges started later are not affected.
+     */
+    public void cancel() {
+        this.runs.forEach(cancelled -> cancelled.set(true));
+    }
+
+    /**
+     * Registers a new run, which {@link #cancel()} can stop until it is finished.
+     * @return the cancellation flag of the run
+     */
+    private AtomicBoolean startRun() {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        this.runs.add(cancelled);
+        return cancelled;
+    }
+
+    private Report purge(LocalDate today, AtomicBoolean cancelled) throws SQLException {
+        try {
+            LocalDate cutoff = getCutoff(today);
+            long cutoffDay = cutoff.toEpochDay();
+            int[] batches = new int[1];
+            long treatments = purgeTable("treatment", DELETE_TREATMENTS, cutoffDay, batches, cancelled);
+            long patients = purgeTable("patient", DELETE_PATIENTS, cutoffDay, batches, cancelled);
+            long caregivers = purgeTable("caregiver", DELETE_CAREGIVERS, cutoffDay, batches, cancelled);
+            return new Report(cutoff, false, treatments, patients, caregivers, batches[0], !cancelled.get());
+        } finally {
+            this.runs.remove(cancelled);
+        }
+    }
+
+    /**
+     * Deletes the expired rows of one table, one batch per transaction, until none is left.
+     * @param table the table to purge
+     * @param sql the DELETE statement of a batch, returning the deleted keys
+     * @param cutoff the cutoff bound to the statement
+     * @param batches counts the transactions
+     * @param cancelled the cancellation flag of the purge
+     * @return the number of deleted rows
+     * @throws SQLException if an error occurs while deleting
+     */
+    private long purgeTable(String table, String sql, long cutoff, int[] batches, AtomicBoolean cancelled)
+            throws SQLException {
+        long deleted = 0;
+        while (!cancelled.get()) {
+            List<Long> keys = this.template.execute(unit -> {
+                List<Long> batch = new ArrayList<>();
+                try (PreparedStatement statement = unit.getConnection().prepareStatement(sql)) {
+                    statement.setLong(1, cutoff);
+                    statement.setInt(2, this.batchSize);
+                    try (ResultSet result = statement.executeQuery()) {
+                        while (result.next()) {
+                            batch.add(result.getLong(1));
+                        }
+                    }
+                }
+                return batch;
+            });
+            if (keys.isEmpty()) {
+                break;
+            }
+            batches[0]++;
+            deleted += keys.size();
+            this.factory.invalidate(table, keys);
+        }
+        return deleted;
+    }
+
+    /**
+     * Returns the pages freed by a purge to the file system. If the database uses <code>auto_vacuum =
+     * INCREMENTAL</code>, the free pages are released in steps of <code>nhplus.retention.vacuumPages</code> pages
+     * (default 1000), each in a short slot on the writer. A database created before {@link
+     * de.hitec.nhplus.utils.SetUpDB#wipeDb} switched to incremental vacuum is switched once by a full
+     * <code>VACUUM</code>, which rewrites the file and holds the writer until it is done; every later call is
+     * incremental. Finally the WAL is checkpointed and the statistics of the query planner are updated.
+     * @return the number of free pages that are left in the database file
+     * @throws SQLException if an error occurs while vacuuming
+     */
+    public long reclaimSpace() throws SQLException {
+        AtomicBoolean cancelled = startRun();
+        try {
+            if (pragma("PRAGMA auto_vacuum") != 2) {
+                switchToIncrementalVacuum();
+            }
+            while (!cancelled.get() && pragma("PRAGMA freelist_count") > 0) {
+                Connection connection = this.source.acquireWriter();
+                try (Statement statement = connection.createStatement()) {
+                    statement.executeUpdate("PRAGMA incremental_vacuum(" + this.vacuumPages + ")");
+                } finally {
+                    this.source.release(connection);
+                }
+            }
+            Connection connection = this.source.acquireWriter();
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("PRAGMA wal_checkpoint(TRUNCATE)");
+                statement.execute("PRAGMA optimize");
+            } finally {
+                this.source.release(connection);
+            }
+            return pragma("PRAGMA freelist_count");
+        } finally {
+            this.runs.remove(cancelled);
+        }
+    }
+
+    /**
+     * Sets <code>auto_vacuum = INCREMENTAL</code>, which SQLite only applies to an existing database when it is
+     * rebuilt by <code>VACUUM</code>. The rebuild also releases all free pages at once.
+     * @throws SQLException if the database could not be vacuumed, e.g. because another connection writes
+     */
+    private void switchToIncrementalVacuum() throws SQLException {
+        Connection connection = this.source.acquireWriter();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("PRAGMA auto_vacuum = INCREMENTAL");
+            statement.execute("VACUUM");
+            System.out.println("Datenbank auf schrittweises Freigeben von Speicher umgestellt");
+        } finally {
+            this.source.release(connection);
+        }
+    }
+
+    private long pragma(String sql) throws SQLException {
+        Connection connection = this.source.acquireWriter();
+        try (Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery(sql)) {
+            return result.next() ? result.getLong(1) : 0;
+        } finally {
+            this.source.release(connection);
+        }
+    }
+
+    private static long count(Connection connection, String sql, long cutoffDay) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int index = 1; index <= statement.getParameterMetaData().getParameterCount(); index++) {
+                statement.setLong(index, cutoffDay);
+            }
+            try (ResultSet result = statement.executeQuery()) {
+                return result.next() ? result.getLong(1) : 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package de.hitec.nhplus.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The CsvReader class reads the records of a CSV file one by one, following RFC 4180: fields may be enclosed in double
+ * quotes, a quote within such a field is doubled, and quoted fields may contain delimiters and line breaks. Only the
+ * current record is kept in memory; a record longer than <code>nhplus.csv.maxRecordLength</code> characters (default
+ * 1048576), e.g. because of a quote that is never closed, stops the reading.
+ */
+public class CsvReader implements Closeable {
+
+    private static final int MAX_RECORD_LENGTH = Integer.getInteger("nhplus.csv.maxRecordLength", 1 << 20);
+
+    private final Reader reader;
+    private final char delimiter;
+    private final StringBuilder field = new StringBuilder();
+    private int next = -2;
+    private long line = 1;
+    private long recordLine;
+
+    /**
+     * Constructor to initialize an object of class <code>CsvReader</code> with the given parameters.
+     * @param reader the reader of the file, ideally buffered
+     * @param delimiter the character between two fields
+     */
+    public CsvReader(Reader reader, char delimiter) {
+        this.reader = reader;
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * Reads the next record.
+     * @return the fields of the record, or null at the end of the file
+     * @throws IOException if the file could not be read or the record is too long
+     */
+    public List<String> readRecord() throws IOException {
+        int character = peek();
+        if (character == '\uFEFF' && this.line == 1) {
+            read();
+            character = peek();
+        }
+        if (character == -1) {
+            return null;
+        }
+        this.recordLine = this.line;
+        List<String> fields = new ArrayList<>();
+        int length = 0;
+        boolean quoted = false;
+        boolean inQuotes = false;
+        this.field.setLength(0);
+        while (true) {
+            character = read();
+            if (++length > MAX_RECORD_LENGTH) {
+                throw new IOException("Der Datensatz ab Zeile " + this.recordLine + " ist zu lang");
+            }
+            if (inQuotes) {
+                if (character == -1) {
+                    throw new IOException("Das Anführungszeichen in Zeile " + this.recordLine +
+                            " wird nicht geschlossen");
+                } else if (character == '"' && peek() == '"') {
+                    read();
+                    this.field.append('"');
+                } else if (character == '"') {
+                    inQuotes = false;
+                } else {
+                    this.field.append((char) character);
+                }
+            } else if (character == '"' && this.field.isEmpty() && !quoted) {
+                inQuotes = true;
+                quoted = true;
+            } else if (character == this.delimiter) {
+                fields.add(this.field.toString());
+                this.field.setLength(0);
+                quoted = false;
+            } else if (character == '\r' || character == '\n' || character == -1) {
+                if (character == '\r' && peek() == '\n') {
+                    read();
+                }
+                fields.add(this.field.toString());
+                return fields;
+            } else {
+                this.field.append((char) character);
+            }
+        }
+    }
+
+    /**
+     * Returns the line of the file in which the last record read starts.
+     * @return the line number, starting at 1
+     */
+    public long getRecordLine() {
+        return this.recordLine;
+    }
+
+    private int peek() throws IOException {
+        if (this.next == -2) {
+            this.next = this.reader.read();
+        }
+        return this.next;
+    }
+
+    private int read() throws IOException {
+        int character = peek();
+        this.next = -2;
+        if (character == '\n' || (character == '\r' && peek() != '\n')) {
+            this.line++;
+        }
+        return character;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.reader.close();
+    }
+}
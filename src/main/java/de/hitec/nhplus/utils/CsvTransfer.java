@@ -0,0 +1,50 @@
+package de.hitec.nhplus.utils;
+
+import de.hitec.nhplus.datastorage.ConnectionBuilder;
+import de.hitec.nhplus.service.CsvTransferService;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.Locale;
+
+/**
+ * This class imports a CSV file into the database or exports a table to a CSV file, see {@link CsvTransferService}.
+ * The class is executable with the arguments <code>import &lt;table&gt; &lt;file&gt; [reject file]</code> or
+ * <code>export &lt;table&gt; &lt;file&gt;</code>, where the table is <code>patient</code>, <code>caregiver</code> or
+ * <code>treatment</code>. Without a reject file, the rejected rows of an import are written next to the file with the
+ * suffix <code>.rejects.csv</code>.
+ */
+public class CsvTransfer {
+
+    /**
+     * This method is the main method to execute the class.
+     * @param args the direction, the table and the files
+     */
+    public static void main(String[] args) {
+        if (args.length < 3 || !(args[0].equals("import") || args[0].equals("export"))) {
+            System.out.println("Aufruf: import <Tabelle> <Datei> [Datei für abgewiesene Zeilen] | " +
+                    "export <Tabelle> <Datei>");
+            return;
+        }
+        try {
+            CsvTransferService.Table table = CsvTransferService.Table.valueOf(args[1].toUpperCase(Locale.ROOT));
+            Path file = Paths.get(args[2]);
+            CsvTransferService service = CsvTransferService.forApplication();
+            if (args[0].equals("export")) {
+                System.out.println("Export " + table.getTableName() + ": " + service.exportCsv(table, file) +
+                        " Zeilen");
+            } else {
+                Path rejectFile = args.length > 3 ? Paths.get(args[3]) : Paths.get(args[2] + ".rejects.csv");
+                System.out.println(service.importCsv(table, file, rejectFile));
+            }
+        } catch (IllegalArgumentException exception) {
+            System.out.println("Unbekannte Tabelle " + args[1]);
+        } catch (SQLException | IOException exception) {
+            exception.printStackTrace();
+        } finally {
+            ConnectionBuilder.closeConnection();
+        }
+    }
+}
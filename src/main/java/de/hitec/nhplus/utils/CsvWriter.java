@@ -0,0 +1,64 @@
+package de.hitec.nhplus.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * The CsvWriter class writes records to a CSV file following RFC 4180, the counterpart of {@link CsvReader}. A field
+ * is enclosed in double quotes only if it contains the delimiter, a quote or a line break.
+ */
+public class CsvWriter implements Closeable {
+
+    private final Writer writer;
+    private final char delimiter;
+
+    /**
+     * Constructor to initialize an object of class <code>CsvWriter</code> with the given parameters.
+     * @param writer the writer of the file, ideally buffered
+     * @param delimiter the character between two fields
+     */
+    public CsvWriter(Writer writer, char delimiter) {
+        this.writer = writer;
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * Writes one record; null fields are written as empty fields.
+     * @param fields the fields of the record
+     * @throws IOException if the file could not be written
+     */
+    public void writeRecord(List<String> fields) throws IOException {
+        for (int index = 0; index < fields.size(); index++) {
+            if (index > 0) {
+                this.writer.write(this.delimiter);
+            }
+            writeField(fields.get(index));
+        }
+        this.writer.write("\r\n");
+    }
+
+    private void writeField(String field) throws IOException {
+        if (field == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int index = 0; index < field.length() && !quote; index++) {
+            char character = field.charAt(index);
+            quote = character == this.delimiter || character == '"' || character == '\r' || character == '\n';
+        }
+        if (quote) {
+            this.writer.write('"');
+            this.writer.write(field.replace("\"", "\"\""));
+            this.writer.write('"');
+        } else {
+            this.writer.write(field);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.writer.close();
+    }
+}
@@ -0,0 +1,62 @@
+package de.hitec.nhplus.utils;
+
+import javafx.application.Platform;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Utility class to hand the results of asynchronous calls, e.g. of {@link de.hitec.nhplus.datastorage.AsyncDao}, back
+ * to the JavaFX application thread, the only thread that may change the view.
+ */
+public class FxAsync {
+
+    /**
+     * Executor running its tasks on the JavaFX application thread.
+     */
+    public static final Executor FX_THREAD = command -> {
+        if (Platform.isFxApplicationThread()) {
+            command.run();
+        } else {
+            Platform.runLater(command);
+        }
+    };
+
+    private FxAsync() {
+    }
+
+    /**
+     * Passes the result of the given future to <code>onSuccess</code>, or its error to <code>onError</code>, on the
+     * JavaFX application thread. A <code>CompletionException</code> is unwrapped, so <code>onError</code> gets the
+     * original exception, e.g. the <code>SQLException</code>.
+     * @param future the future of the asynchronous call
+     * @param onSuccess called with the result
+     * @param onError called with the error
+     * @return a future that is completed after the callback ran
+     */
+    public static <T> CompletableFuture<Void> whenDone(CompletableFuture<T> future, Consumer<? super T> onSuccess,
+                                                       Consumer<? super Throwable> onError) {
+        return future.handleAsync((result, error) -> {
+            if (error == null) {
+                onSuccess.accept(result);
+            } else {
+                onError.accept(error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error);
+            }
+            return null;
+        }, FX_THREAD);
+    }
+
+    /**
+     * Passes the result of the given future to <code>onSuccess</code> on the JavaFX application thread. An error is
+     * printed to the console.
+     * @param future the future of the asynchronous call
+     * @param onSuccess called with the result
+     * @return a future that is completed after the callback ran
+     */
+    public static <T> CompletableFuture<Void> whenDone(CompletableFuture<T> future, Consumer<? super T> onSuccess) {
+        return whenDone(future, onSuccess, Throwable::printStackTrace);
+    }
+}
@@ -0,0 +1,111 @@
+package de.hitec.nhplus.utils;
+
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+
+/**
+ * This class provides the rules for the input data of patients, caregivers and treatments. The views use them to
+ * enable their add buttons and the {@link de.hitec.nhplus.service.CsvTransferService} uses them to check imported
+ * rows. Each check returns the reason why the data is invalid, or null if it is valid.
+ */
+public class InputValidator {
+
+    public static final int MIN_PHONE_NUMBER_LENGTH = 5;
+
+    private InputValidator() {
+    }
+
+    /**
+     * Checks the data of a patient.
+     * @param firstName the first name
+     * @param surname the surname
+     * @param dateOfBirth the date of birth in the format <code>yyyy-MM-dd</code>
+     * @param careLevel the care level
+     * @param roomNumber the room number
+     * @return the reason why the data is invalid, or null if it is valid
+     */
+    public static String checkPatient(String firstName, String surname, String dateOfBirth, String careLevel,
+                                      String roomNumber) {
+        if (isBlank(firstName) || isBlank(surname)) {
+            return "Vor- und Nachname fehlen";
+        }
+        if (!isDate(dateOfBirth)) {
+            return "Geburtsdatum fehlt oder ist nicht im Format yyyy-MM-dd";
+        }
+        if (isBlank(careLevel)) {
+            return "Pflegegrad fehlt";
+        }
+        if (isBlank(roomNumber)) {
+            return "Raumnummer fehlt";
+        }
+        return null;
+    }
+
+    /**
+     * Checks the data of a caregiver. The phone number must have at least 5 characters.
+     * @param firstName the first name
+     * @param surname the surname
+     * @param phoneNumber the phone number
+     * @return the reason why the data is invalid, or null if it is valid
+     */
+    public static String checkCaregiver(String firstName, String surname, String phoneNumber) {
+        if (isBlank(firstName) || isBlank(surname)) {
+            return "Vor- und Nachname fehlen";
+        }
+        if (isBlank(phoneNumber) || phoneNumber.length() < MIN_PHONE_NUMBER_LENGTH) {
+            return "Telefonnummer hat weniger als " + MIN_PHONE_NUMBER_LENGTH + " Zeichen";
+        }
+        return null;
+    }
+
+    /**
+     * Checks the data of a treatment. The end must be after the begin on the same day.
+     * @param date the date of the treatment in the format <code>yyyy-MM-dd</code>
+     * @param begin the begin in the format <code>HH:mm</code>
+     * @param end the end in the format <code>HH:mm</code>
+     * @param description the description
+     * @return the reason why the data is invalid, or null if it is valid
+     */
+    public static String checkTreatment(String date, String begin, String end, String description) {
+        if (!isDate(date)) {
+            return "Datum fehlt oder ist nicht im Format yyyy-MM-dd";
+        }
+        if (isBlank(begin) || isBlank(end)) {
+            return "Beginn oder Ende fehlt";
+        }
+        try {
+            LocalTime beginTime = DateConverter.convertStringToLocalTime(begin);
+            LocalTime endTime = DateConverter.convertStringToLocalTime(end);
+            if (!endTime.isAfter(beginTime)) {
+                return "Ende liegt nicht nach dem Beginn";
+            }
+        } catch (DateTimeParseException exception) {
+            return "Beginn oder Ende ist nicht im Format HH:mm";
+        }
+        if (isBlank(description)) {
+            return "Beschreibung fehlt";
+        }
+        return null;
+    }
+
+    /**
+     * Tells whether the given text is a date in the format <code>yyyy-MM-dd</code>.
+     * @param date the text to check
+     * @return true if the text is a date
+     */
+    public static boolean isDate(String date) {
+        if (isBlank(date)) {
+            return false;
+        }
+        try {
+            DateConverter.convertStringToLocalDate(date);
+            return true;
+        } catch (DateTimeParseException exception) {
+            return false;
+        }
+    }
+
+    private static boolean isBlank(String text) {
+        return text == null || text.isBlank();
+    }
+}
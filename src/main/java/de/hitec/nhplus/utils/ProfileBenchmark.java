@@ -0,0 +1,102 @@
+package de.hitec.nhplus.utils;
+
+import de.hitec.nhplus.datastorage.*;
+import de.hitec.nhplus.model.Caregiver;
+import de.hitec.nhplus.model.Patient;
+import de.hitec.nhplus.model.Treatment;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Executable class to measure the throughput of every {@link DatabaseProfile} on the table treatment. For each profile
+ * a fresh database is created in the folder db, filled with treatments one INSERT per row, then once more with
+ * {@link Dao#createAll(java.util.Collection)} in one batched transaction, and read back several times. The results are printed as rows per second, so a profile can be chosen by numbers.
+ * The number of rows can be passed as first argument, the default is 2000.
+ */
+public class ProfileBenchmark {
+
+    private static final int DEFAULT_ROWS = 2000;
+    private static final int READ_ROUNDS = 10;
+
+    /**
+     * This method is the main method to execute the benchmark.
+     * @param args the number of treatments to insert (optional).
+     */
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ROWS;
+        System.out.printf("%-10s %15s %15s %15s%n", "profile", "inserts/s", "batch inserts/s", "reads/s");
+        for (DatabaseProfile profile : DatabaseProfile.values()) {
+            Path file = Paths.get("db", "benchmark-" + profile.getName() + ".db");
+            deleteDatabase(file);
+            ConnectionPool pool = new ConnectionPool("jdbc:sqlite:" + file, profile);
+            try {
+                double[] result = run(pool, rows);
+                System.out.printf("%-10s %15.0f %15.0f %15.0f%n", profile.getName(), result[0], result[1],
+                        result[2]);
+            } finally {
+                pool.close();
+                deleteDatabase(file);
+            }
+        }
+    }
+
+    /**
+     * Migrates the schema, inserts the given number of treatments row by row and batched and reads them back.
+     * @param pool the pool with the profile to measure
+     * @param rows the number of treatments to insert
+     * @return inserted rows per second, batch inserted rows per second and read rows per second
+     */
+    private static double[] run(ConnectionPool pool, int rows) throws SQLException {
+        SchemaMigrator.migrate(pool);
+
+        new PatientDao(pool).create(new Patient("Bench", "Mark", LocalDate.of(1950, 1, 1), "3", "100", false,
+                "2024-01-01"));
+        new CaregiverDAO(pool).create(new Caregiver(1, "Bench", "Mark", "0176-00000000", false, "2024-01-01"));
+        TreatmentDao dao = new TreatmentDao(pool);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < rows; i++) {
+            dao.create(createTreatment(i));
+        }
+        double insertsPerSecond = rows / seconds(start);
+
+        List<Treatment> treatments = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            treatments.add(createTreatment(i));
+        }
+        start = System.nanoTime();
+        dao.createAll(treatments);
+        double batchInsertsPerSecond = rows / seconds(start);
+
+        start = System.nanoTime();
+        long read = 0;
+        for (int round = 0; round < READ_ROUNDS; round++) {
+            read += dao.readAll().size();
+        }
+        double readsPerSecond = read / seconds(start);
+        return new double[]{insertsPerSecond, batchInsertsPerSecond, readsPerSecond};
+    }
+
+    private static Treatment createTreatment(int i) {
+        return new Treatment(1, 1, LocalDate.of(2023, 1, 1).plusDays(i % 365), LocalTime.of(8, 0),
+                LocalTime.of(9, 0), "Waschen", "Benchmark " + i, false, "2024-01-01");
+    }
+
+    private static double seconds(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000_000.0;
+    }
+
+    private static void deleteDatabase(Path file) throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(Paths.get(file + "-wal"));
+        Files.deleteIfExists(Paths.get(file + "-shm"));
+    }
+}
@@ -0,0 +1,29 @@
+package de.hitec.nhplus.utils;
+
+import de.hitec.nhplus.datastorage.ConnectionBuilder;
+import de.hitec.nhplus.datastorage.DaoFactory;
+
+import java.sql.SQLException;
+
+/**
+ * This class computes the care minutes per caregiver, patient and month from all treatments again, see
+ * {@link de.hitec.nhplus.datastorage.CareMinutesDao}. The class is executable; the triggers keep the numbers up to
+ * date, so it is only needed after the treatment table was changed by other means.
+ */
+public class RebuildCareMinutes {
+
+    /**
+     * This method is the main method to execute the class.
+     * @param args the arguments to execute the class. (There are none at the moment).
+     */
+    public static void main(String[] args) {
+        try {
+            int rows = DaoFactory.getDaoFactory().createCareMinutesDao().rebuild();
+            System.out.println("Pflegeminuten neu berechnet: " + rows + " Zeilen");
+        } catch (SQLException exception) {
+            exception.printStackTrace();
+        } finally {
+            ConnectionBuilder.closeConnection();
+        }
+    }
+}
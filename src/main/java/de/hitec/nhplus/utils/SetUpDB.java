@@ -10,6 +10,7 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.time.LocalDate;
+import java.util.List;
 
 import static de.hitec.nhplus.utils.DateConverter.convertStringToLocalDate;
 import static de.hitec.nhplus.utils.DateConverter.convertStringToLocalTime;
@@ -23,50 +24,52 @@ import static de.hitec.nhplus.utils.DateConverter.convertStringToLocalTime;
 public class SetUpDB {
 
     /**
-     * This method wipes the database by dropping the tables. Then the method calls DDL statements to build it up from
-     * scratch and DML statements to fill the database with hard coded test data.
+     * This method wipes the database by dropping the tables. Then the method migrates the empty database to the
+     * current schema with the {@link SchemaMigrator} and calls DML statements to fill the database with hard coded
+     * test data.
      */
     public static void setUpDb() {
         Connection connection = ConnectionBuilder.getConnection();
         SetUpDB.wipeDb(connection);
-        SetUpDB.setUpTablePatient(connection);
-        SetUpDB.setUpTableTreatment(connection);
-        SetUpDB.setUpTableCaregiver(connection);
-        SetUpDB.setUpTableUser(connection);
-        SetUpDB.setUpPatients();
-        SetUpDB.setUpCaregivers();
-        SetUpDB.setUpTreatments();
-        SetUpDB.setUpUsers();
+        try {
+            SchemaMigrator.migrate(connection);
+        } catch (SQLException exception) {
+            exception.printStackTrace();
+            return;
+        }
+        SetUpDB.fillDb(DaoFactory.getDaoFactory());
     }
 
     /**
-     * This method wipes the database by dropping the tables.
-     * @param connection the connection to the database
+     * This method fills a migrated, empty database with the hard coded test data.
+     * @param factory the factory of the DAOs writing to the database
      */
-    public static void wipeDb(Connection connection) {
-        try (Statement statement = connection.createStatement()) {
-            statement.execute("DROP TABLE treatment");
-            statement.execute("DROP TABLE patient");
-            statement.execute("DROP TABLE caregiver");
-            statement.execute("DROP TABLE user");
-        } catch (SQLException exception) {
-            System.out.println(exception.getMessage());
-        }
+    public static void fillDb(DaoFactory factory) {
+        SetUpDB.setUpPatients(factory);
+        SetUpDB.setUpCaregivers(factory);
+        SetUpDB.setUpTreatments(factory);
+        SetUpDB.setUpUsers(factory);
     }
 
     /**
-     * This method sets up the table patient in the database.
+     * This method wipes the database by dropping the tables and resetting the schema version, so the next migration
+     * starts from scratch. The emptied file is vacuumed with <code>auto_vacuum = INCREMENTAL</code>, so the
+     * {@link de.hitec.nhplus.service.RetentionService} can release the pages of purged rows later.
      * @param connection the connection to the database
      */
-    private static void setUpTableUser(Connection connection) {
-        final String SQL = "CREATE TABLE IF NOT EXISTS user (" +
-                "   id INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                "   email TEXT NOT NULL, " +
-                "   password TEXT NOT NULL, " +
-                "   status INTEGER NOT NULL" +
-                ");";
+    public static void wipeDb(Connection connection) {
         try (Statement statement = connection.createStatement()) {
-            statement.execute(SQL);
+            statement.execute("DROP TABLE IF EXISTS treatment_fts");
+            statement.execute("DROP TABLE IF EXISTS care_minutes_caregiver");
+            statement.execute("DROP TABLE IF EXISTS care_minutes_patient");
+            statement.execute("DROP TABLE IF EXISTS change_log");
+            statement.execute("DROP TABLE IF EXISTS treatment");
+            statement.execute("DROP TABLE IF EXISTS patient");
+            statement.execute("DROP TABLE IF EXISTS caregiver");
+            statement.execute("DROP TABLE IF EXISTS user");
+            statement.execute("PRAGMA user_version = 0");
+            statement.execute("PRAGMA auto_vacuum = INCREMENTAL");
+            statement.execute("VACUUM");
         } catch (SQLException exception) {
             System.out.println(exception.getMessage());
         }
@@ -75,80 +78,32 @@ public class SetUpDB {
     /**
      * This method sets up the table user in the database.
      */
-    private static void setUpUsers() {
+    private static void setUpUsers(DaoFactory factory) {
         try {
-            UserDao dao = DaoFactory.getDaoFactory().createUserDAO();
-            dao.create(new User("user3@gmail.com", hashPassword("333333"), 1));
-            dao.create(new User("user2@gmail.com", hashPassword("222222"), 0));
+            UserDao dao = factory.createUserDAO();
+            dao.createAll(List.of(
+                    new User("user3@gmail.com", hashPassword("333333"), 1),
+                    new User("user2@gmail.com", hashPassword("222222"), 0)));
         } catch (SQLException exception) {
             exception.printStackTrace();
         }
     }
 
-    /**
-     * This method sets up the table patient in the database.
-     * @param connection the connection to the database
-     */
-    private static void setUpTablePatient(Connection connection) {
-        final String SQL = "CREATE TABLE IF NOT EXISTS patient (" +
-                "   pid INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                "   firstname TEXT NOT NULL, " +
-                "   surname TEXT NOT NULL, " +
-                "   dateOfBirth TEXT NOT NULL, " +
-                "   carelevel TEXT NOT NULL, " +
-                "   roomnumber TEXT NOT NULL, " +
-                "   locked BOOLEAN NOT NULL, " +
-                "   datecreated TEXT NOT NULL " +
-                ");";
-        try (Statement statement = connection.createStatement()) {
-            statement.execute(SQL);
-        } catch (SQLException exception) {
-            System.out.println(exception.getMessage());
-        }
-    }
-
-    /**
-     * This method sets up the table treatment in the database.
-     * @param connection the connection to the database
-     */
-    private static void setUpTableTreatment(Connection connection) {
-        final String SQL = "CREATE TABLE IF NOT EXISTS treatment (" +
-                "   tid INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                "   pid INTEGER NOT NULL, " +
-                "   cid INTEGER NOT NULL," +
-                "   treatment_date TEXT NOT NULL, " +
-                "   begin TEXT NOT NULL, " +
-                "   end TEXT NOT NULL, " +
-                "   description TEXT NOT NULL, " +
-                "   remark TEXT NOT NULL," +
-                "   locked BOOLEAN NOT NULL, " +
-                "   datecreated TEXT NOT NULL, " +
-                "   FOREIGN KEY (cid) REFERENCES caregiver (cid), " +
-                "   FOREIGN KEY (pid) REFERENCES patient (pid) " +
-                ");";
-
-        try (Statement statement = connection.createStatement()) {
-            statement.execute(SQL);
-        } catch (SQLException exception) {
-            System.out.println(exception.getMessage());
-        }
-    }
-
-
     /**
      * This method sets up the example patients in the database.
      */
-    private static void setUpPatients() {
+    private static void setUpPatients(DaoFactory factory) {
         try {
-            PatientDao dao = DaoFactory.getDaoFactory().createPatientDAO();
-            dao.create(new Patient("Seppl", "Herberger", convertStringToLocalDate("1945-12-01"), "4", "202", false, DateConverter.convertLocalDateToString(LocalDate.now())));
-            dao.create(new Patient("Martina", "Gerdsen", convertStringToLocalDate("1954-08-12"), "5", "010", false, DateConverter.convertLocalDateToString(LocalDate.now())));
-            dao.create(new Patient("Gertrud", "Franzen", convertStringToLocalDate("1949-04-16"), "3", "002", false, DateConverter.convertLocalDateToString(LocalDate.now())));
-            dao.create(new Patient("Ahmet", "Yilmaz", convertStringToLocalDate("1941-02-22"), "3", "013", false, DateConverter.convertLocalDateToString(LocalDate.now())));
-            dao.create(new Patient("Hans", "Neumann", convertStringToLocalDate("1955-12-12"), "2", "001", false, DateConverter.convertLocalDateToString(LocalDate.now())));
-            dao.create(new Patient("Elisabeth", "Müller", convertStringToLocalDate("1958-03-07"), "5", "110", false, DateConverter.convertLocalDateToString(LocalDate.now())));
-            dao.create(new Patient("User", "Delete", convertStringToLocalDate("1999-08-22"), "5", "97", false, "2001-01-01"));
-            dao.create(new Patient("User", "Not delete", convertStringToLocalDate("1999-08-22"), "5", "97", false, "2020-01-01"));//should be not deleted
+            PatientDao dao = factory.createPatientDAO();
+            dao.createAll(List.of(
+                    new Patient("Seppl", "Herberger", convertStringToLocalDate("1945-12-01"), "4", "202", false, DateConverter.convertLocalDateToString(LocalDate.now())),
+                    new Patient("Martina", "Gerdsen", convertStringToLocalDate("1954-08-12"), "5", "010", false, DateConverter.convertLocalDateToString(LocalDate.now())),
+                    new Patient("Gertrud", "Franzen", convertStringToLocalDate("1949-04-16"), "3", "002", false, DateConverter.convertLocalDateToString(LocalDate.now())),
+                    new Patient("Ahmet", "Yilmaz", convertStringToLocalDate("1941-02-22"), "3", "013", false, DateConverter.convertLocalDateToString(LocalDate.now())),
+                    new Patient("Hans", "Neumann", convertStringToLocalDate("1955-12-12"), "2", "001", false, DateConverter.convertLocalDateToString(LocalDate.now())),
+                    new Patient("Elisabeth", "Müller", convertStringToLocalDate("1958-03-07"), "5", "110", false, DateConverter.convertLocalDateToString(LocalDate.now())),
+                    new Patient("User", "Delete", convertStringToLocalDate("1999-08-22"), "5", "97", false, "2001-01-01"),
+                    new Patient("User", "Not delete", convertStringToLocalDate("1999-08-22"), "5", "97", false, "2020-01-01"))); //should be not deleted
         } catch (SQLException exception) {
             exception.printStackTrace();
         }
@@ -157,59 +112,41 @@ public class SetUpDB {
     /**
      * This method sets up the example treatments in the database.
      */
-    private static void setUpTreatments() {
+    private static void setUpTreatments(DaoFactory factory) {
         try {
-            TreatmentDao dao = DaoFactory.getDaoFactory().createTreatmentDao();
-            dao.create(new Treatment(1, 1, convertStringToLocalDate("2023-06-03"), convertStringToLocalTime("11:00"), convertStringToLocalTime("15:00"), "Gespräch", "Der Patient hat enorme Angstgefühle und glaubt, er sei überfallen worden. Ihm seien alle Wertsachen gestohlen worden.\nPatient beruhigt sich erst, als alle Wertsachen im Zimmer gefunden worden sind.", false, DateConverter.convertLocalDateToString(LocalDate.now())));
-            dao.create(new Treatment(2, 1, convertStringToLocalDate("2023-06-05"), convertStringToLocalTime("11:00"), convertStringToLocalTime("12:30"), "Gespräch", "Patient irrt auf der Suche nach gestohlenen Wertsachen durch die Etage und bezichtigt andere Bewohner des Diebstahls.\nPatient wird in seinen Raum zurückbegleitet und erhält Beruhigungsmittel.", false, DateConverter.convertLocalDateToString(LocalDate.now())));
-            dao.create(new Treatment(3, 2, convertStringToLocalDate("2023-06-04"), convertStringToLocalTime("07:30"), convertStringToLocalTime("08:00"), "Waschen", "Patient mit Waschlappen gewaschen und frisch angezogen. Patient gewendet.", false, DateConverter.convertLocalDateToString(LocalDate.now())));
-            dao.create(new Treatment(4, 1, convertStringToLocalDate("2023-06-06"), convertStringToLocalTime("15:10"), convertStringToLocalTime("16:00"), "Spaziergang", "Spaziergang im Park, Patient döst  im Rollstuhl ein", false, DateConverter.convertLocalDateToString(LocalDate.now())));
-            dao.create(new Treatment(4, 1, convertStringToLocalDate("2023-06-08"), convertStringToLocalTime("15:00"), convertStringToLocalTime("16:00"), "Spaziergang", "Parkspaziergang; Patient ist heute lebhafter und hat klare Momente; erzählt von seiner Tochter", false, DateConverter.convertLocalDateToString(LocalDate.now())));
-            dao.create(new Treatment(3, 2, convertStringToLocalDate("2023-06-07"), convertStringToLocalTime("11:00"), convertStringToLocalTime("11:30"), "Waschen", "Waschen per Dusche auf einem Stuhl; Patientin gewendet;", false, DateConverter.convertLocalDateToString(LocalDate.now())));
-            dao.create(new Treatment(2, 5, convertStringToLocalDate("2023-06-08"), convertStringToLocalTime("15:00"), convertStringToLocalTime("15:30"), "Physiotherapie", "Übungen zur Stabilisation und Mobilisierung der Rückenmuskulatur", false, DateConverter.convertLocalDateToString(LocalDate.now())));
-            dao.create(new Treatment(2, 4, convertStringToLocalDate("2023-08-24"), convertStringToLocalTime("09:30"), convertStringToLocalTime("10:15"), "KG", "Lympfdrainage", false, DateConverter.convertLocalDateToString(LocalDate.now())));
-            dao.create(new Treatment(1, 6, convertStringToLocalDate("2023-08-31"), convertStringToLocalTime("13:30"), convertStringToLocalTime("13:45"), "Toilettengang", "Hilfe beim Toilettengang; Patientin klagt über Schmerzen beim Stuhlgang. Gabe von Iberogast", false, DateConverter.convertLocalDateToString(LocalDate.now())));
-            dao.create(new Treatment(2, 6, convertStringToLocalDate("2023-09-01"), convertStringToLocalTime("16:00"), convertStringToLocalTime("17:00"), "KG", "Massage der Extremitäten zur Verbesserung der Durchblutung", false, DateConverter.convertLocalDateToString(LocalDate.now())));
+            TreatmentDao dao = factory.createTreatmentDao();
+            dao.createAll(List.of(
+                    new Treatment(1, 1, convertStringToLocalDate("2023-06-03"), convertStringToLocalTime("11:00"), convertStringToLocalTime("15:00"), "Gespräch", "Der Patient hat enorme Angstgefühle und glaubt, er sei überfallen worden. Ihm seien alle Wertsachen gestohlen worden.\nPatient beruhigt sich erst, als alle Wertsachen im Zimmer gefunden worden sind.", false, DateConverter.convertLocalDateToString(LocalDate.now())),
+                    new Treatment(2, 1, convertStringToLocalDate("2023-06-05"), convertStringToLocalTime("11:00"), convertStringToLocalTime("12:30"), "Gespräch", "Patient irrt auf der Suche nach gestohlenen Wertsachen durch die Etage und bezichtigt andere Bewohner des Diebstahls.\nPatient wird in seinen Raum zurückbegleitet und erhält Beruhigungsmittel.", false, DateConverter.convertLocalDateToString(LocalDate.now())),
+                    new Treatment(3, 2, convertStringToLocalDate("2023-06-04"), convertStringToLocalTime("07:30"), convertStringToLocalTime("08:00"), "Waschen", "Patient mit Waschlappen gewaschen und frisch angezogen. Patient gewendet.", false, DateConverter.convertLocalDateToString(LocalDate.now())),
+                    new Treatment(4, 1, convertStringToLocalDate("2023-06-06"), convertStringToLocalTime("15:10"), convertStringToLocalTime("16:00"), "Spaziergang", "Spaziergang im Park, Patient döst  im Rollstuhl ein", false, DateConverter.convertLocalDateToString(LocalDate.now())),
+                    new Treatment(4, 1, convertStringToLocalDate("2023-06-08"), convertStringToLocalTime("15:00"), convertStringToLocalTime("16:00"), "Spaziergang", "Parkspaziergang; Patient ist heute lebhafter und hat klare Momente; erzählt von seiner Tochter", false, DateConverter.convertLocalDateToString(LocalDate.now())),
+                    new Treatment(3, 2, convertStringToLocalDate("2023-06-07"), convertStringToLocalTime("11:00"), convertStringToLocalTime("11:30"), "Waschen", "Waschen per Dusche auf einem Stuhl; Patientin gewendet;", false, DateConverter.convertLocalDateToString(LocalDate.now())),
+                    new Treatment(2, 5, convertStringToLocalDate("2023-06-08"), convertStringToLocalTime("15:00"), convertStringToLocalTime("15:30"), "Physiotherapie", "Übungen zur Stabilisation und Mobilisierung der Rückenmuskulatur", false, DateConverter.convertLocalDateToString(LocalDate.now())),
+                    new Treatment(2, 4, convertStringToLocalDate("2023-08-24"), convertStringToLocalTime("09:30"), convertStringToLocalTime("10:15"), "KG", "Lympfdrainage", false, DateConverter.convertLocalDateToString(LocalDate.now())),
+                    new Treatment(1, 6, convertStringToLocalDate("2023-08-31"), convertStringToLocalTime("13:30"), convertStringToLocalTime("13:45"), "Toilettengang", "Hilfe beim Toilettengang; Patientin klagt über Schmerzen beim Stuhlgang. Gabe von Iberogast", false, DateConverter.convertLocalDateToString(LocalDate.now())),
+                    new Treatment(2, 6, convertStringToLocalDate("2023-09-01"), convertStringToLocalTime("16:00"), convertStringToLocalTime("17:00"), "KG", "Massage der Extremitäten zur Verbesserung der Durchblutung", false, DateConverter.convertLocalDateToString(LocalDate.now()))));
         } catch (SQLException exception) {
             exception.printStackTrace();
         }
     }
 
-    /**
-     * This method sets up the table caregiver in the database.
-     * @param connection the connection to the database
-     */
-private static void setUpTableCaregiver(Connection connection) {
-        final String SQL = "CREATE TABLE IF NOT EXISTS caregiver (" +
-                "   cid INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                "   firstname TEXT NOT NULL, " +
-                "   surname TEXT NOT NULL, " +
-                "   phonenumber TEXT NOT NULL, " +
-                "   locked BOOLEAN NOT NULL, " +
-                "   datecreated TEXT NOT NULL" +
-                ");";
-        try (Statement statement = connection.createStatement()) {
-            statement.execute(SQL);
-        } catch (SQLException exception) {
-            System.out.println(exception.getMessage());
-        }
-    }
-
     /**
      * This method sets up the example caregivers in the database.
      */
-    private static void setUpCaregivers() {
+    private static void setUpCaregivers(DaoFactory factory) {
         try {
-            CaregiverDAO dao = DaoFactory.getDaoFactory().createCaregiverDAO();
-            dao.create(new Caregiver(0, "Hans", "Müller", "0176-12345678", false, "2023-06-03"));
-            dao.create(new Caregiver(1, "Karin", "Schmidt", "0176-12345679", false, "2023-06-03"));
-            dao.create(new Caregiver(2, "Peter", "Schneider", "0176-12345680", true, "2023-06-03"));
-            dao.create(new Caregiver(3, "Klaus", "Fischer", "0176-12345681", false, "2023-06-03"));
-            dao.create(new Caregiver(4, "Sabine", "Weber", "0176-12345682", false, "2023-06-03"));
-            dao.create(new Caregiver(5, "Andrea", "Meyer", "0176-12345683", false, "2023-06-03"));
-            dao.create(new Caregiver(6, "Thomas", "Meyer", "0176-12345683", false, "2023-06-03"));
-            dao.create(new Caregiver(7, "User", "Delete", "0176-12345683", false, "2001-01-01"));
-            dao.create(new Caregiver(8, "User", "Not Delete", "0176-12345683", false, "2020-01-01"));
+            CaregiverDAO dao = factory.createCaregiverDAO();
+            dao.createAll(List.of(
+                    new Caregiver(0, "Hans", "Müller", "0176-12345678", false, "2023-06-03"),
+                    new Caregiver(1, "Karin", "Schmidt", "0176-12345679", false, "2023-06-03"),
+                    new Caregiver(2, "Peter", "Schneider", "0176-12345680", true, "2023-06-03"),
+                    new Caregiver(3, "Klaus", "Fischer", "0176-12345681", false, "2023-06-03"),
+                    new Caregiver(4, "Sabine", "Weber", "0176-12345682", false, "2023-06-03"),
+                    new Caregiver(5, "Andrea", "Meyer", "0176-12345683", false, "2023-06-03"),
+                    new Caregiver(6, "Thomas", "Meyer", "0176-12345683", false, "2023-06-03"),
+                    new Caregiver(7, "User", "Delete", "0176-12345683", false, "2001-01-01"),
+                    new Caregiver(8, "User", "Not Delete", "0176-12345683", false, "2020-01-01")));
         } catch (SQLException exception) {
             exception.printStackTrace();
         }
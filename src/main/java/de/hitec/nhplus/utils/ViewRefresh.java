@@ -0,0 +1,61 @@
+package de.hitec.nhplus.utils;
+
+import de.hitec.nhplus.datastorage.AsyncDao;
+import de.hitec.nhplus.datastorage.ChangeTracker;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.scene.Node;
+import javafx.util.Duration;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+
+/**
+ * Utility class to keep the tables of the views up to date with a {@link ChangeTracker}, instead of reading the whole
+ * table again after every change.
+ */
+public class ViewRefresh {
+
+    private static final long POLL_MILLIS = Long.getLong("nhplus.changeLog.pollMs", 1000);
+
+    private ViewRefresh() {
+    }
+
+    /**
+     * Reads the changes of the tracker on a virtual thread and applies them to the given list on the JavaFX
+     * application thread. If too many rows have changed, <code>reload</code> is called instead.
+     * @param tracker the tracker of the table shown in the list
+     * @param items the list shown by the view
+     * @param shown tells whether the view shows the given object
+     * @param reload reads the whole table again
+     * @return a future that is completed after the changes were applied
+     */
+    public static <T> CompletableFuture<Void> apply(ChangeTracker<T> tracker, List<T> items, Predicate<T> shown,
+                                                    Runnable reload) {
+        return FxAsync.whenDone(AsyncDao.supplyAsync(tracker::poll), changes -> {
+            if (changes.reload()) {
+                reload.run();
+            } else if (!changes.isEmpty()) {
+                tracker.applyTo(items, changes, shown);
+            }
+        });
+    }
+
+    /**
+     * Calls the given refresh every <code>nhplus.changeLog.pollMs</code> milliseconds (default 1000), so changes made
+     * at other terminals show up. The polling stops when the view is removed from its scene.
+     * @param view the view, e.g. its table
+     * @param refresh the refresh of the view
+     */
+    public static void poll(Node view, Runnable refresh) {
+        Timeline timeline = new Timeline(new KeyFrame(Duration.millis(POLL_MILLIS), event -> refresh.run()));
+        timeline.setCycleCount(Timeline.INDEFINITE);
+        view.sceneProperty().addListener((observable, oldScene, newScene) -> {
+            if (newScene == null) {
+                timeline.stop();
+            }
+        });
+        timeline.play();
+    }
+}
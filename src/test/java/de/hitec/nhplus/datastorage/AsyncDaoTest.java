@@ -0,0 +1,75 @@
+package de.hitec.nhplus.datastorage;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsyncDaoTest {
+
+    /**
+     * Überprüft, dass nie mehr Aufrufe gleichzeitig laufen, als Genehmigungen vorhanden sind, und die übrigen
+     * Aufrufe ausgeführt werden, sobald eine Genehmigung frei wird.
+     */
+    @Test
+    public void limitsConcurrentCallsToPermits() throws InterruptedException {
+        int permits = AsyncDao.getPermitCount();
+        CountDownLatch blocker = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < permits + 3; i++) {
+            futures.add(AsyncDao.supplyAsync(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    assertTrue(blocker.await(10, TimeUnit.SECONDS));
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    running.decrementAndGet();
+                }
+                return 1;
+            }));
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (running.get() < permits && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(100);
+        assertEquals(permits, running.get());
+        assertTrue(futures.stream().noneMatch(CompletableFuture::isDone));
+
+        blocker.countDown();
+        assertEquals(permits + 3, futures.stream().mapToInt(CompletableFuture::join).sum());
+        assertEquals(permits, maxRunning.get());
+    }
+
+    /**
+     * Überprüft, dass ein fehlgeschlagener Aufruf seine Genehmigung freigibt und den Future mit der
+     * SQLException abschließt.
+     */
+    @Test
+    public void failedCallCompletesExceptionallyAndReleasesPermit() {
+        int permits = AsyncDao.getPermitCount();
+        List<CompletableFuture<Object>> failures = new ArrayList<>();
+        for (int i = 0; i < permits + 1; i++) {
+            failures.add(AsyncDao.supplyAsync(() -> {
+                throw new SQLException("Fehler");
+            }));
+        }
+
+        for (CompletableFuture<Object> failure : failures) {
+            CompletionException exception = assertThrows(CompletionException.class, failure::join);
+            assertInstanceOf(SQLException.class, exception.getCause());
+        }
+        assertEquals("fertig", AsyncDao.supplyAsync(() -> "fertig").join());
+    }
+}
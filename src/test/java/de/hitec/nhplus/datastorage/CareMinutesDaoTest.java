@@ -0,0 +1,84 @@
+package de.hitec.nhplus.datastorage;
+
+import de.hitec.nhplus.model.CareMinutes;
+import de.hitec.nhplus.model.Caregiver;
+import de.hitec.nhplus.model.Patient;
+import de.hitec.nhplus.model.Treatment;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CareMinutesDaoTest {
+
+    private static final YearMonth FEBRUARY = YearMonth.of(2024, 2);
+
+    private ConnectionSource source;
+    private TreatmentDao treatmentDao;
+    private CareMinutesDao dao;
+
+    /**
+     * Erstellt eine migrierte Datenbank im Speicher mit drei Behandlungen im Februar 2024.
+     */
+    @BeforeEach
+    public void setUp() throws SQLException {
+        source = TestDatabase.empty().getSource();
+        new PatientDao(source).createAll(List.of(
+                new Patient("Anna", "Eins", LocalDate.of(1950, 1, 1), "3", "101", false, "2024-01-01"),
+                new Patient("Bernd", "Zwei", LocalDate.of(1950, 1, 1), "2", "102", false, "2024-01-01")));
+        new CaregiverDAO(source).create(new Caregiver("Pflege", "Kraft", "0123456789", false));
+        treatmentDao = new TreatmentDao(source);
+        treatmentDao.createAll(List.of(
+                createTreatment(1, 1, LocalTime.of(9, 0), LocalTime.of(9, 30), "Verband"),
+                createTreatment(2, 5, LocalTime.of(10, 0), LocalTime.of(10, 45), "Verband"),
+                createTreatment(1, 20, LocalTime.of(23, 30), LocalTime.of(0, 15), "Nachtwache")));
+        dao = new CareMinutesDao(source);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        source.close();
+    }
+
+    /**
+     * Überprüft, dass die Trigger die Minuten beim Anlegen, Ändern und Löschen von Behandlungen nachführen und der
+     * Neuaufbau dieselben Summen ergibt.
+     */
+    @Test
+    public void keepsMinutesUpToDate() throws SQLException {
+        List<CareMinutes> caregiver = dao.readCaregiversOfMonth(FEBRUARY);
+        assertEquals(2, caregiver.size());
+        assertEquals("Nachtwache", caregiver.get(0).getDescription());
+        assertEquals(45, caregiver.get(0).getMinutes());
+        assertEquals(75, caregiver.get(1).getMinutes());
+        assertEquals(2, caregiver.get(1).getTreatments());
+        assertEquals(2, dao.readByPatient(1, FEBRUARY, FEBRUARY).size());
+
+        Treatment treatment = treatmentDao.read(2);
+        treatment.setDescription("Nachtwache");
+        treatmentDao.update(treatment);
+        treatmentDao.deleteById(1);
+
+        caregiver = dao.readByCaregiver(1, FEBRUARY, YearMonth.of(2024, 12));
+        assertEquals(1, caregiver.size());
+        assertEquals(90, caregiver.get(0).getMinutes());
+        assertEquals(2, caregiver.get(0).getTreatments());
+        assertEquals(1, dao.readPatientsOfMonth(FEBRUARY).get(0).getId());
+        assertTrue(dao.readByPatient(1, YearMonth.of(2024, 3), YearMonth.of(2024, 3)).isEmpty());
+
+        assertEquals(3, dao.rebuild());
+        assertEquals(90, dao.readCaregiversOfMonth(FEBRUARY).get(0).getMinutes());
+    }
+
+    private static Treatment createTreatment(long pid, int day, LocalTime begin, LocalTime end, String description) {
+        return new Treatment(pid, 1, LocalDate.of(2024, 2, day), begin, end, description, "Notiz", false,
+                "2024-02-01");
+    }
+}
@@ -0,0 +1,101 @@
+package de.hitec.nhplus.datastorage;
+
+import de.hitec.nhplus.model.Patient;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChangeTrackerTest {
+
+    private ConnectionSource source;
+    private PatientDao dao;
+
+    /**
+     * Erstellt eine migrierte Datenbank im Speicher mit zwei Patienten.
+     */
+    @BeforeEach
+    public void setUp() throws SQLException {
+        source = TestDatabase.empty().getSource();
+        dao = new PatientDao(source);
+        dao.setQueryCache(new QueryCache(new TableVersions()));
+        dao.createAll(List.of(createPatient("Eins"), createPatient("Zwei")));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        source.close();
+    }
+
+    /**
+     * Überprüft, dass nur die geänderten Zeilen gelesen und in die Liste der Ansicht übernommen werden.
+     */
+    @Test
+    public void appliesOnlyChangedRows() throws SQLException {
+        ChangeTracker<Patient> tracker = new ChangeTracker<>(dao);
+        tracker.start();
+        List<Patient> items = new ArrayList<>(dao.readAll());
+        assertTrue(tracker.poll().isEmpty());
+
+        Patient first = dao.read(1);
+        first.setRoomNumber("999");
+        dao.update(first);
+        dao.deleteById(2);
+        dao.create(createPatient("Drei"));
+
+        ChangeTracker.Changes<Patient> changes = tracker.poll();
+        assertEquals(2, changes.changed().size());
+        assertEquals(1, changes.deleted().size());
+        tracker.applyTo(items, changes, patient -> true);
+        assertEquals(List.of(1L, 3L), items.stream().map(Patient::getPid).toList());
+        assertEquals("999", items.get(0).getRoomNumber());
+        assertTrue(tracker.poll().isEmpty());
+    }
+
+    /**
+     * Überprüft, dass die Ansicht alles neu lesen muss, wenn Einträge des Protokolls bereits gelöscht wurden.
+     */
+    @Test
+    public void requestsReloadAfterPrunedEntries() throws SQLException {
+        ChangeTracker<Patient> tracker = new ChangeTracker<>(dao);
+        tracker.start();
+        dao.create(createPatient("Drei"));
+        try (Statement statement = source.acquireWriter().createStatement()) {
+            statement.executeUpdate("DELETE FROM change_log");
+        }
+
+        assertTrue(tracker.poll().reload());
+    }
+
+    /**
+     * Überprüft, dass nur die Einträge des Protokolls gelöscht werden, die älter als die Aufbewahrungsdauer sind.
+     */
+    @Test
+    public void prunesOnlyExpiredEntries() throws SQLException {
+        try (Statement statement = source.acquireWriter().createStatement()) {
+            statement.executeUpdate("UPDATE change_log SET changed_at = unixepoch() - 25 * 3600");
+        }
+        dao.create(createPatient("Drei"));
+
+        assertEquals(2, ChangeTracker.prune(source));
+        assertEquals(0, ChangeTracker.prune(source));
+        try (Statement statement = source.acquireReader().createStatement();
+             ResultSet result = statement.executeQuery("SELECT row_id FROM change_log")) {
+            assertTrue(result.next());
+            assertEquals(3, result.getLong(1));
+            assertFalse(result.next());
+        }
+    }
+
+    private static Patient createPatient(String surname) {
+        return new Patient("Anna", surname, LocalDate.of(1950, 1, 1), "3", "101", false, "2024-01-01");
+    }
+}
@@ -0,0 +1,130 @@
+package de.hitec.nhplus.datastorage;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConnectionPoolTest {
+
+    @TempDir
+    Path directory;
+
+    private ConnectionPool pool;
+
+    /**
+     * Öffnet einen Pool mit zwei Lesern auf einer temporären Datenbankdatei.
+     */
+    @BeforeEach
+    public void setUp() throws SQLException {
+        pool = new ConnectionPool("jdbc:sqlite:" + directory.resolve("nursingHome.db"), DatabaseProfile.BALANCED,
+                2, 200);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        pool.close();
+    }
+
+    /**
+     * Überprüft, dass Leser schreibgeschützte eigene Verbindungen erhalten, ein Thread mit dem Schreiber aber vom
+     * Schreiber liest und dass nach Ablauf der Wartezeit ohne freien Leser ein Fehler gemeldet wird.
+     */
+    @Test
+    public void routesReadersAndWriter() throws SQLException {
+        Connection writer = pool.acquireWriter();
+        try (Statement statement = writer.createStatement()) {
+            statement.execute("CREATE TABLE test (id INTEGER PRIMARY KEY)");
+        } finally {
+            pool.release(writer);
+        }
+
+        Connection first = pool.acquireReader();
+        Connection second = pool.acquireReader();
+        try {
+            assertNotSame(first, second);
+            assertNotSame(writer, first);
+            assertNotSame(writer, second);
+            try (Statement statement = first.createStatement()) {
+                assertThrows(SQLException.class, () -> statement.execute("INSERT INTO test VALUES (1)"));
+            }
+            assertThrows(SQLException.class, pool::acquireReader);
+            assertEquals(2, pool.getInUse());
+
+            assertSame(writer, pool.acquireWriter());
+            try {
+                assertSame(writer, pool.acquireReader());
+                pool.release(writer);
+            } finally {
+                pool.release(writer);
+            }
+        } finally {
+            pool.release(first);
+            pool.release(second);
+        }
+        assertEquals(0, pool.getInUse());
+    }
+
+    /**
+     * Überprüft, dass der Schreiber für den haltenden Thread wiedereintrittsfähig ist, ein anderer Thread aber erst
+     * nach der letzten Freigabe schreiben kann.
+     */
+    @Test
+    public void writerIsReentrantForItsOwner() throws SQLException {
+        Connection writer = pool.acquireWriter();
+        assertSame(writer, pool.acquireWriter());
+        pool.release(writer);
+
+        CompletableFuture<Connection> other = CompletableFuture.supplyAsync(() -> {
+            try {
+                return pool.acquireWriter();
+            } catch (SQLException exception) {
+                return null;
+            }
+        });
+        assertNull(other.join());
+        pool.release(writer);
+
+        Connection free = CompletableFuture.supplyAsync(() -> {
+            try {
+                Connection connection = pool.acquireWriter();
+                pool.release(connection);
+                return connection;
+            } catch (SQLException exception) {
+                return null;
+            }
+        }).join();
+        assertSame(writer, free);
+    }
+
+    /**
+     * Überprüft, dass der nicht blockierende Zugriff auf den Schreiber nicht wartet, solange ein anderer Thread ihn
+     * hält, und dem haltenden Thread den Schreiber erneut gibt.
+     */
+    @Test
+    public void tryAcquireWriterDoesNotWaitForBusyWriter() throws SQLException {
+        Connection writer = pool.acquireWriter();
+        try {
+            assertSame(writer, pool.tryAcquireWriter());
+            pool.release(writer);
+
+            assertNull(CompletableFuture.supplyAsync(pool::tryAcquireWriter).join());
+        } finally {
+            pool.release(writer);
+        }
+
+        Connection free = CompletableFuture.supplyAsync(() -> {
+            Connection connection = pool.tryAcquireWriter();
+            pool.release(connection);
+            return connection;
+        }).join();
+        assertSame(writer, free);
+    }
+}
@@ -0,0 +1,205 @@
+package de.hitec.nhplus.datastorage;
+
+import de.hitec.nhplus.model.Patient;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DaoImpTest {
+
+    private TestDatabase database;
+    private PatientDao dao;
+
+    /**
+     * Erstellt eine migrierte Datenbank im Speicher mit vier Patienten. Jede Anweisung bildet einen eigenen Batch.
+     */
+    @BeforeEach
+    public void setUp() throws SQLException {
+        database = TestDatabase.empty();
+        dao = new PatientDao(database.getSource());
+        dao.createAll(List.of(createPatient("Eins"), createPatient("Zwei"), createPatient("Drei"),
+                createPatient("Vier")));
+        dao.setBatchSize(1);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        database.close();
+    }
+
+    /**
+     * Überprüft, dass alle Batches einer Aktualisierung zurückgerollt werden, wenn ein späterer Batch fehlschlägt.
+     */
+    @Test
+    public void updateAllRollsBackEarlierBatches() throws SQLException {
+        rejectInTrigger("BEFORE UPDATE ON patient WHEN NEW.surname = 'Fehler'");
+        List<Patient> patients = dao.readAll();
+        patients.get(0).setSurname("Geändert");
+        patients.get(1).setSurname("Geändert");
+        patients.get(2).setSurname("Fehler");
+
+        assertThrows(SQLException.class, () -> dao.updateAll(patients));
+
+        assertEquals(List.of("Eins", "Zwei", "Drei", "Vier"), readSurnames());
+        patients.get(2).setSurname("Geändert");
+        dao.updateAll(patients);
+        assertEquals(List.of("Geändert", "Geändert", "Geändert", "Vier"), readSurnames());
+    }
+
+    /**
+     * Überprüft, dass alle Batches eines Löschens zurückgerollt werden, wenn ein späterer Batch fehlschlägt.
+     */
+    @Test
+    public void deleteAllByIdRollsBackEarlierBatches() throws SQLException {
+        rejectInTrigger("BEFORE DELETE ON patient WHEN OLD.pid = 3");
+
+        assertThrows(SQLException.class, () -> dao.deleteAllById(List.of(1L, 2L, 3L)));
+
+        assertEquals(List.of("Eins", "Zwei", "Drei", "Vier"), readSurnames());
+        dao.deleteAllById(List.of(1L, 2L, 4L));
+        assertEquals(List.of("Drei"), readSurnames());
+    }
+
+    /**
+     * Überprüft, dass ein fehlgeschlagener Batch in einer offenen Transaktion nur seinen Savepoint zurückrollt und
+     * die übrigen Änderungen der Transaktion erhalten bleiben.
+     */
+    @Test
+    public void failedBatchInUnitOfWorkKeepsOtherChanges() throws SQLException {
+        rejectInTrigger("BEFORE DELETE ON patient WHEN OLD.pid = 3");
+
+        new TransactionTemplate(database.getSource()).execute(unit -> {
+            PatientDao unitDao = new PatientDao(unit);
+            unitDao.deleteById(4);
+            unitDao.setBatchSize(1);
+            assertThrows(SQLException.class, () -> unitDao.deleteAllById(List.of(1L, 3L)));
+            return null;
+        });
+
+        assertEquals(List.of("Eins", "Zwei", "Drei"), readSurnames());
+    }
+
+    /**
+     * Überprüft, dass ein vorzeitig geschlossener Stream die Leseverbindung freigibt und seine eigene Anweisung
+     * schließt.
+     */
+    @Test
+    public void closedStreamReleasesReaderAndStatement() throws SQLException {
+        TrackingSource source = new TrackingSource(database.getSource());
+        PatientDao trackedDao = new PatientDao(source);
+
+        try (Stream<Patient> stream = trackedDao.streamAll()) {
+            assertEquals(1, source.held);
+            assertEquals("Eins", stream.findFirst().orElseThrow().getSurname());
+        }
+
+        assertEquals(0, source.held);
+        assertEquals(1, source.statements.size());
+        assertTrue(source.statements.get(0).isClosed());
+    }
+
+    /**
+     * Überprüft, dass ein vollständig gelesener Stream die Verbindung schon vor dem Schließen freigibt und ein
+     * Fehler im Besucher von forEach die Verbindung und die Anweisung ebenfalls freigibt.
+     */
+    @Test
+    public void consumedStreamAndAbortedForEachRelease() throws SQLException {
+        TrackingSource source = new TrackingSource(database.getSource());
+        PatientDao trackedDao = new PatientDao(source);
+
+        Stream<Patient> stream = trackedDao.streamAll();
+        assertEquals(4, stream.count());
+        assertEquals(0, source.held);
+        stream.close();
+        assertEquals(0, source.held);
+
+        List<String> visited = new ArrayList<>();
+        assertThrows(IllegalStateException.class, () -> trackedDao.forEach(patient -> {
+            visited.add(patient.getSurname());
+            throw new IllegalStateException("Abbruch");
+        }));
+
+        assertEquals(List.of("Eins"), visited);
+        assertEquals(0, source.held);
+        assertEquals(2, source.statements.size());
+        assertTrue(source.statements.get(1).isClosed());
+    }
+
+    private void rejectInTrigger(String condition) throws SQLException {
+        try (Statement statement = database.getConnection().createStatement()) {
+            statement.execute("CREATE TEMP TRIGGER reject " + condition +
+                    " BEGIN SELECT RAISE(ABORT, 'abgelehnt'); END");
+        }
+    }
+
+    private List<String> readSurnames() throws SQLException {
+        return dao.readAll().stream().map(Patient::getSurname).toList();
+    }
+
+    /**
+     * A source counting the connections currently held and recording the statements prepared outside of the
+     * statement cache.
+     */
+    private static class TrackingSource implements ConnectionSource {
+        private final ConnectionSource delegate;
+        private final List<PreparedStatement> statements = new ArrayList<>();
+        private int held;
+
+        TrackingSource(ConnectionSource delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Connection acquireReader() throws SQLException {
+            this.held++;
+            return track(this.delegate.acquireReader());
+        }
+
+        @Override
+        public Connection acquireWriter() throws SQLException {
+            this.held++;
+            return track(this.delegate.acquireWriter());
+        }
+
+        @Override
+        public void release(Connection connection) {
+            this.held--;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        private Connection track(Connection connection) {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                        try {
+                            Object result = method.invoke(connection, args);
+                            if (method.getName().equals("prepareStatement")) {
+                                this.statements.add((PreparedStatement) result);
+                            }
+                            return result;
+                        } catch (InvocationTargetException exception) {
+                            throw exception.getCause();
+                        }
+                    });
+        }
+    }
+
+    private static Patient createPatient(String surname) {
+        return new Patient("Test", surname, LocalDate.of(1950, 1, 1), "3", "101", false, "2024-01-01");
+    }
+}
@@ -0,0 +1,106 @@
+package de.hitec.nhplus.datastorage;
+
+import de.hitec.nhplus.model.Patient;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IdentityMapTest {
+
+    private ConnectionSource source;
+    private IdentityMap identityMap;
+
+    /**
+     * Erstellt eine migrierte Datenbank im Speicher mit zwei Patienten.
+     */
+    @BeforeEach
+    public void setUp() throws SQLException {
+        source = TestDatabase.empty().getSource();
+        new PatientDao(source).createAll(List.of(
+                new Patient("Test", "Eins", LocalDate.of(1950, 1, 1), "3", "101", false, "2024-01-01"),
+                new Patient("Test", "Zwei", LocalDate.of(1950, 1, 1), "3", "102", false, "2024-01-01")));
+        identityMap = new IdentityMap();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        source.close();
+    }
+
+    /**
+     * Überprüft, dass zwei DAOs derselben Sitzung für denselben Schlüssel dieselbe Instanz liefern.
+     */
+    @Test
+    public void sameKeyGivesSameInstanceAcrossDaos() throws SQLException {
+        PatientDao first = createDao();
+        PatientDao second = createDao();
+
+        List<Patient> patients = first.readAll();
+        Patient patient = second.read(patients.get(0).getPid());
+
+        assertSame(patients.get(0), patient);
+        assertSame(patient, second.readAll().get(0));
+        assertEquals(1, identityMap.getHits());
+    }
+
+    /**
+     * Überprüft, dass ein gelöschter Patient nicht mehr aus der Identity Map geliefert wird.
+     */
+    @Test
+    public void deleteRemovesInstance() throws SQLException {
+        PatientDao dao = createDao();
+        Patient patient = dao.read(1);
+
+        dao.deleteById(patient.getPid());
+
+        assertNull(dao.read(1));
+    }
+
+    /**
+     * Überprüft, dass eine Änderung durch einen anderen Prozess die Identity Map der Sitzung leert, damit der
+     * geänderte Patient neu gelesen wird.
+     */
+    @Test
+    public void externalChangeClearsIdentityMap(@TempDir Path directory) throws SQLException {
+        String url = "jdbc:sqlite:" + directory.resolve("nursingHome.db");
+        SingleConnectionSource local = new SingleConnectionSource(DriverManager.getConnection(url));
+        try (Connection other = DriverManager.getConnection(url)) {
+            SchemaMigrator.migrate(local);
+            DaoFactory factory = new DaoFactory(local);
+            factory.setIdentityMap(new IdentityMap());
+            PatientDao dao = factory.createPatientDAO();
+            dao.create(new Patient("Test", "Eins", LocalDate.of(1950, 1, 1), "3", "101", false, "2024-01-01"));
+            Patient patient = dao.read(1);
+            TableVersions versions = factory.getTableVersions();
+            versions.checkDataVersion(local.acquireWriter());
+
+            try (Statement statement = other.createStatement()) {
+                statement.executeUpdate("UPDATE patient SET surname = 'Extern' WHERE pid = 1");
+            }
+
+            assertTrue(versions.checkDataVersion(local.acquireWriter()));
+            Patient reread = dao.read(1);
+            assertNotSame(patient, reread);
+            assertEquals("Extern", reread.getSurname());
+        } finally {
+            local.close();
+        }
+    }
+
+    private PatientDao createDao() {
+        PatientDao dao = new PatientDao(source);
+        dao.setIdentityMap(identityMap);
+        return dao;
+    }
+}
@@ -0,0 +1,82 @@
+package de.hitec.nhplus.datastorage;
+
+import de.hitec.nhplus.model.Patient;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LruEntityCacheTest {
+
+    private ConnectionSource source;
+    private LruEntityCache<Patient> cache;
+
+    /**
+     * Erstellt eine migrierte Datenbank im Speicher mit drei Patienten.
+     */
+    @BeforeEach
+    public void setUp() throws SQLException {
+        source = TestDatabase.empty().getSource();
+        new PatientDao(source).createAll(List.of(
+                new Patient("Test", "Eins", LocalDate.of(1950, 1, 1), "3", "101", false, "2024-01-01"),
+                new Patient("Test", "Zwei", LocalDate.of(1950, 1, 1), "3", "102", false, "2024-01-01"),
+                new Patient("Test", "Drei", LocalDate.of(1950, 1, 1), "3", "103", false, "2024-01-01")));
+        cache = new LruEntityCache<>(2, 0);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        source.close();
+    }
+
+    /**
+     * Überprüft, dass wiederholte Lesezugriffe aus dem Cache mit Kopien beantwortet werden, eine noch nicht
+     * geschriebene Änderung nicht im Cache landet und eine geschriebene Änderung ihn verwirft.
+     */
+    @Test
+    public void updateInvalidatesCachedPatient() throws SQLException {
+        PatientDao dao = new PatientDao(source);
+        dao.setEntityCache(cache);
+
+        Patient patient = dao.read(1);
+        Patient cached = dao.read(1);
+        assertNotSame(patient, cached);
+        assertEquals(patient.getSurname(), cached.getSurname());
+        assertEquals(1, cache.getHits());
+
+        patient.setSurname("Geändert");
+        assertEquals("Eins", cache.get(1).getSurname());
+        dao.update(patient);
+        Patient reread = dao.read(1);
+
+        assertNotSame(patient, reread);
+        assertEquals("Geändert", reread.getSurname());
+        assertEquals(2.0 / 4, cache.getHitRatio(), 0.001);
+    }
+
+    /**
+     * Überprüft, dass der Cache beschränkt bleibt und ein veralteter Lesezugriff nicht mehr eingetragen wird.
+     */
+    @Test
+    public void evictsLeastRecentlyUsedAndRejectsStaleGeneration() {
+        Patient patient = new Patient(1, "Test", "Eins", LocalDate.of(1950, 1, 1), "3", "101", false, "2024-01-01");
+        cache.put(cache.getGeneration(), 1, patient);
+        cache.put(cache.getGeneration(), 2, patient);
+        cache.get(1);
+        cache.put(cache.getGeneration(), 3, patient);
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertNull(cache.get(2));
+
+        long generation = cache.getGeneration();
+        cache.invalidate(1);
+        cache.put(generation, 1, patient);
+        assertNull(cache.get(1));
+    }
+}
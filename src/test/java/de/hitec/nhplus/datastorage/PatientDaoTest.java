@@ -1,33 +1,41 @@
 package de.hitec.nhplus.datastorage;
 
+import de.hitec.nhplus.model.Patient;
+
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 
-import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
 public class PatientDaoTest {
 
-    private static Connection connection;
+    private TestDatabase database;
+    private Connection connection;
 
     /**
-     * Initialisiert Verbindung zur Datenbank.
+     * Erstellt eine Kopie der Testdatenbank im Speicher.
      */
     @BeforeEach
-    public void setUp() {
-        connection = ConnectionBuilder.getConnection();
+    public void setUp() throws SQLException {
+        database = TestDatabase.seeded();
+        connection = database.getConnection();
     }
 
     /**
-     * Schließt die Verbindung zur Datenbank, nachdem alle Tests ausgeführt wurden.
+     * Schließt die Verbindung zur Datenbank, nachdem der Test ausgeführt wurde.
      */
-    @AfterAll
-    public static void closeConnection() {
-        ConnectionBuilder.closeConnection();
+    @AfterEach
+    public void closeConnection() {
+        database.close();
     }
 
     /**
@@ -53,4 +61,52 @@ public class PatientDaoTest {
             fail("SQLException occurred: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Überprüft, dass jeder Test eine eigene Kopie der Testdaten erhält, deren Änderungen andere Tests nicht sehen.
+     */
+    @Test
+    public void testCopiesAreIndependent() throws SQLException {
+        PatientDao dao = database.createDaoFactory().createPatientDAO();
+        int count = dao.readAll().size();
+        assertTrue(count > 0);
+        dao.create(new Patient("Anna", "Eins", LocalDate.of(1950, 1, 1), "3", "101", false, "2024-01-01"));
+
+        try (TestDatabase other = TestDatabase.seeded()) {
+            assertEquals(count + 1, dao.readAll().size());
+            assertEquals(count, other.createDaoFactory().createPatientDAO().readAll().size());
+        }
+    }
+
+    /**
+     * Überprüft, dass das seitenweise Lesen nach Id auf- und absteigend alle Patienten genau einmal in der Reihenfolge
+     * der sortierten Liste aller Patienten liefert und Patienten nicht nach Datum sortiert werden können.
+     */
+    @Test
+    public void testReadsAllPagesById() throws SQLException {
+        PatientDao dao = database.createDaoFactory().createPatientDAO();
+        List<Long> ids = dao.readAll().stream().map(Patient::getPid).sorted().toList();
+        List<Long> descending = ids.stream().sorted(Comparator.reverseOrder()).toList();
+
+        for (int limit = 1; limit <= ids.size() + 1; limit++) {
+            assertEquals(ids, readAllPages(dao, limit, PageOrder.ID), "ID, limit " + limit);
+            assertEquals(descending, readAllPages(dao, limit, PageOrder.ID_DESC), "ID_DESC, limit " + limit);
+        }
+        assertThrows(IllegalArgumentException.class, () -> dao.readPage(null, 10, PageOrder.DATE));
+    }
+
+    private static List<Long> readAllPages(PatientDao dao, int limit, PageOrder order) throws SQLException {
+        List<Long> ids = new ArrayList<>();
+        Page<Patient> page = dao.readPage(null, limit, order);
+        while (true) {
+            assertTrue(page.getItems().size() <= limit);
+            page.getItems().forEach(patient -> ids.add(patient.getPid()));
+            if (!page.hasNext()) {
+                assertNull(page.getNextKey());
+                return ids;
+            }
+            assertEquals(limit, page.getItems().size());
+            page = dao.readPage(page.getNextKey(), limit, order);
+        }
+    }
+}
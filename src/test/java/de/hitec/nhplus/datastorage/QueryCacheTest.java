@@ -0,0 +1,101 @@
+package de.hitec.nhplus.datastorage;
+
+import de.hitec.nhplus.model.Caregiver;
+import de.hitec.nhplus.model.Patient;
+import de.hitec.nhplus.model.Treatment;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QueryCacheTest {
+
+    @TempDir
+    Path directory;
+
+    private ConnectionSource source;
+    private QueryCache queryCache;
+
+    /**
+     * Erstellt eine migrierte Datenbank mit einem Patienten, einer Pflegekraft und einer Behandlung.
+     */
+    @BeforeEach
+    public void setUp() throws SQLException {
+        source = new SingleConnectionSource(DriverManager.getConnection(url()));
+        SchemaMigrator.migrate(source);
+        new PatientDao(source).create(
+                new Patient("Test", "Eins", LocalDate.of(1950, 1, 1), "3", "101", false, "2024-01-01"));
+        new CaregiverDAO(source).create(new Caregiver("Pflege", "Kraft", "0123456789", false));
+        createDao().create(createTreatment("Erste"));
+        queryCache = new QueryCache(new TableVersions());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        source.close();
+    }
+
+    /**
+     * Überprüft, dass eine wiederholte Abfrage aus dem Cache kommt und ein Schreibzugriff sie ungültig macht.
+     */
+    @Test
+    public void writeInvalidatesCachedResult() throws SQLException {
+        TreatmentDao dao = createDao();
+        assertEquals(1, dao.readTreatmentsByPid(1).size());
+        assertEquals(1, dao.readTreatmentsByPid(1).size());
+        assertEquals(1, queryCache.getHits());
+
+        createDao().create(createTreatment("Zweite"));
+
+        assertEquals(2, dao.readTreatmentsByPid(1).size());
+        assertEquals(1, queryCache.getHits());
+    }
+
+    /**
+     * Überprüft, dass die Änderung durch eine andere Verbindung über data_version erkannt wird.
+     */
+    @Test
+    public void dataVersionDetectsExternalChange() throws SQLException {
+        TreatmentDao dao = createDao();
+        dao.readTreatmentsByCid(1);
+        Connection writer = source.acquireWriter();
+        try {
+            assertFalse(queryCache.getVersions().checkDataVersion(writer));
+            try (Connection other = DriverManager.getConnection(url());
+                 Statement statement = other.createStatement()) {
+                statement.executeUpdate("UPDATE treatment SET description = 'Extern'");
+            }
+            assertTrue(queryCache.getVersions().checkDataVersion(writer));
+        } finally {
+            source.release(writer);
+        }
+
+        assertEquals("Extern", dao.readTreatmentsByCid(1).get(0).getDescription());
+        assertEquals(0, queryCache.getHits());
+    }
+
+    private TreatmentDao createDao() {
+        TreatmentDao dao = new TreatmentDao(source);
+        dao.setQueryCache(queryCache);
+        return dao;
+    }
+
+    private String url() {
+        return "jdbc:sqlite:" + directory.resolve("test.db");
+    }
+
+    private static Treatment createTreatment(String description) {
+        return new Treatment(1, 1, LocalDate.of(2024, 1, 1), LocalTime.of(9, 0), LocalTime.of(10, 0),
+                description, "", false, "2024-01-01");
+    }
+}
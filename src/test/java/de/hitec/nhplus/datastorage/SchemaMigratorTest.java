@@ -0,0 +1,70 @@
+package de.hitec.nhplus.datastorage;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SchemaMigratorTest {
+
+    private Connection connection;
+
+    /**
+     * Öffnet eine leere Datenbank im Speicher.
+     */
+    @BeforeEach
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    /**
+     * Überprüft, dass eine leere Datenbank auf die neueste Version migriert wird und ein zweiter Lauf nichts ändert.
+     */
+    @Test
+    public void migratesOnceAndIsNoOpAfterwards() throws SQLException {
+        assertEquals(SchemaMigrator.getMigrations().size(), SchemaMigrator.migrate(connection));
+        assertEquals(SchemaMigrator.getLatestVersion(), SchemaMigrator.getVersion(connection));
+        assertTrue(indexExists("idx_treatment_pid"));
+        assertTrue(indexExists("idx_user_email"));
+
+        assertEquals(0, SchemaMigrator.migrate(connection));
+    }
+
+    /**
+     * Überprüft, dass eine Datenbank ohne Versionsnummer, deren Tabellen schon bestehen, ihre Daten behält.
+     */
+    @Test
+    public void keepsDataOfUnversionedDatabase() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE user (id INTEGER PRIMARY KEY AUTOINCREMENT, email TEXT NOT NULL, "
+                    + "password TEXT NOT NULL, status INTEGER NOT NULL)");
+            statement.execute("INSERT INTO user (email, password, status) VALUES ('user@nhplus.de', '123456', 1)");
+        }
+
+        SchemaMigrator.migrate(connection);
+
+        try (Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("SELECT COUNT(*) FROM user")) {
+            assertEquals(1, result.getInt(1));
+        }
+    }
+
+    private boolean indexExists(String name) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery(
+                     "SELECT 1 FROM sqlite_master WHERE type = 'index' AND name = '" + name + "'")) {
+            return result.next();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package de.hitec.nhplus.datastorage;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SlowQueryLogTest {
+
+    private Connection connection;
+    private SlowQueryLog log;
+
+    /**
+     * Erstellt eine Tabelle ohne Index in einer Datenbank im Speicher und ein Log, das jede Abfrage aufzeichnet.
+     */
+    @BeforeEach
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE treatment (tid INTEGER PRIMARY KEY, pid INTEGER, remark TEXT)");
+            statement.execute("INSERT INTO treatment (pid, remark) VALUES (1, 'geheim'), (2, 'vertraulich')");
+        }
+        log = new SlowQueryLog(0, null);
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    /**
+     * Überprüft, dass eine Abfrage mit Plan aufgezeichnet wird und Texte in den Parametern nicht im Log landen.
+     */
+    @Test
+    public void recordsPlanAndRedactsBinds() throws SQLException {
+        String sql = "SELECT * FROM treatment WHERE pid = ? AND remark = ?";
+        PreparedStatement statement = log.wrap(connection, sql, connection.prepareStatement(sql));
+        statement.setLong(1, 1);
+        statement.setString(2, "geheim");
+        try (ResultSet result = statement.executeQuery()) {
+            assertTrue(result.next());
+        }
+
+        List<SlowQuery> entries = log.getEntries();
+        assertEquals(1, entries.size());
+        assertEquals("1", entries.get(0).getBinds().get(1));
+        assertFalse(entries.get(0).toString().contains("geheim"));
+        assertTrue(entries.get(0).getPlan().get(0).startsWith("SCAN treatment"));
+    }
+
+    /**
+     * Überprüft, dass der Advisor für einen Full Table Scan einen Index auf die gefilterte Spalte vorschlägt.
+     */
+    @Test
+    public void advisorProposesIndexForScan() throws SQLException {
+        String sql = "SELECT * FROM treatment WHERE pid = ?";
+        PreparedStatement statement = log.wrap(connection, sql, connection.prepareStatement(sql));
+        statement.setLong(1, 2);
+        statement.executeQuery().close();
+
+        assertEquals(List.of("CREATE INDEX IF NOT EXISTS idx_treatment_pid ON treatment (pid);"),
+                List.copyOf(new IndexAdvisor(log.getEntries()).getProposals()));
+    }
+}
@@ -0,0 +1,58 @@
+package de.hitec.nhplus.datastorage;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatementCacheTest {
+
+    private Connection connection;
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        StatementCache.discard(connection);
+        connection.close();
+    }
+
+    /**
+     * The same SQL text has to return the same statement and count as a hit.
+     */
+    @Test
+    public void reusesStatementForSameSql() throws SQLException {
+        StatementCache cache = new StatementCache(connection, 4);
+        PreparedStatement first = cache.prepare("SELECT 1");
+        PreparedStatement second = cache.prepare("SELECT 1");
+
+        assertSame(first, second);
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    /**
+     * When the cache is full, the least recently used statement is closed and removed.
+     */
+    @Test
+    public void evictsLeastRecentlyUsedStatement() throws SQLException {
+        StatementCache cache = new StatementCache(connection, 2);
+        PreparedStatement one = cache.prepare("SELECT 1");
+        PreparedStatement two = cache.prepare("SELECT 2");
+        cache.prepare("SELECT 1");
+        cache.prepare("SELECT 3");
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertTrue(two.isClosed());
+        assertFalse(one.isClosed());
+    }
+}
@@ -0,0 +1,124 @@
+package de.hitec.nhplus.datastorage;
+
+import de.hitec.nhplus.utils.SetUpDB;
+import org.sqlite.SQLiteConnection;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * The TestDatabase class hands every test a database in memory of its own. The schema is migrated only once per test
+ * run into a template file, the seeded template is additionally filled with the data of {@link SetUpDB}. Each
+ * database is a copy of such a template, restored page by page with the backup API of SQLite, which is much cheaper
+ * than running the migrations again. Thus the tests do not share any state and may run in parallel.
+ */
+public class TestDatabase implements AutoCloseable {
+
+    private static Path emptyTemplate;
+    private static Path seededTemplate;
+
+    private final SingleConnectionSource source;
+
+    private TestDatabase(Path template) throws SQLException {
+        Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        int result = connection.unwrap(SQLiteConnection.class).getDatabase()
+                .restore("main", template.toString(), null, 100, 50, -1);
+        if (result != 0) {
+            connection.close();
+            throw new SQLException("Die Vorlage " + template + " konnte nicht kopiert werden: " + result);
+        }
+        this.source = new SingleConnectionSource(connection);
+    }
+
+    /**
+     * Returns a new database in memory with the current schema and without data.
+     * @return the new database
+     * @throws SQLException if the copy failed
+     */
+    public static TestDatabase empty() throws SQLException {
+        return new TestDatabase(getEmptyTemplate());
+    }
+
+    /**
+     * Returns a new database in memory with the current schema and the data of {@link SetUpDB}.
+     * @return the new database
+     * @throws SQLException if the copy failed
+     */
+    public static TestDatabase seeded() throws SQLException {
+        return new TestDatabase(getSeededTemplate());
+    }
+
+    private static synchronized Path getEmptyTemplate() throws SQLException {
+        if (emptyTemplate == null) {
+            emptyTemplate = createTemplate("nhplus-empty", false);
+        }
+        return emptyTemplate;
+    }
+
+    private static synchronized Path getSeededTemplate() throws SQLException {
+        if (seededTemplate == null) {
+            seededTemplate = createTemplate("nhplus-seeded", true);
+        }
+        return seededTemplate;
+    }
+
+    /**
+     * Migrates a database in memory, fills it if requested and writes it with <code>VACUUM INTO</code> to a
+     * temporary file, which is deleted when the test run ends.
+     */
+    private static Path createTemplate(String prefix, boolean seeded) throws SQLException {
+        Path file;
+        try {
+            file = Files.createTempFile(prefix, ".db");
+            Files.delete(file);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+        File template = file.toFile();
+        template.deleteOnExit();
+        SingleConnectionSource source = new SingleConnectionSource(DriverManager.getConnection("jdbc:sqlite::memory:"));
+        try {
+            SchemaMigrator.migrate(source);
+            if (seeded) {
+                SetUpDB.fillDb(new DaoFactory(source));
+            }
+            try (Statement statement = source.acquireWriter().createStatement()) {
+                statement.execute("VACUUM INTO '" + template.getPath().replace("'", "''") + "'");
+            }
+        } finally {
+            source.close();
+        }
+        return file;
+    }
+
+    public ConnectionSource getSource() {
+        return this.source;
+    }
+
+    public Connection getConnection() {
+        return this.source.acquireWriter();
+    }
+
+    /**
+     * Creates a factory whose DAOs use this database, with caches of their own.
+     * @return the new factory
+     */
+    public DaoFactory createDaoFactory() {
+        return new DaoFactory(this.source);
+    }
+
+    /**
+     * Closes the connection, which drops the database.
+     */
+    @Override
+    public void close() {
+        this.source.close();
+    }
+}
@@ -0,0 +1,91 @@
+package de.hitec.nhplus.datastorage;
+
+import de.hitec.nhplus.model.Patient;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransactionTemplateTest {
+
+    private ConnectionSource source;
+    private TransactionTemplate template;
+
+    /**
+     * Erstellt eine migrierte Datenbank im Speicher.
+     */
+    @BeforeEach
+    public void setUp() throws SQLException {
+        source = TestDatabase.empty().getSource();
+        template = new TransactionTemplate(source);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        source.close();
+    }
+
+    /**
+     * Überprüft, dass bei einem Fehler alle Änderungen der Transaktion zurückgerollt werden.
+     */
+    @Test
+    public void rollsBackAllChangesOnError() throws SQLException {
+        assertThrows(SQLException.class, () -> template.execute(unit -> {
+            PatientDao dao = new PatientDao(unit);
+            dao.create(createPatient("Erster"));
+            dao.create(createPatient("Zweiter"));
+            throw new SQLException("Abbruch");
+        }));
+
+        assertEquals(0, new PatientDao(source).readAll().size());
+    }
+
+    /**
+     * Überprüft, dass ein fehlgeschlagener Savepoint nur seine eigenen Änderungen zurückrollt.
+     */
+    @Test
+    public void nestedFailureOnlyRollsBackSavepoint() throws SQLException {
+        template.execute(unit -> {
+            new PatientDao(unit).create(createPatient("Bleibt"));
+            assertThrows(SQLException.class, () -> template.execute(nested -> {
+                assertTrue(nested.isNested());
+                new PatientDao(nested).create(createPatient("Verschwindet"));
+                throw new SQLException("Abbruch");
+            }));
+            return null;
+        });
+
+        assertEquals(1, new PatientDao(source).readAll().size());
+        assertEquals("Bleibt", new PatientDao(source).read(1).getSurname());
+    }
+
+    /**
+     * Überprüft, dass ein Löschen mit DAOs der Fabrik in einer Transaktion die gemeinsamen Caches ungültig macht.
+     */
+    @Test
+    public void factoryDaosOfUnitInvalidateSharedCaches() throws SQLException {
+        DaoFactory factory = new DaoFactory(source);
+        PatientDao dao = factory.createPatientDAO();
+        dao.createAll(List.of(createPatient("Bleibt"), createPatient("Geht")));
+        assertEquals(2, dao.readAll().size());
+        long version = factory.getTableVersions().get("patient");
+
+        template.execute(unit -> {
+            factory.createPatientDAO(unit).deleteById(2);
+            return null;
+        });
+
+        assertTrue(factory.getTableVersions().get("patient") > version);
+        assertEquals(1, dao.readAll().size());
+        assertNull(dao.read(2));
+    }
+
+    private static Patient createPatient(String surname) {
+        return new Patient("Test", surname, LocalDate.of(1950, 1, 1), "3", "101", false, "2024-01-01");
+    }
+}
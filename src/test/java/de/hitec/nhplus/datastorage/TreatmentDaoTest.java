@@ -0,0 +1,252 @@
+package de.hitec.nhplus.datastorage;
+
+import de.hitec.nhplus.model.Caregiver;
+import de.hitec.nhplus.model.Patient;
+import de.hitec.nhplus.model.Treatment;
+import de.hitec.nhplus.model.TreatmentDetail;
+import de.hitec.nhplus.model.TreatmentSearchHit;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TreatmentDaoTest {
+
+    private ConnectionSource source;
+    private TreatmentDao dao;
+
+    /**
+     * Erstellt eine migrierte Datenbank im Speicher mit zwei Patienten, einer Pflegekraft und drei Behandlungen.
+     */
+    @BeforeEach
+    public void setUp() throws SQLException {
+        source = TestDatabase.empty().getSource();
+        new PatientDao(source).createAll(List.of(
+                new Patient("Anna", "Eins", LocalDate.of(1950, 1, 1), "3", "101", false, "2024-01-01"),
+                new Patient("Bernd", "Zwei", LocalDate.of(1950, 1, 1), "2", "102", false, "2024-01-01")));
+        new CaregiverDAO(source).create(new Caregiver("Pflege", "Kraft", "0123456789", false));
+        dao = new TreatmentDao(source);
+        dao.createAll(List.of(
+                createTreatment(1, LocalDate.of(2012, 3, 1), "Verband", true, "2012-03-01"),
+                createTreatment(1, LocalDate.of(2024, 2, 1), "Blutdruck", false, "2024-02-01"),
+                createTreatment(2, LocalDate.of(2024, 5, 1), "Verband", false, "2024-05-01")));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        source.close();
+    }
+
+    /**
+     * Überprüft, dass eine Behandlung mit Patient und Pflegekraft in einer Abfrage gelesen wird.
+     */
+    @Test
+    public void readsDetailsWithPatientAndCaregiver() throws SQLException {
+        TreatmentDetail detail = dao.readDetail(3);
+
+        assertEquals("Zwei, Bernd", detail.getPatientName());
+        assertEquals("2", detail.getPatient().getCareLevel());
+        assertEquals("0123456789", detail.getCaregiver().getPhoneNumber());
+        assertEquals(3, dao.readAllDetails().size());
+        assertNull(dao.readDetail(99));
+    }
+
+    /**
+     * Überprüft, dass kombinierte Filter in einer Abfrage ausgewertet werden.
+     */
+    @Test
+    public void readsByCombinedCriteria() throws SQLException {
+        List<Treatment> treatments = dao.readByCriteria(new TreatmentCriteria()
+                .withCaregiver(1)
+                .withDescription("verband")
+                .from(LocalDate.of(2020, 1, 1)));
+
+        assertEquals(1, treatments.size());
+        assertEquals(3, treatments.get(0).getTid());
+        assertEquals(2, dao.readByCriteria(new TreatmentCriteria().withPatient(1)).size());
+        assertEquals(1, dao.readByCriteria(new TreatmentCriteria().locked(true)
+                .createdBefore(LocalDate.of(2014, 1, 1))).size());
+        assertTrue(dao.readByCriteria(new TreatmentCriteria().withDescription("100%")).isEmpty());
+    }
+
+    /**
+     * Überprüft, dass die Liste ohne Bemerkungen gelesen wird und ein Update die gespeicherte Bemerkung behält.
+     */
+    @Test
+    public void readsListWithoutRemarksAndKeepsThemOnUpdate() throws SQLException {
+        dao.setIdentityMap(new IdentityMap());
+        Treatment treatment = dao.readAllWithoutRemarks().get(0);
+        assertFalse(treatment.isRemarksLoaded());
+
+        treatment.setDescription("Verband gewechselt");
+        dao.update(treatment);
+
+        assertSame(treatment, dao.readDetail(treatment.getTid()).getTreatment());
+        assertEquals("Notiz zu Verband", treatment.getRemarks());
+    }
+
+    /**
+     * Überprüft, dass eine ohne Bemerkungen gelesene Behandlung beim Lesen über ihre Id die Bemerkung nachlädt.
+     */
+    @Test
+    public void readLoadsRemarksOfListedTreatment() throws SQLException {
+        dao.setIdentityMap(new IdentityMap());
+        Treatment treatment = dao.readAllWithoutRemarks().get(0);
+        assertFalse(treatment.isRemarksLoaded());
+
+        Treatment read = new AsyncDao<>(dao).read(treatment.getTid()).join();
+
+        assertSame(treatment, read);
+        assertEquals("Notiz zu " + treatment.getDescription(), read.getRemarks());
+    }
+
+    /**
+     * Überprüft, dass Datum und Uhrzeiten aus den Integer-Spalten gelesen werden und der Datumsfilter den Index nutzt.
+     */
+    @Test
+    public void readsIntegerDatesAndSearchesByIndex() throws SQLException {
+        Treatment treatment = dao.read(2);
+        assertEquals("2024-02-01", treatment.getDate());
+        assertEquals("09:00", treatment.getBegin());
+        assertEquals("10:00", treatment.getEnd());
+
+        TreatmentCriteria criteria = new TreatmentCriteria()
+                .from(LocalDate.of(2024, 1, 1))
+                .until(LocalDate.of(2024, 3, 31));
+        List<Treatment> treatments = dao.readByCriteria(criteria);
+        assertEquals(1, treatments.size());
+        assertEquals(2, treatments.get(0).getTid());
+        Connection connection = source.acquireReader();
+        try (Statement statement = connection.createStatement();
+             ResultSet plan = statement.executeQuery("EXPLAIN QUERY PLAN " + criteria.toSql()
+                     .replace("?", "0"))) {
+            assertTrue(plan.next());
+            assertTrue(plan.getString("detail").contains("idx_treatment_treatment_day"), plan.getString("detail"));
+        } finally {
+            source.release(connection);
+        }
+    }
+
+    /**
+     * Überprüft, dass eine ungültige gespeicherte Uhrzeit beim Lesen gemeldet wird, statt still eine falsche Zeit zu
+     * liefern.
+     */
+    @Test
+    public void rejectsInvalidStoredTime() throws SQLException {
+        Connection connection = source.acquireWriter();
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("UPDATE treatment SET begin = '25:00' WHERE tid = 1");
+        } finally {
+            source.release(connection);
+        }
+
+        SQLException exception = assertThrows(SQLException.class, () -> dao.read(1));
+        assertTrue(exception.getMessage().contains("begin_minute"), exception.getMessage());
+    }
+
+    /**
+     * Überprüft, dass die Volltextsuche Treffer mit Ausschnitt liefert und Änderungen über die Trigger übernimmt.
+     */
+    @Test
+    public void searchesDescriptionsAndRemarks() throws SQLException {
+        List<TreatmentSearchHit> hits = dao.search("verb", 10);
+        assertEquals(2, hits.size());
+        assertTrue(hits.get(0).getSnippet().contains("[Verband]"), hits.get(0).getSnippet());
+
+        Treatment treatment = dao.read(3);
+        treatment.setDescription("Wundversorgung");
+        treatment.setRemarks("Schmerzen am Knie");
+        dao.update(treatment);
+
+        assertEquals(1, dao.search("verband", 10).size());
+        assertEquals(3, dao.search("schmerzen knie", 10).get(0).getTreatment().getTid());
+        assertTrue(dao.search("\"Knie - OR", 10).isEmpty());
+        assertTrue(dao.search(" ", 10).isEmpty());
+    }
+
+    /**
+     * Überprüft, dass das seitenweise Lesen in jeder Sortierung und Seitengröße alle Behandlungen genau einmal und in
+     * derselben Reihenfolge liefert wie die sortierte Liste aller Behandlungen, auch bei gleichem Behandlungstag.
+     */
+    @Test
+    public void readsAllPagesInEveryOrder() throws SQLException {
+        dao.createAll(List.of(
+                createTreatment(2, LocalDate.of(2024, 2, 1), "Blutdruck", false, "2024-02-01"),
+                createTreatment(1, LocalDate.of(2024, 2, 1), "Verband", false, "2024-02-01"),
+                createTreatment(2, LocalDate.of(2012, 3, 1), "Verband", false, "2012-03-01"),
+                createTreatment(1, LocalDate.of(2030, 1, 1), "Blutdruck", false, "2024-02-01"),
+                createTreatment(2, LocalDate.of(2024, 2, 1), "Verband", false, "2024-02-01")));
+        List<Treatment> all = dao.readAll();
+        assertEquals(8, all.size());
+        Comparator<Treatment> byId = Comparator.comparingLong(Treatment::getTid);
+        Comparator<Treatment> byDate = Comparator.comparing(Treatment::getDate).thenComparing(byId);
+
+        for (int limit : new int[]{1, 2, 3, 4, 8, 9}) {
+            assertEquals(sortedIds(all, byId), readAllPages(limit, PageOrder.ID), "ID, limit " + limit);
+            assertEquals(sortedIds(all, byId.reversed()), readAllPages(limit, PageOrder.ID_DESC),
+                    "ID_DESC, limit " + limit);
+            assertEquals(sortedIds(all, byDate), readAllPages(limit, PageOrder.DATE), "DATE, limit " + limit);
+            assertEquals(sortedIds(all, byDate.reversed()), readAllPages(limit, PageOrder.DATE_DESC),
+                    "DATE_DESC, limit " + limit);
+        }
+    }
+
+    /**
+     * Überprüft, dass eine Seite, die genau die letzten Behandlungen enthält, keinen Schlüssel für eine weitere Seite
+     * liefert und der Schlüssel sonst auf die letzte Behandlung der Seite zeigt.
+     */
+    @Test
+    public void lastPageHasNoNextKey() throws SQLException {
+        Page<Treatment> first = dao.readPage(null, 2, PageOrder.DATE_DESC);
+        assertEquals(List.of(3L, 2L), first.getItems().stream().map(Treatment::getTid).toList());
+        assertTrue(first.hasNext());
+        assertEquals(2, first.getNextKey().getId());
+
+        Page<Treatment> last = dao.readPage(first.getNextKey(), 1, PageOrder.DATE_DESC);
+        assertEquals(1, last.getItems().size());
+        assertEquals(1, last.getItems().get(0).getTid());
+        assertFalse(last.hasNext());
+        assertNull(last.getNextKey());
+
+        Page<Treatment> whole = dao.readPage(null, 3, PageOrder.ID);
+        assertEquals(3, whole.getItems().size());
+        assertNull(whole.getNextKey());
+        assertTrue(dao.readPage(PageKey.ofId(3), 3, PageOrder.ID).getItems().isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> dao.readPage(null, 0, PageOrder.ID));
+    }
+
+    private List<Long> readAllPages(int limit, PageOrder order) throws SQLException {
+        List<Long> ids = new ArrayList<>();
+        Page<Treatment> page = dao.readPage(null, limit, order);
+        while (true) {
+            assertTrue(page.getItems().size() <= limit);
+            page.getItems().forEach(treatment -> ids.add(treatment.getTid()));
+            if (!page.hasNext()) {
+                return ids;
+            }
+            assertEquals(limit, page.getItems().size());
+            page = dao.readPage(page.getNextKey(), limit, order);
+        }
+    }
+
+    private static List<Long> sortedIds(List<Treatment> treatments, Comparator<Treatment> order) {
+        return treatments.stream().sorted(order).map(Treatment::getTid).toList();
+    }
+
+    private static Treatment createTreatment(long pid, LocalDate date, String description, boolean locked,
+                                             String dateCreated) {
+        return new Treatment(pid, 1, date, LocalTime.of(9, 0), LocalTime.of(10, 0), description,
+                "Notiz zu " + description, locked, dateCreated);
+    }
+}
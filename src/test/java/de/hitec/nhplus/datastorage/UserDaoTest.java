@@ -0,0 +1,65 @@
+package de.hitec.nhplus.datastorage;
+
+import de.hitec.nhplus.model.User;
+import de.hitec.nhplus.service.AuthenticationService;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserDaoTest {
+
+    private TestDatabase database;
+    private UserDao dao;
+
+    /**
+     * Erstellt eine Kopie der Testdatenbank im Speicher.
+     */
+    @BeforeEach
+    public void setUp() throws SQLException {
+        database = TestDatabase.seeded();
+        dao = database.createDaoFactory().createUserDAO();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        database.close();
+    }
+
+    /**
+     * Überprüft, dass ein Benutzer über seine E-Mail-Adresse mit dem eindeutigen Index gelesen wird.
+     */
+    @Test
+    public void readsByEmailWithIndex() throws SQLException {
+        User user = dao.readByEmail("user2@gmail.com");
+
+        assertNotNull(user);
+        assertEquals(0, user.getStatus());
+        assertNull(dao.readByEmail("unbekannt@gmail.com"));
+        Connection connection = database.getConnection();
+        try (Statement statement = connection.createStatement();
+             ResultSet plan = statement.executeQuery(
+                     "EXPLAIN QUERY PLAN SELECT * FROM user WHERE email = 'user2@gmail.com'")) {
+            assertTrue(plan.next());
+            assertTrue(plan.getString("detail").contains("idx_user_email"), plan.getString("detail"));
+        }
+    }
+
+    /**
+     * Überprüft, dass die Anmeldung nur mit der passenden E-Mail-Adresse und dem passenden Passwort gelingt.
+     */
+    @Test
+    public void authenticatesByEmailAndPassword() throws SQLException {
+        AuthenticationService service = new AuthenticationService(dao);
+
+        assertEquals("user3@gmail.com", service.authenticate("user3@gmail.com", "333333").getEmail());
+        assertNull(service.authenticate("user3@gmail.com", "222222"));
+        assertNull(service.authenticate("unbekannt@gmail.com", "333333"));
+    }
+}
@@ -0,0 +1,141 @@
+package de.hitec.nhplus.datastorage;
+
+import de.hitec.nhplus.model.Patient;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WriteBehindQueueTest {
+
+    private ConnectionSource source;
+    private PatientDao dao;
+
+    /**
+     * Erstellt eine migrierte Datenbank im Speicher mit einem Patienten.
+     */
+    @BeforeEach
+    public void setUp() throws SQLException {
+        source = TestDatabase.empty().getSource();
+        dao = new PatientDao(source);
+        dao.create(new Patient("Test", "Eins", LocalDate.of(1950, 1, 1), "3", "101", false, "2024-01-01"));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        source.close();
+    }
+
+    /**
+     * Überprüft, dass mehrere Änderungen desselben Patienten zusammengefasst und beim Flush geschrieben werden.
+     */
+    @Test
+    public void coalescesEditsUntilFlush() throws SQLException {
+        WriteBehindQueue<Patient> queue = new WriteBehindQueue<>(dao, Patient::getPid, 60000);
+        Patient patient = dao.read(1);
+
+        patient.setFirstName("Zwischenstand");
+        queue.enqueue(patient);
+        patient.setFirstName("Geändert");
+        queue.enqueue(patient);
+
+        assertEquals(1, queue.getPendingCount());
+        assertEquals("Test", new PatientDao(source).read(1).getFirstName());
+
+        WriteBehindQueue.flushAll().join();
+
+        assertEquals(0, queue.getPendingCount());
+        assertEquals("Geändert", new PatientDao(source).read(1).getFirstName());
+    }
+
+    /**
+     * Überprüft, dass bei einem Fehler die Änderung erhalten bleibt und der Fehler gemeldet wird.
+     */
+    @Test
+    public void keepsPendingEditOnError() throws SQLException {
+        WriteBehindQueue<Patient> queue = new WriteBehindQueue<>(dao, Patient::getPid, 60000);
+        AtomicReference<SQLException> error = new AtomicReference<>();
+        queue.setErrorHandler(error::set);
+        Patient patient = dao.read(1);
+        source.close();
+
+        queue.enqueue(patient);
+        queue.flush().join();
+
+        assertNotNull(error.get());
+        assertEquals(1, queue.getPendingCount());
+    }
+
+    /**
+     * Überprüft, dass eine noch nicht geschriebene Änderung nicht aus dem Cache gelesen wird und dass der Flush den
+     * Stand beim Einreihen schreibt, auch wenn das Objekt danach weiter geändert wird.
+     */
+    @Test
+    public void cachesAndWritesCopies() throws SQLException {
+        DaoFactory factory = new DaoFactory(source);
+        PatientDao cached = factory.createPatientDAO();
+        WriteBehindQueue<Patient> queue = new WriteBehindQueue<>(cached, Patient::getPid, 60000);
+        Patient patient = cached.read(1);
+
+        patient.setFirstName("Geändert");
+        queue.enqueue(patient);
+        patient.setFirstName("Nicht eingereiht");
+
+        assertEquals("Test", cached.read(1).getFirstName());
+
+        queue.flush().join();
+
+        assertEquals("Geändert", cached.read(1).getFirstName());
+    }
+
+    /**
+     * Überprüft, dass ein fehlgeschlagener Flush nach einer Wartezeit wiederholt wird und dabei die neueste Änderung
+     * eines inzwischen erneut geänderten Patienten schreibt.
+     */
+    @Test
+    public void retriesFailedFlushWithNewestEdit() throws SQLException, InterruptedException {
+        dao.create(new Patient("Test", "Zwei", LocalDate.of(1950, 1, 1), "3", "102", false, "2024-01-01"));
+        WriteBehindQueue<Patient> queue = new WriteBehindQueue<>(dao, Patient::getPid, 0);
+        AtomicInteger errors = new AtomicInteger();
+        queue.setErrorHandler(exception -> errors.incrementAndGet());
+        Connection connection = source.acquireWriter();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TEMP TRIGGER reject BEFORE UPDATE ON patient " +
+                    "BEGIN SELECT RAISE(ABORT, 'abgelehnt'); END");
+        }
+        Patient first = dao.read(1);
+        Patient second = dao.read(2);
+
+        first.setFirstName("Fehlschlag");
+        second.setFirstName("Zweiter");
+        queue.enqueue(first);
+        queue.enqueue(second);
+        queue.flush().join();
+        int failedFlushes = errors.get();
+        assertTrue(failedFlushes > 0);
+        assertEquals(2, queue.getPendingCount());
+
+        first.setFirstName("Neuer");
+        queue.enqueue(first);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TRIGGER reject");
+        }
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (queue.getPendingCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(0, queue.getPendingCount());
+        assertEquals("Neuer", new PatientDao(source).read(1).getFirstName());
+        assertEquals("Zweiter", new PatientDao(source).read(2).getFirstName());
+        assertEquals(failedFlushes, errors.get());
+    }
+}
@@ -0,0 +1,134 @@
+package de.hitec.nhplus.service;
+
+import de.hitec.nhplus.datastorage.ConnectionSource;
+import de.hitec.nhplus.datastorage.PatientDao;
+import de.hitec.nhplus.datastorage.SchemaMigrator;
+import de.hitec.nhplus.datastorage.SingleConnectionSource;
+import de.hitec.nhplus.model.Patient;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BackupServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private ConnectionSource source;
+
+    /**
+     * Erstellt eine migrierte Datenbank im WAL-Modus mit einem Patienten.
+     */
+    @BeforeEach
+    public void setUp() throws SQLException {
+        source = new SingleConnectionSource(DriverManager.getConnection(url()));
+        try (Statement statement = source.acquireWriter().createStatement()) {
+            statement.execute("PRAGMA journal_mode = WAL");
+        }
+        SchemaMigrator.migrate(source);
+        new PatientDao(source).create(
+                new Patient("Anna", "Eins", LocalDate.of(1950, 1, 1), "3", "101", false, "2024-01-01"));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        source.close();
+    }
+
+    /**
+     * Überprüft, dass die Sicherung eine geprüfte Kopie schreibt und nur die neuesten Sicherungen behält.
+     */
+    @Test
+    public void writesVerifiedSnapshotsAndRotates() throws SQLException, IOException {
+        BackupService service = new BackupService(url(), directory.resolve("backup"), 2);
+
+        Path first = service.backup();
+        service.backup();
+        Path last = service.backup();
+
+        List<Path> backups = service.listBackups();
+        assertEquals(2, backups.size());
+        assertEquals(last, backups.get(0));
+        assertFalse(Files.exists(first));
+        assertTrue(service.verify(last, SchemaMigrator.getLatestVersion()));
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + last);
+             Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("SELECT surname FROM patient")) {
+            assertTrue(result.next());
+            assertEquals("Eins", result.getString(1));
+        }
+    }
+
+    /**
+     * Überprüft, dass eine unterbrochene Sicherung keine Datei hinterlässt.
+     */
+    @Test
+    public void interruptedBackupLeavesNoFile() throws IOException {
+        BackupService service = new BackupService(url(), directory.resolve("backup"), 2);
+
+        Thread.currentThread().interrupt();
+        try {
+            assertThrows(InterruptedIOException.class, service::backup);
+        } finally {
+            Thread.interrupted();
+        }
+
+        try (Stream<Path> files = Files.list(directory.resolve("backup"))) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    /**
+     * Überprüft, dass die Rotation liegengebliebene temporäre Dateien abgebrochener Sicherungen löscht, andere Dateien
+     * aber nicht.
+     */
+    @Test
+    public void rotateDeletesStalePartFiles() throws SQLException, IOException {
+        BackupService service = new BackupService(url(), directory.resolve("backup"), 2);
+        Path snapshot = service.backup();
+        Path stale = Files.createFile(directory.resolve("backup").resolve("nursingHome-20200101-000000-000.db.part"));
+        Path other = Files.createFile(directory.resolve("backup").resolve("notizen.part"));
+
+        assertEquals(List.of(stale), service.rotate());
+
+        assertFalse(Files.exists(stale));
+        assertTrue(Files.exists(other));
+        assertTrue(Files.exists(snapshot));
+    }
+
+    /**
+     * Überprüft, dass das Beenden der geplanten Sicherungen auf den Hintergrund-Thread wartet und wiederholt werden
+     * kann.
+     */
+    @Test
+    public void stopWaitsForScheduler() {
+        BackupService service = new BackupService(url(), directory.resolve("backup"), 2);
+        service.start(60);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            service.stop();
+            service.stop();
+        });
+    }
+
+    private String url() {
+        return "jdbc:sqlite:" + directory.resolve("nursingHome.db");
+    }
+}
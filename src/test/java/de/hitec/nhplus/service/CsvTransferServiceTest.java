@@ -0,0 +1,128 @@
+package de.hitec.nhplus.service;
+
+import de.hitec.nhplus.datastorage.ConnectionSource;
+import de.hitec.nhplus.datastorage.DaoFactory;
+import de.hitec.nhplus.datastorage.PatientDao;
+import de.hitec.nhplus.datastorage.TestDatabase;
+import de.hitec.nhplus.datastorage.TreatmentDao;
+import de.hitec.nhplus.model.Patient;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CsvTransferServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private TestDatabase database;
+    private ConnectionSource source;
+    private CsvTransferService service;
+
+    /**
+     * Erstellt eine Kopie der Testdatenbank mit Beispieldaten.
+     */
+    @BeforeEach
+    public void setUp() throws SQLException {
+        database = TestDatabase.seeded();
+        source = database.getSource();
+        service = new CsvTransferService(source, 2);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        database.close();
+    }
+
+    /**
+     * Überprüft, dass gültige Zeilen eingefügt oder aktualisiert und ungültige Zeilen mit Grund abgewiesen werden.
+     */
+    @Test
+    public void upsertsValidRowsAndRejectsInvalidRows() throws SQLException, IOException {
+        Path file = write("patients.csv",
+                "pid;surname;firstname;dateOfBirth;carelevel;roomnumber",
+                "1;\"Neu; mit \"\"Zitat\"\"\";Anna;1950-01-01;3;101",
+                ";Eins;Bernd;1951-02-02;2;102",
+                ";Zwei;Clara;01.01.1950;2;103",
+                ";Drei;Dora;1952-03-03;;104",
+                ";\"Mehr-",
+                "zeilig\";Emil;1953-04-04;1;105");
+        Path rejects = directory.resolve("patients.rejects.csv");
+        int before = new PatientDao(source).readAll().size();
+
+        CsvTransferService.Report report = service.importCsv(CsvTransferService.Table.PATIENT, file, rejects);
+
+        assertEquals(5, report.rows());
+        assertEquals(3, report.imported());
+        assertEquals(2, report.rejected());
+        assertEquals(2, report.batches());
+        PatientDao dao = new PatientDao(source);
+        assertEquals(before + 2, dao.readAll().size());
+        assertEquals("Neu; mit \"Zitat\"", dao.read(1).getSurname());
+        assertTrue(dao.readAll().stream().anyMatch(patient -> patient.getSurname().equals("Mehr-\nzeilig")));
+        List<String> lines = Files.readAllLines(rejects);
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(1).startsWith("4;Geburtsdatum"));
+        assertTrue(lines.get(2).startsWith("5;Pflegegrad"));
+    }
+
+    /**
+     * Überprüft, dass der Import die aktualisierten Zeilen aus den Caches der Factory entfernt, für die der Dienst
+     * erstellt wurde.
+     */
+    @Test
+    public void importInvalidatesCachesOfItsFactory() throws SQLException, IOException {
+        DaoFactory factory = database.createDaoFactory();
+        PatientDao dao = factory.createPatientDAO();
+        int before = dao.readAll().size();
+        assertNotEquals("Neu", dao.read(1).getSurname());
+        Path file = write("patients.csv",
+                "pid;surname;firstname;dateOfBirth;carelevel;roomnumber",
+                "1;Neu;Anna;1950-01-01;3;101",
+                ";Eins;Bernd;1951-02-02;2;102");
+
+        new CsvTransferService(factory, 10).importCsv(CsvTransferService.Table.PATIENT, file,
+                directory.resolve("patients.rejects.csv"));
+
+        assertEquals("Neu", dao.read(1).getSurname());
+        assertEquals(before + 1, dao.readAll().size());
+    }
+
+    /**
+     * Überprüft, dass Behandlungen ohne vorhandene Patient/innen abgewiesen werden und der Export wieder importierbar
+     * ist.
+     */
+    @Test
+    public void exportsAndImportsTreatments() throws SQLException, IOException {
+        Path file = directory.resolve("treatments.csv");
+        TreatmentDao dao = new TreatmentDao(source);
+        int count = dao.readAll().size();
+
+        assertEquals(count, service.exportCsv(CsvTransferService.Table.TREATMENT, file));
+        CsvTransferService.Report report = service.importCsv(CsvTransferService.Table.TREATMENT, file, null);
+        assertEquals(count, report.imported());
+        assertEquals(count, dao.readAll().size());
+
+        Path unknown = write("unknown.csv",
+                "pid;cid;treatment_date;begin;end;description",
+                "999;1;2024-01-01;10:00;11:00;Waschen");
+        report = service.importCsv(CsvTransferService.Table.TREATMENT, unknown, directory.resolve("rejects.csv"));
+        assertEquals(1, report.rejected());
+        assertTrue(Files.readString(directory.resolve("rejects.csv")).contains("pid = 999"));
+        assertEquals(count, dao.readAll().size());
+    }
+
+    private Path write(String name, String... lines) throws IOException {
+        return Files.writeString(directory.resolve(name), String.join("\n", lines) + "\n", StandardCharsets.UTF_8);
+    }
+}
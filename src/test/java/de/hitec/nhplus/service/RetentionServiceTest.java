@@ -0,0 +1,145 @@
+package de.hitec.nhplus.service;
+
+import de.hitec.nhplus.datastorage.CaregiverDAO;
+import de.hitec.nhplus.datastorage.ConnectionSource;
+import de.hitec.nhplus.datastorage.DaoFactory;
+import de.hitec.nhplus.datastorage.PatientDao;
+import de.hitec.nhplus.datastorage.TestDatabase;
+import de.hitec.nhplus.datastorage.TreatmentDao;
+import de.hitec.nhplus.model.Caregiver;
+import de.hitec.nhplus.model.Patient;
+import de.hitec.nhplus.model.Treatment;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RetentionServiceTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2026, 10, 17);
+
+    private ConnectionSource source;
+
+    /**
+     * Erstellt eine Datenbank mit abgelaufenen, gesperrten und aktuellen Einträgen.
+     */
+    @BeforeEach
+    public void setUp() throws SQLException {
+        source = TestDatabase.empty().getSource();
+        new PatientDao(source).createAll(List.of(
+                new Patient("Anna", "Eins", LocalDate.of(1950, 1, 1), "3", "101", false, "2010-01-01"),
+                new Patient("Bernd", "Zwei", LocalDate.of(1950, 1, 1), "2", "102", false, "2010-01-01"),
+                new Patient("Clara", "Drei", LocalDate.of(1950, 1, 1), "1", "103", false, "2024-01-01")));
+        new CaregiverDAO(source).createAll(List.of(
+                new Caregiver(0, "Pflege", "Kraft", "0123456789", false, "2010-01-01"),
+                new Caregiver(0, "Ohne", "Behandlung", "0987654321", false, "2010-01-01")));
+        new TreatmentDao(source).createAll(List.of(
+                createTreatment(1, true, "2012-03-01"),
+                createTreatment(1, false, "2012-03-01"),
+                createTreatment(2, false, "2013-03-01"),
+                createTreatment(1, false, "2024-03-01")));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        source.close();
+    }
+
+    /**
+     * Überprüft, dass der Testlauf nichts löscht und dieselben Einträge meldet, die der Löschlauf in mehreren
+     * Transaktionen löscht, und dass gesperrte oder noch verwendete Einträge erhalten bleiben.
+     */
+    @Test
+    public void purgesExpiredRowsInBatches() throws SQLException {
+        RetentionService service = new RetentionService(source, 1);
+
+        RetentionService.Report preview = service.preview(TODAY);
+        assertEquals(2, preview.treatments());
+        assertEquals(1, preview.patients());
+        assertEquals(1, preview.caregivers());
+        assertEquals(4, new TreatmentDao(source).readAll().size());
+
+        RetentionService.Report report = service.purge(TODAY);
+        assertEquals(2, report.treatments());
+        assertEquals(1, report.patients());
+        assertEquals(1, report.caregivers());
+        assertEquals(4, report.batches());
+        assertTrue(report.completed());
+
+        assertEquals(2, new TreatmentDao(source).readAll().size());
+        assertNull(new PatientDao(source).read(2));
+        assertNotNull(new PatientDao(source).read(1));
+        assertEquals(1, new CaregiverDAO(source).readAll().size());
+        assertEquals(0, service.purge(TODAY).treatments());
+        assertTrue(service.reclaimSpace() >= 0);
+    }
+
+    /**
+     * Überprüft, dass der Löschlauf die gelöschten Einträge aus den Caches der Factory entfernt, für die der Dienst
+     * erstellt wurde.
+     */
+    @Test
+    public void purgeInvalidatesCachesOfItsFactory() throws SQLException {
+        DaoFactory factory = new DaoFactory(source);
+        PatientDao patients = factory.createPatientDAO();
+        assertNotNull(patients.read(2));
+        assertEquals(3, patients.readAll().size());
+
+        new RetentionService(factory, 10).purge(TODAY);
+
+        assertNull(patients.read(2));
+        assertEquals(2, patients.readAll().size());
+        assertEquals(2, factory.createTreatmentDao().readAll().size());
+    }
+
+    /**
+     * Überprüft, dass ein Abbruch auch einen noch wartenden Löschlauf stoppt, aber spätere Löschläufe nicht betrifft.
+     */
+    @Test
+    public void cancelStopsPendingPurgeOnly() throws SQLException {
+        RetentionService service = new RetentionService(source, 1);
+
+        CompletableFuture<RetentionService.Report> pending = service.purgeAsync();
+        service.cancel();
+
+        assertFalse(pending.join().completed());
+        RetentionService.Report report = service.purge(TODAY);
+        assertTrue(report.completed());
+        assertEquals(0, service.preview(TODAY).treatments());
+    }
+
+    /**
+     * Überprüft, dass eine Datenbank ohne schrittweises Freigeben von Speicher einmalig umgestellt wird und danach
+     * keine freien Seiten mehr hat.
+     */
+    @Test
+    public void reclaimSpaceSwitchesToIncrementalVacuum() throws SQLException {
+        assertEquals(0, pragma("PRAGMA auto_vacuum"));
+        RetentionService service = new RetentionService(source, 10);
+        service.purge(TODAY);
+
+        assertEquals(0, service.reclaimSpace());
+        assertEquals(2, pragma("PRAGMA auto_vacuum"));
+    }
+
+    private long pragma(String sql) throws SQLException {
+        try (Statement statement = source.acquireWriter().createStatement();
+             ResultSet result = statement.executeQuery(sql)) {
+            return result.getLong(1);
+        }
+    }
+
+    private static Treatment createTreatment(long pid, boolean locked, String dateCreated) {
+        return new Treatment(pid, 1, LocalDate.parse(dateCreated), LocalTime.of(9, 0), LocalTime.of(10, 0),
+                "Verband", "Notiz", locked, dateCreated);
+    }
+}